@@ -0,0 +1,9 @@
+package android.media;
+
+/**
+ * Minimal stub of android.media.AudioFormat for running the DSP code on a plain JVM (benchmarks).
+ */
+public class AudioFormat {
+	public static final int CHANNEL_IN_MONO = 16;
+	public static final int ENCODING_PCM_16BIT = 2;
+}
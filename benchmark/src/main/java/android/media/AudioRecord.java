@@ -0,0 +1,19 @@
+package android.media;
+
+/**
+ * Minimal stub of android.media.AudioRecord for running the DSP code on a plain JVM (benchmarks).
+ * Recording is not supported: the state is always uninitialized.
+ */
+public class AudioRecord {
+	public static final int STATE_UNINITIALIZED = 0;
+	public static final int STATE_INITIALIZED = 1;
+	public static final int SUCCESS = 0;
+
+	public AudioRecord(int audioSource, int sampleRateInHz, int channelConfig, int audioFormat, int bufferSizeInBytes) {}
+	public static int getMinBufferSize(int sampleRateInHz, int channelConfig, int audioFormat) { return 0; }
+	public int getState() { return STATE_UNINITIALIZED; }
+	public void startRecording() { throw new UnsupportedOperationException("stub"); }
+	public int read(short[] audioData, int offsetInShorts, int sizeInShorts) { throw new UnsupportedOperationException("stub"); }
+	public void stop() {}
+	public void release() {}
+}
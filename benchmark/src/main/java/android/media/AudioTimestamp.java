@@ -0,0 +1,9 @@
+package android.media;
+
+/**
+ * Minimal stub of android.media.AudioTimestamp for running the DSP code on a plain JVM (benchmarks).
+ */
+public class AudioTimestamp {
+	public long framePosition;
+	public long nanoTime;
+}
@@ -0,0 +1,10 @@
+package android.media;
+
+/**
+ * Minimal stub of android.media.MediaRecorder for running the DSP code on a plain JVM (benchmarks).
+ */
+public class MediaRecorder {
+	public static final class AudioSource {
+		public static final int MIC = 1;
+	}
+}
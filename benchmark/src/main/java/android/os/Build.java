@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * Minimal stub of android.os.Build for running the DSP code on a plain JVM (benchmarks).
+ */
+public class Build {
+	public static class VERSION {
+		public static final int SDK_INT = 21;
+	}
+}
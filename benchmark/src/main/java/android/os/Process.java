@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * Minimal stub of android.os.Process for running the DSP code on a plain JVM (benchmarks).
+ */
+public class Process {
+	public static final int THREAD_PRIORITY_URGENT_AUDIO = -19;
+
+	public static void setThreadPriority(int priority) {}
+}
@@ -0,0 +1,8 @@
+package android.os;
+
+/**
+ * Minimal stub of android.os.Vibrator for running the DSP code on a plain JVM (benchmarks).
+ */
+public class Vibrator {
+	public void vibrate(long[] pattern, int repeat) {}
+}
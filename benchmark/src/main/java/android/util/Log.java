@@ -0,0 +1,14 @@
+package android.util;
+
+/**
+ * Minimal stub of android.util.Log for running the DSP code on a plain JVM (benchmarks).
+ * All log output is dropped.
+ */
+public final class Log {
+	public static int v(String tag, String msg) { return 0; }
+	public static int d(String tag, String msg) { return 0; }
+	public static int i(String tag, String msg) { return 0; }
+	public static int w(String tag, String msg) { return 0; }
+	public static int e(String tag, String msg) { return 0; }
+	public static int e(String tag, String msg, Throwable tr) { return 0; }
+}
@@ -0,0 +1,82 @@
+package com.mantz_it.guitartunerlibrary;
+
+import java.util.Random;
+
+/**
+ * <h1>Wear Guitar Tuner - Benchmark Signal</h1>
+ *
+ * Module:      BenchmarkSignal.java
+ * Description: Generates the synthetic input signals for the JMH benchmarks.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+final class BenchmarkSignal {
+
+	public static final int SAMPLE_RATE = 8000;			// same as the balanced AnalysisProfile
+	public static final int BUFFER_SIZE = 4096;			// same as the balanced AnalysisProfile
+	public static final float FREQUENCY = 110.0f;	// A2 string
+	private static final int HARMONICS = 6;
+
+	private BenchmarkSignal() {
+	}
+
+	/**
+	 * Generates a plucked string like tone (fundamental with decaying harmonics and some noise)
+	 * as 16-bit PCM samples. The random generator is seeded, so all runs get the same input.
+	 *
+	 * @param length	number of samples
+	 * @return PCM samples
+	 */
+	public static short[] guitarTone(int length) {
+		Random random = new Random(42);
+		short[] samples = new short[length];
+		for (int i = 0; i < length; i++) {
+			double value = 0;
+			for (int h = 1; h <= HARMONICS; h++)
+				value += Math.sin(2 * Math.PI * FREQUENCY * h * i / SAMPLE_RATE) / h;
+			value = value * 0.3 + random.nextGaussian() * 0.01;
+			samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value * Short.MAX_VALUE));
+		}
+		return samples;
+	}
+
+	/**
+	 * Calculates the logarithmic magnitude spectrum of the guitar tone the same way the
+	 * AudioProcessingEngine does it (window, zero padding to fftSize, real fft).
+	 *
+	 * @param fftSize	size of the fft (number of real input samples)
+	 * @return log magnitudes (fftSize/2 bins)
+	 */
+	public static float[] guitarToneMagnitudes(int fftSize) {
+		float[] samples = new float[Math.min(BUFFER_SIZE, fftSize)];
+		float[] re = new float[fftSize / 2];
+		float[] im = new float[fftSize / 2];
+		float[] mag = new float[fftSize / 2];
+		short[] pcm = guitarTone(samples.length);
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = pcm[i] / 32768f;
+		FFT fft = new FFT(fftSize, FFTEngineFactory.ENGINE_RADIX2);
+		fft.applyWindow(samples);
+		fft.packReal(samples, re, im);
+		fft.fftReal(re, im, samples.length);
+		AudioProcessingEngine.calcLogMagnitude(re, im, mag, mag.length, fftSize);
+		return mag;
+	}
+}
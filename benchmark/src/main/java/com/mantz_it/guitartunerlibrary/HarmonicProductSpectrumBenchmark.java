@@ -0,0 +1,84 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Wear Guitar Tuner - Harmonic Product Spectrum Benchmark</h1>
+ *
+ * Module:      HarmonicProductSpectrumBenchmark.java
+ * Description: JMH benchmark for GuitarTuner.calcHarmonicProductSpectrum() (all bins) and
+ *              GuitarTuner.calcHarmonicProductSpectrumBand() (only the band of the tuner, incl. the peak search).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HarmonicProductSpectrumBenchmark {
+
+	@Param({"4096", "8192", "16384", "32768"})
+	public int fftSize;
+
+	@Param({"1", "2", "3", "4", "5"})
+	public int hpsOrder;
+
+	private GuitarTuner guitarTuner;
+	private float[] mag;
+	private float[] hps;
+	private float[] peakMag = new float[5];
+	private int bandStart;		// first bin of the band (50 Hz)
+	private int bandEnd;		// bin after the last bin whose harmonics are all below 2500 Hz
+
+	@Setup
+	public void setup() {
+		guitarTuner = new GuitarTuner(null, null);
+		mag = BenchmarkSignal.guitarToneMagnitudes(fftSize);
+		hps = new float[mag.length];
+		float hzPerBin = (float) BenchmarkSignal.SAMPLE_RATE / fftSize;
+		bandStart = (int) Math.ceil(50 / hzPerBin);
+		bandEnd = Math.max(bandStart, (int) (2500 / hzPerBin) / (hpsOrder + 1));
+	}
+
+	@Benchmark
+	public float[] calcHarmonicProductSpectrum() {
+		guitarTuner.calcHarmonicProductSpectrum(mag, hps, 0, hpsOrder);
+		return hps;
+	}
+
+	@Benchmark
+	public int calcHarmonicProductSpectrumBand() {
+		return guitarTuner.calcHarmonicProductSpectrumBand(mag, hps, 0, hpsOrder, bandStart, bandEnd, peakMag);
+	}
+}
@@ -0,0 +1,187 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Wear Guitar Tuner - Spectrum Benchmark</h1>
+ *
+ * Module:      SpectrumBenchmark.java
+ * Description: JMH benchmarks for the spectrum part of the DSP hot path (conversion, window,
+ *              fft and log magnitude).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SpectrumBenchmark {
+
+	@Param({"4096", "8192", "16384", "32768"})
+	public int fftSize;
+
+	@Param({FFTEngineFactory.ENGINE_RADIX2, FFTEngineFactory.ENGINE_RADIX4,
+			FFTEngineFactory.ENGINE_SPLIT_RADIX, FFTEngineFactory.ENGINE_STOCKHAM})
+	public String engine;
+
+	private AudioProcessingEngine audioProcessingEngine;
+	private FFT fft;
+	private short[] pcm;			// input: 16-bit samples
+	private float[] input;			// input: float samples (BUFFER_SIZE or less)
+	private float[] samples;		// work buffer for the window
+	private float[] re;				// work buffers for the fft
+	private float[] im;
+	private float[] fullRe;			// work buffers for the complex fft
+	private float[] fullIm;
+	private float[] mag;			// log magnitudes
+	private FixedPointFFT fixedPointFFT;
+	private int[] fixedPointRe;		// work buffers for the fixed-point fft
+	private int[] fixedPointIm;
+
+	@Setup
+	public void setup() {
+		audioProcessingEngine = new AudioProcessingEngine(null, engine);
+		fft = new FFT(fftSize, engine);
+		pcm = BenchmarkSignal.guitarTone(Math.min(BenchmarkSignal.BUFFER_SIZE, fftSize));
+		input = new float[pcm.length];
+		audioProcessingEngine.short2float(pcm, input);
+		samples = new float[input.length];
+		re = new float[fftSize / 2];
+		im = new float[fftSize / 2];
+		mag = new float[fftSize / 2];
+		fullRe = new float[fftSize];
+		fullIm = new float[fftSize];
+		fixedPointFFT = new FixedPointFFT(fftSize);
+		fixedPointRe = new int[fftSize / 2];
+		fixedPointIm = new int[fftSize / 2];
+
+		// prepare a spectrum for the magnitude benchmark:
+		fft.packReal(input, re, im);
+		fft.fftReal(re, im, input.length);
+	}
+
+	@Benchmark
+	public float[] short2float() {
+		audioProcessingEngine.short2float(pcm, samples);
+		return samples;
+	}
+
+	/**
+	 * short2float without the lookup table (compact memory mode)
+	 */
+	@Benchmark
+	public float[] short2floatArithmetic() {
+		AudioProcessingEngine.short2floatArithmetic(pcm, samples);
+		return samples;
+	}
+
+	/**
+	 * Window and pack the 16-bit samples in one pass (compact memory mode). Compare with
+	 * short2float + applyWindow + the packing part of fftReal.
+	 */
+	@Benchmark
+	public float[] packWindowedReal() {
+		AudioProcessingEngine.packWindowedReal(pcm, fft.getWindow(pcm.length), re, im);
+		return re;
+	}
+
+	@Benchmark
+	public float[] applyWindow() {
+		System.arraycopy(input, 0, samples, 0, input.length);
+		fft.applyWindow(samples);
+		return samples;
+	}
+
+	/**
+	 * Real fft of the zero padded signal (pack + fftReal) like it is done by the AudioProcessingEngine
+	 */
+	@Benchmark
+	public float[] fftReal() {
+		fft.packReal(input, re, im);
+		fft.fftReal(re, im, input.length);
+		return re;
+	}
+
+	/**
+	 * Complex fft of the zero padded signal (the way the spectrum was calculated before fftReal existed)
+	 */
+	@Benchmark
+	public float[] fftComplex() {
+		System.arraycopy(input, 0, fullRe, 0, input.length);
+		Arrays.fill(fullRe, input.length, fftSize, 0f);
+		Arrays.fill(fullIm, 0f);
+		fft.fft(fullRe, fullIm);
+		return fullRe;
+	}
+
+	@Benchmark
+	public float[] logMagnitude() {
+		AudioProcessingEngine.calcLogMagnitude(re, im, mag, mag.length, fftSize);
+		return mag;
+	}
+
+	/**
+	 * Fused kernel (squared magnitude + table based log2) over all bins. Compare with logMagnitude.
+	 */
+	@Benchmark
+	public float[] fastLogMagnitude() {
+		AudioProcessingEngine.calcFastLogMagnitude(re, im, mag, 0, mag.length, fftSize);
+		return mag;
+	}
+
+	/**
+	 * Fused kernel only inside the default band of the guitar tuner (50 - 2500 Hz) like it is
+	 * done by the AudioProcessingEngine
+	 */
+	@Benchmark
+	public float[] fastLogMagnitudeBand() {
+		float hzPerBin = (float) BenchmarkSignal.SAMPLE_RATE / fftSize;
+		AudioProcessingEngine.calcFastLogMagnitude(re, im, mag, (int) Math.ceil(50 / hzPerBin),
+				(int) (2500 / hzPerBin), fftSize);
+		return mag;
+	}
+
+	/**
+	 * Complete fixed-point pipeline (window, fft, squared magnitude, log) starting at the 16-bit samples.
+	 * Compare with short2float + applyWindow + fftReal + logMagnitude.
+	 */
+	@Benchmark
+	public float[] fixedPointSpectrum() {
+		int exponent = fixedPointFFT.fftRealWindowed(pcm, pcm.length, fixedPointRe, fixedPointIm);
+		FixedPointFFT.calcSquaredMagnitude(fixedPointRe, fixedPointIm, fixedPointRe, mag.length);
+		fixedPointFFT.calcLogMagnitude(fixedPointRe, exponent, mag, mag.length);
+		return mag;
+	}
+}
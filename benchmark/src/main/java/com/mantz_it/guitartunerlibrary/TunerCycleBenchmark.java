@@ -0,0 +1,114 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Wear Guitar Tuner - Tuner Cycle Benchmark</h1>
+ *
+ * Module:      TunerCycleBenchmark.java
+ * Description: JMH benchmarks for one complete processing cycle of the tuner: from the
+ *              16-bit samples to the result that is passed to the callback interface.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TunerCycleBenchmark {
+
+	private static final int HOP_SIZE = 1024;		// same as the balanced AnalysisProfile
+	private static final int HOPS = 100;			// number of different hops (the tone is continued for HOPS cycles)
+
+	@Param({"4096", "8192", "16384", "32768"})
+	public int fftSize;
+
+	@Param({"false", "true"})
+	public boolean compactMemory;
+
+	private AudioProcessingEngine audioProcessingEngine;
+	private GuitarTuner guitarTuner;
+	private short[][] hops;		// new samples of the cycles
+	private int cycle;			// number of the current cycle
+	private float[] spectrum;	// precalculated log magnitudes for processFFTSamples()
+
+	@Setup
+	public void setup() {
+		guitarTuner = new GuitarTuner(new GuitarTuner.GuitarTunerCallbackInterface() {
+			@Override
+			public boolean process(GuitarTuner guitarTuner) {
+				return true;
+			}
+		}, null);
+		int bufferSize = Math.min(BenchmarkSignal.BUFFER_SIZE, fftSize);
+		AnalysisProfile profile = new AnalysisProfile("benchmark", BenchmarkSignal.SAMPLE_RATE, bufferSize, fftSize,
+				Math.min(HOP_SIZE, bufferSize), 3, 50, 2500);
+		audioProcessingEngine = new AudioProcessingEngine(guitarTuner, FFTEngineFactory.ENGINE_RADIX2, profile);
+		audioProcessingEngine.setCompactMemory(compactMemory);
+
+		// fill the window once. Each cycle appends one hop like the engine thread does (the phase
+		// refinement needs the continuation of the tone):
+		int hopSize = profile.getHopSize();
+		short[] pcm = BenchmarkSignal.guitarTone(bufferSize + HOPS * hopSize);
+		hops = new short[HOPS][];
+		for (int i = 0; i < HOPS; i++)
+			hops[i] = Arrays.copyOfRange(pcm, bufferSize + i * hopSize, bufferSize + (i + 1) * hopSize);
+		audioProcessingEngine.prepareCycle(BenchmarkSignal.SAMPLE_RATE, Arrays.copyOf(pcm, bufferSize));
+		cycle = 0;
+		spectrum = BenchmarkSignal.guitarToneMagnitudes(fftSize);
+	}
+
+	/**
+	 * Only the tuner part of the cycle: cut-off, harmonic product spectrum, peak search and evaluation
+	 */
+	@Benchmark
+	public float processFFTSamples() {
+		guitarTuner.processFFTSamples(spectrum, BenchmarkSignal.SAMPLE_RATE, 2f);
+		return guitarTuner.getDetectedFrequency();
+	}
+
+	/**
+	 * The complete cycle of the engine in the spectrum mode (AudioProcessingEngine.analyseWindow()):
+	 * window, fft, magnitudes of the band (compact or full spectrum), phase refinement and tuner
+	 */
+	@Benchmark
+	public float fullCycle() {
+		short[] hop = hops[cycle++ % HOPS];
+		audioProcessingEngine.prepareCycle(BenchmarkSignal.SAMPLE_RATE, hop);
+		audioProcessingEngine.analyseWindow(AudioProcessingEngine.DETECTION_MODE_SPECTRUM,
+				(float) BenchmarkSignal.SAMPLE_RATE / hop.length);
+		return guitarTuner.getDetectedFrequency();
+	}
+}
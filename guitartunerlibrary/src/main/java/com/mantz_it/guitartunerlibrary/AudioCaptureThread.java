@@ -0,0 +1,133 @@
+package com.mantz_it.guitartunerlibrary;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <h1>Wear Guitar Tuner - Audio Capture Thread</h1>
+ *
+ * Module:      AudioCaptureThread.java
+ * Description: High priority thread that reads the samples from the audio source and
+ *              writes them into the ring buffer which is consumed by the
+ *              AudioProcessingEngine. Capturing never waits for the analysis.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class AudioCaptureThread extends Thread {
+	private static final String LOGTAG = "AudioCaptureThread";
+	private static final int CHUNK_SIZE = 256;				// number of samples read from the source at once
+	private static final long FULL_WAIT_TIME = 1000000;		// time (ns) to wait if the buffer is full (not live sources)
+	private AudioSource audioSource;
+	private ShortRingBuffer ringBuffer;
+	private Thread consumer;				// is woken up after new samples were written
+	private volatile boolean stopRequested = false;
+	private volatile boolean finished = false;		// set when the thread has ended (end of source, error or stop)
+	private volatile long overrunSamples = 0;		// number of samples dropped because the ring buffer was full
+	private volatile int overrunCount = 0;			// number of reads which lost samples because the ring buffer was full
+	private volatile long captureTimestamp = 0;		// see getCaptureTimestamp()
+
+	/**
+	 * constructor.
+	 *
+	 * @param audioSource	opened audio source
+	 * @param ringBuffer	ring buffer that receives the samples
+	 * @param consumer		thread that reads from the ring buffer (is woken up after new samples are written)
+	 */
+	public AudioCaptureThread(AudioSource audioSource, ShortRingBuffer ringBuffer, Thread consumer) {
+		super("AudioCaptureThread");
+		this.audioSource = audioSource;
+		this.ringBuffer = ringBuffer;
+		this.consumer = consumer;
+	}
+
+	public void stopCapture() {
+		stopRequested = true;
+	}
+
+	/**
+	 * @return true if the thread has ended and no more samples will be written
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return System.nanoTime() at which the newest sample in the ring buffer was captured (see
+	 *         AudioSource.getCaptureTimestamp()); 0 if nothing was captured yet
+	 */
+	public long getCaptureTimestamp() {
+		return captureTimestamp;
+	}
+
+	/**
+	 * @return number of samples that were dropped because the ring buffer was full
+	 */
+	public long getOverrunSamples() {
+		return overrunSamples;
+	}
+
+	/**
+	 * @return number of reads from the source which lost samples because the ring buffer was full
+	 */
+	public int getOverrunCount() {
+		return overrunCount;
+	}
+
+	@Override
+	public void run() {
+		Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+		Log.i(LOGTAG, "run: Capturing from '" + audioSource.getName() + "' started.");
+		short[] chunk = new short[CHUNK_SIZE];
+
+		while (!stopRequested) {
+			int count = audioSource.read(chunk, 0, chunk.length);
+			if(count < 0) {
+				Log.i(LOGTAG, "run: End of audio source or error while reading. stop.");
+				break;
+			}
+			long timestamp = audioSource.getCaptureTimestamp();
+			if(timestamp == 0)
+				timestamp = System.nanoTime();	// the source doesn't know when the samples were captured
+
+			int written = ringBuffer.write(chunk, 0, count);
+			if(written < count) {
+				if(audioSource.isLive()) {
+					// we can't wait for the analysis. The samples are lost:
+					overrunSamples += count - written;
+					overrunCount++;
+				} else {
+					// sources which are not live (e.g. files) can wait until there is space:
+					while (written < count && !stopRequested) {
+						LockSupport.parkNanos(FULL_WAIT_TIME);
+						written += ringBuffer.write(chunk, written, count - written);
+					}
+				}
+			}
+			captureTimestamp = timestamp;
+			LockSupport.unpark(consumer);
+		}
+
+		finished = true;
+		LockSupport.unpark(consumer);
+		Log.i(LOGTAG, "run: Capturing stopped (" + overrunSamples + " samples dropped in " + overrunCount + " overruns)");
+	}
+}
@@ -1,17 +1,19 @@
 package com.mantz_it.guitartunerlibrary;
 
-import android.media.AudioFormat;
-import android.media.AudioRecord;
-import android.media.MediaRecorder;
 import android.util.Log;
 
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * <h1>Wear Guitar Tuner - Audio Processing Engine</h1>
  *
  * Module:      AudioProcessingEngine.java
  * Description: This class will record audio from the device's microphone and
- *              compute the FFT in real time. The data will be forwarded to
- *              the Guitar Tuner class.
+ *              compute the FFT in real time. The FFT is computed over a sliding
+ *              window (overlapping) every hop. The data will be forwarded to
+ *              the Guitar Tuner class. The parameters of the analysis are defined
+ *              by an AnalysisProfile which can be changed while the engine is running.
  *
  * @author Dennis Mantz
  *
@@ -34,22 +36,92 @@ import android.util.Log;
  */
 public class AudioProcessingEngine extends Thread{
 	private static final String LOGTAG = "AudioProcessingEngine";
-	private static final int RECORDER_SAMPLERATE = 8000;
-	private static final int RECORDER_CHANNELS = AudioFormat.CHANNEL_IN_MONO;
-	private static final int RECORDER_AUDIO_ENCODING = AudioFormat.ENCODING_PCM_16BIT;
-	private static final int RECORDER_ELEMENT_SIZE = 2;	// 16-bit
-	private static final int BUFFER_SIZE = 1024 * 4;	// 4k buffer will need half a sec to fill at 8000Sps
-	private static final int FFT_SIZE = 1024 * 32;		// make the fft size much bigger to get a higher resolution in frequency domain
-	private float[] lookupTable;	// used to convert shorts to floats
-	private short[] audioBuffer;	// the buffer which is filled with audio samples
-	private float[] realSamples;	// buffer to keep the real values of the complex signal
-	private float[] imagSamples;	// buffer to keep the imaginary values of the complex signal
+	private static final int MAX_FAIL_TIME = 5;		// stop if processFFTSamples() failed for this number of seconds in a row
+	public static final int DETECTION_MODE_SPECTRUM = 0;	// fft (or zoom transform) + harmonic product spectrum
+	public static final int DETECTION_MODE_STRINGS = 1;		// Goertzel filter bank around the strings of the standard tuning
+	public static final int DETECTION_MODE_MPM = 2;			// McLeod pitch method on the latest few periods (time domain)
+	public static final int DETECTION_MODE_YIN = 3;			// YIN on the latest few periods (time domain)
+	public static final int DETECTION_MODE_PEAKS = 4;		// fft + harmonic matching of the strongest peaks (no hps)
+	public static final int STATE_CREATED = 0;		// thread not yet started (or still creating the fft instance and the buffers)
+	public static final int STATE_RUNNING = 1;		// recording and processing
+	public static final int STATE_PAUSED = 2;		// audio source closed; buffers are kept (see pauseProcessing())
+	public static final int STATE_RELEASED = 3;		// thread has ended (see release())
+	private static final int GOERTZEL_HARMONICS = 3;		// number of harmonics evaluated by the Goertzel filter bank
+	private static final int RING_BUFFER_SIZE = 1024 * 16;	// 2 seconds at 8000Sps between capture and analysis
+	private static final long MAX_WAIT_TIME = 10000000;	// max. time (ns) to wait for new samples before checking again
+	private static final float MAX_ANALYSIS_TIME = 4f;	// time (s) the spectrum is analysed after an onset (see setOnsetTriggered())
+	private static final int LOG2_TABLE_BITS = 8;		// mantissa bits used by fastLog2()
+	private static final float[] LOG2_TABLE;			// log2 of the center of each mantissa interval
+	private static final float HALF_LOG10_2 = (float) (Math.log10(2) / 2);	// log10(sqrt(x)) = log2(x) * HALF_LOG10_2
+	private static final float SHORT_TO_FLOAT = 1 / 32768f;	// scales 16-bit samples to [-1, 1] (same as the lookup table)
+
+	static {
+		LOG2_TABLE = new float[1 << LOG2_TABLE_BITS];
+		for (int i = 0; i < LOG2_TABLE.length; i++)
+			LOG2_TABLE[i] = (float) (Math.log(1 + (i + 0.5) / LOG2_TABLE.length) / Math.log(2));
+	}
+
+	private float[] lookupTable;	// used to convert shorts to floats (fetched on demand; not used in compact memory mode)
+	private short[] audioBuffer;	// the buffer which is filled with audio samples (one hop)
+	private SlidingWindow slidingWindow;	// keeps the latest bufferSize samples
+	private short[] pcmSamples;		// buffer to keep the audio samples of the current window (16-bit)
+	private float[] samples;		// buffer to keep the (real valued) audio samples of the current window as floats (created on demand)
+	private float[] realSamples;	// buffer to keep the real values of the (half) spectrum
+	private float[] imagSamples;	// buffer to keep the imaginary values of the (half) spectrum
 	private float[] mag;			// buffer to keep the magnitude of the frequency spectrum (fft)
-	private AudioRecord audioRecord;
+	private int bandStart;			// first bin of mag inside the band of the guitar tuner
+	private int bandEnd;			// bin after the last bin of mag inside the band of the guitar tuner
+	private AudioSource audioSource;	// delivers the audio samples (microphone, file, ...)
+	private boolean ownsAudioSource;	// true if the audio source is the microphone created by this engine
+	private volatile AnalysisProfile requestedProfile;	// profile that should be used from the next cycle on
+	private AnalysisProfile analysisProfile;	// profile of the current cycle
+	private int bufferSize;			// number of samples in one analysed window (see AnalysisProfile)
+	private int fftSize;			// size of the fft (see AnalysisProfile)
+	private int sampleRate;			// sample rate of the audio source
+	private ShortRingBuffer ringBuffer;			// samples from the capture thread to the analysis (this thread)
+	private AudioCaptureThread captureThread;	// reads the audio source
+	private volatile int underrunCount = 0;		// number of hops the analysis had to wait for samples
 	private FFT fftInstance;
+	private String fftEngineName;	// name of the fft engine (see FFTEngineFactory)
 	private GuitarTuner guitarTuner;
 
-	private boolean stopRequested = true;
+	private ChirpZTransform chirpZTransform;	// zoom transform (only used if zoomBinSpacing > 0)
+	private float[] zoomRe;			// buffer to keep the real values of the band limited spectrum
+	private float[] zoomIm;			// buffer to keep the imaginary values of the band limited spectrum
+	private float[] zoomMag;		// buffer to keep the magnitude of the band limited spectrum
+	private int zoomBinOffset;		// bin number of the first bin of the band limited spectrum
+	private volatile float zoomBinSpacing = 0;	// bin spacing of the zoom transform (in Hz). 0 = use the full fft
+	private GoertzelDetector goertzelDetector;	// filter bank for DETECTION_MODE_STRINGS (created on demand)
+	private AutocorrelationPitchDetector autocorrelationDetector;	// for DETECTION_MODE_MPM/YIN (created on demand)
+	private volatile PeakListPitchDetector peakListDetector;		// for DETECTION_MODE_PEAKS (created on demand)
+	private volatile int detectionMode = DETECTION_MODE_SPECTRUM;
+	private volatile int hopSize;	// number of new samples between two analysed windows
+	private FixedPointFFT fixedPointFFT;		// integer fft (only used if fixedPoint is set; created on demand)
+	private int[] fixedPointRe;		// buffer to keep the real values of the (half) spectrum (fixed-point)
+	private int[] fixedPointIm;		// buffer to keep the imaginary values of the (half) spectrum (fixed-point)
+	private float[] fixedPointMag;	// logarithmic magnitude of the band (fixed-point path; created on demand)
+	private volatile boolean fixedPoint = false;	// calculate the spectrum with integer arithmetic
+	private volatile String windowType = WindowFunctions.WINDOW_BLACKMAN;	// window function (see WindowFunctions)
+	private volatile double windowParameter = WindowFunctions.DEFAULT_KAISER_BETA;	// parameter of the window function
+	private volatile boolean compactMemory = false;	// save memory (see setCompactMemory())
+	private boolean appliedCompactMemory = false;	// compact memory mode of the current buffers
+	private NoiseGate noiseGate = new NoiseGate();	// decides if something is played (see setNoiseGateEnabled())
+	private long[] hopSumOfSquares = new long[1];	// sum of the squares of the last hop (calculated by readHop())
+	private volatile boolean noiseGateEnabled = true;
+	private volatile int idleCycleCount = 0;	// number of cycles that were skipped by the noise gate
+	private OnsetDetector onsetDetector = new OnsetDetector();	// detects plucks (see setOnsetTriggered())
+	private volatile boolean onsetTriggered = false;
+	private float analysisTimeLeft = 0;		// remaining time (s) of the analysis after the last onset
+	private InstantaneousFrequencyEstimator frequencyEstimator = new InstantaneousFrequencyEstimator();	// see setPhaseRefinementEnabled()
+	private volatile boolean phaseRefinementEnabled = true;
+	private volatile boolean stopRequested = false;
+	private volatile boolean pauseRequested = false;
+	private volatile int engineState = STATE_CREATED;	// see getEngineState()
+	private final Object stateLock = new Object();	// guards the changes of engineState and pauseRequested
+	private long startTimestamp;			// time (ns) of the start or the last resume
+	private volatile long timeToFirstResult = -1;	// see getTimeToFirstResult()
+	private LatencyMonitor latencyMonitor = new LatencyMonitor();	// latencies of the pipeline stages
+	private long stageTimestamp;			// end (System.nanoTime()) of the last measured stage
 	private int failCounter = 0;			// will count how often the call to processFFTSamples()
 											// failed in a row
 
@@ -59,131 +131,1271 @@ public class AudioProcessingEngine extends Thread{
 	 * @param guitarTuner	guitar tuner instance that receive the results of this audio processing engine
 	 */
 	public AudioProcessingEngine(GuitarTuner guitarTuner) {
+		this(guitarTuner, FFTEngineFactory.ENGINE_AUTO);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param guitarTuner		guitar tuner instance that receive the results of this audio processing engine
+	 * @param fftEngineName		name of the fft engine that should be used (see FFTEngineFactory). If set to
+	 *                          'auto', the fastest engine is determined by a short benchmark when the thread starts.
+	 */
+	public AudioProcessingEngine(GuitarTuner guitarTuner, String fftEngineName) {
+		this(guitarTuner, fftEngineName, AnalysisProfile.getProfile(AnalysisProfile.DEFAULT_PROFILE));
+	}
+
+	/**
+	 * Constructor. Records from the microphone.
+	 *
+	 * @param guitarTuner		guitar tuner instance that receive the results of this audio processing engine
+	 * @param fftEngineName		name of the fft engine that should be used (see FFTEngineFactory)
+	 * @param analysisProfile	parameters of the analysis (see AnalysisProfile)
+	 */
+	public AudioProcessingEngine(GuitarTuner guitarTuner, String fftEngineName, AnalysisProfile analysisProfile) {
+		this(guitarTuner, fftEngineName, new MicrophoneAudioSource(analysisProfile.getSampleRate(),
+				analysisProfile.getBufferSize()), analysisProfile);
+		this.ownsAudioSource = true;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param guitarTuner		guitar tuner instance that receive the results of this audio processing engine
+	 * @param fftEngineName		name of the fft engine that should be used (see FFTEngineFactory)
+	 * @param audioSource		source of the audio samples (e.g. MicrophoneAudioSource, MappedFileAudioSource, ...)
+	 */
+	public AudioProcessingEngine(GuitarTuner guitarTuner, String fftEngineName, AudioSource audioSource) {
+		this(guitarTuner, fftEngineName, audioSource, AnalysisProfile.getProfile(AnalysisProfile.DEFAULT_PROFILE));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param guitarTuner		guitar tuner instance that receive the results of this audio processing engine
+	 * @param fftEngineName		name of the fft engine that should be used (see FFTEngineFactory)
+	 * @param audioSource		source of the audio samples (the sample rate of the profile is ignored; the
+	 *                          sample rate is given by the source)
+	 * @param analysisProfile	parameters of the analysis (see AnalysisProfile)
+	 */
+	public AudioProcessingEngine(GuitarTuner guitarTuner, String fftEngineName, AudioSource audioSource,
+								 AnalysisProfile analysisProfile) {
 		this.guitarTuner = guitarTuner;
-		createLookupTable();
-		fftInstance = new FFT(FFT_SIZE);
+		this.fftEngineName = fftEngineName;
+		this.audioSource = audioSource;
+		this.requestedProfile = analysisProfile;
+		this.hopSize = analysisProfile.getHopSize();
+	}
+
+	public AudioSource getAudioSource() {
+		return audioSource;
 	}
 
 	/**
-	 * Will initialize the lookup table (short to float) and populate it correctly
+	 * Will get the (shared) lookup table (short to float) from the plan cache
 	 */
 	private void createLookupTable() {
-		lookupTable = new float[65536];
-		for (int i = 0; i < lookupTable.length; i++)
-			lookupTable[i] = (i - 32768f) / 32768f;
+		lookupTable = PlanCache.getShortToFloatTable();
 	}
 
 	/**
-	 * Will convert a 16-bit short array to a float array. Uses the lookup table which has to be created first!
+	 * Will convert a 16-bit short array to a float array. Uses the lookup table (which is created on
+	 * demand) or a multiplication in compact memory mode. The results are identical.
 	 * If the size of the arrays differ, the small array will be processed completely and the big one not!
 	 *
 	 * @param in	16-bit short array (containing the PCM samples)
 	 * @param out	float array that will be filled with the result
 	 */
 	public void short2float(short[] in, float[] out) {
+		if(appliedCompactMemory) {
+			short2floatArithmetic(in, out);
+			return;
+		}
+		if(lookupTable == null)
+			createLookupTable();
 		for (int i = 0; i < Math.min(in.length, out.length); i++)
 			out[i] = lookupTable[in[i]+32768];
 	}
 
 	/**
-	 * Set the stopRequest flag. Will stop after the next cycle.
+	 * Same as short2float() but without the lookup table (256 KB)
+	 *
+	 * @param in	16-bit short array (containing the PCM samples)
+	 * @param out	float array that will be filled with the result
+	 */
+	static void short2floatArithmetic(short[] in, float[] out) {
+		for (int i = 0; i < Math.min(in.length, out.length); i++)
+			out[i] = in[i] * SHORT_TO_FLOAT;
+	}
+
+	/**
+	 * Windows 16-bit samples and packs them into the layout expected by FFT.fftReal() (see
+	 * FFT.packReal()) in one pass. No float copy of the samples is needed.
+	 *
+	 * @param pcm		16-bit samples
+	 * @param window	window table (length >= pcm.length)
+	 * @param re		array of length fftSize/2 that will receive the even samples
+	 * @param im		array of length fftSize/2 that will receive the odd samples
+	 */
+	static void packWindowedReal(short[] pcm, float[] window, float[] re, float[] im) {
+		int length = pcm.length;
+		int i;
+		for (i = 0; i < length / 2; i++) {
+			re[i] = pcm[2*i] * SHORT_TO_FLOAT * window[2*i];
+			im[i] = pcm[2*i+1] * SHORT_TO_FLOAT * window[2*i+1];
+		}
+		if(length % 2 == 1) {
+			re[i] = pcm[length-1] * SHORT_TO_FLOAT * window[length-1];
+			im[i] = 0f;
+			i++;
+		}
+		Arrays.fill(re, i, re.length, 0f);
+		Arrays.fill(im, i, im.length, 0f);
+	}
+
+	/**
+	 * Enables the compact memory mode (e.g. for watches with a small heap):
+	 * - the samples are converted by a multiplication instead of the 256 KB lookup table
+	 * - the samples are windowed and packed for the fft in one pass (no float copy of the window)
+	 * - only the band of the guitar tuner is kept of the spectrum
+	 * - the harmonic product spectrum is calculated in the spectrum buffer (the guitar tuner
+	 *   delivers no spectrum, only the hps; see GuitarTuner.setHPSInPlace())
+	 * The results are the same. The new value is used from the next cycle on.
+	 * See TunerSurface.setCompactMemory() to store the spectra of the display as 16-bit values.
+	 *
+	 * @param compactMemory		true to save memory
+	 */
+	public void setCompactMemory(boolean compactMemory) {
+		this.compactMemory = compactMemory;
+	}
+
+	public boolean isCompactMemory() {
+		return compactMemory;
+	}
+
+	/**
+	 * Enables the noise gate: the rms of every hop is compared with an adaptive estimate of the
+	 * noise floor. While nothing is played the fft and the harmonic product spectrum are skipped
+	 * and the guitar tuner is set to the idle state (see GuitarTuner.processIdle()).
+	 * Enabled by default.
+	 *
+	 * @param noiseGateEnabled	true to skip the analysis while nothing is played
+	 */
+	public void setNoiseGateEnabled(boolean noiseGateEnabled) {
+		this.noiseGateEnabled = noiseGateEnabled;
+	}
+
+	public boolean isNoiseGateEnabled() {
+		return noiseGateEnabled;
+	}
+
+	/**
+	 * Enables the refinement of the detected frequency with the phase difference of the peak bin
+	 * between two consecutive windows (see InstantaneousFrequencyEstimator). Only the complex
+	 * values of a few bins are kept. Works with the full spectrum and the zoom transform (not
+	 * with the fixed-point fft). The windows must overlap or be adjacent (hop size <= buffer size).
+	 * Enabled by default.
+	 *
+	 * @param phaseRefinementEnabled	true to refine the frequency with the phase
+	 */
+	public void setPhaseRefinementEnabled(boolean phaseRefinementEnabled) {
+		this.phaseRefinementEnabled = phaseRefinementEnabled;
+	}
+
+	public boolean isPhaseRefinementEnabled() {
+		return phaseRefinementEnabled;
+	}
+
+	/**
+	 * @return the noise gate of this engine (e.g. to show the levels). Only valid while the
+	 *         engine runs; the values are updated from the engine thread.
+	 */
+	public NoiseGate getNoiseGate() {
+		return noiseGate;
+	}
+
+	/**
+	 * Enables the onset triggered analysis: the spectrum is only calculated for MAX_ANALYSIS_TIME
+	 * seconds after a string was plucked (detected by a cheap energy based onset detector) and
+	 * as long as the string sounds (noise gate open). Otherwise the guitar tuner is set to the
+	 * idle state. Independent of this setting every onset resets the pitch history of the guitar
+	 * tuner so that the new note is locked faster.
+	 *
+	 * @param onsetTriggered	true to analyse only after an onset
+	 */
+	public void setOnsetTriggered(boolean onsetTriggered) {
+		this.onsetTriggered = onsetTriggered;
+	}
+
+	public boolean isOnsetTriggered() {
+		return onsetTriggered;
+	}
+
+	/**
+	 * @return the onset detector of this engine. Only valid while the engine runs; the values
+	 *         are updated from the engine thread.
+	 */
+	public OnsetDetector getOnsetDetector() {
+		return onsetDetector;
+	}
+
+	/**
+	 * @return number of cycles in which the analysis was skipped because nothing was played
+	 *         (noise gate closed or no onset; see setOnsetTriggered())
+	 */
+	public int getIdleCycleCount() {
+		return idleCycleCount;
+	}
+
+	/**
+	 * Calculates the memory that is used by the buffers of this engine (including the fft and
+	 * the guitar tuner). The tables that are shared by all instances (twiddle factors, windows,
+	 * lookup table) are reported by PlanCache.getRetainedHeapBytes().
+	 * Might be called from any thread; the result is only an estimate while the buffers change.
+	 *
+	 * @return number of bytes of the buffers
+	 */
+	public int getRetainedHeapBytes() {
+		int bytes = 0;
+		short[] shortBuffer;
+		bytes += (shortBuffer = audioBuffer) == null ? 0 : shortBuffer.length * 2;
+		bytes += (shortBuffer = pcmSamples) == null ? 0 : shortBuffer.length * 2;
+		SlidingWindow window = slidingWindow;
+		bytes += window == null ? 0 : window.getLength() * 2;
+		ShortRingBuffer ring = ringBuffer;
+		bytes += ring == null ? 0 : ring.getCapacity() * 2;
+		for (float[] floatBuffer : new float[][] {samples, realSamples, imagSamples, mag, zoomRe, zoomIm, zoomMag, fixedPointMag})
+			bytes += floatBuffer == null ? 0 : floatBuffer.length * 4;
+		for (int[] intBuffer : new int[][] {fixedPointRe, fixedPointIm})
+			bytes += intBuffer == null ? 0 : intBuffer.length * 4;
+		FFT fft = fftInstance;
+		bytes += fft == null ? 0 : fft.getRetainedHeapBytes();
+		ChirpZTransform zoom = chirpZTransform;
+		bytes += zoom == null ? 0 : zoom.getRetainedHeapBytes();
+		AutocorrelationPitchDetector autocorrelation = autocorrelationDetector;
+		bytes += autocorrelation == null ? 0 : autocorrelation.getRetainedHeapBytes();
+		PeakListPitchDetector peakList = peakListDetector;
+		bytes += peakList == null ? 0 : peakList.getRetainedHeapBytes();
+		bytes += guitarTuner == null ? 0 : guitarTuner.getRetainedHeapBytes();
+		return bytes;
+	}
+
+	/**
+	 * Selects the parameters of the analysis (sample rate, window and fft size, hop size, hps
+	 * order and band). The engine switches at the next cycle boundary. The recording continues
+	 * if the sample rate stays the same. Otherwise the microphone is reopened with the new sample
+	 * rate (other audio sources keep their sample rate).
+	 * Note: this also resets the hop size to the hop size of the profile.
+	 *
+	 * @param analysisProfile	new profile (see AnalysisProfile.getProfile())
+	 */
+	public void setAnalysisProfile(AnalysisProfile analysisProfile) {
+		if(analysisProfile == null)
+			throw new IllegalArgumentException("analysis profile must not be null");
+		this.hopSize = analysisProfile.getHopSize();
+		this.requestedProfile = analysisProfile;
+	}
+
+	/**
+	 * @return the profile that is used (or will be used from the next cycle on)
+	 */
+	public AnalysisProfile getAnalysisProfile() {
+		return requestedProfile;
+	}
+
+	/**
+	 * Sets the hop size of the sliding window analysis: every hopSize new samples the latest
+	 * samples (buffer size of the analysis profile) are analysed. A hop size equal to the buffer
+	 * size means no overlap. The new value is used from the next cycle on.
+	 * In the time domain detection modes (DETECTION_MODE_MPM/YIN) the hop is limited to half of
+	 * the (much shorter) window of the detector, so that these modes deliver their results with
+	 * a low latency.
+	 *
+	 * @param hopSize	number of samples between two analysed windows (1 ... buffer size)
+	 */
+	public void setHopSize(int hopSize) {
+		int maxHopSize = requestedProfile.getBufferSize();
+		if(hopSize < 1 || hopSize > maxHopSize)
+			throw new IllegalArgumentException("hop size must be between 1 and " + maxHopSize);
+		this.hopSize = hopSize;
+	}
+
+	public int getHopSize() {
+		return hopSize;
+	}
+
+	/**
+	 * Sets the method that is used to detect the pitch. The new value is used from the next cycle on.
+	 *
+	 * @param detectionMode		DETECTION_MODE_SPECTRUM: fft + harmonic product spectrum (all frequencies)
+	 *                          DETECTION_MODE_STRINGS: Goertzel filter bank (only the strings of the standard tuning)
+	 *                          DETECTION_MODE_MPM: McLeod pitch method (autocorrelation of the latest three
+	 *                          periods of the lowest frequency; much shorter than the window of the fft).
+	 *                          The first result only waits for this short window and the hop size is
+	 *                          limited to half of it (see setHopSize())
+	 *                          DETECTION_MODE_YIN: YIN (same window as DETECTION_MODE_MPM)
+	 *                          DETECTION_MODE_PEAKS: fft + harmonic matching of the strongest peaks of the
+	 *                          spectrum (no harmonic product spectrum; always uses the floating point fft
+	 *                          of the full spectrum)
+	 */
+	public void setDetectionMode(int detectionMode) {
+		if(detectionMode < DETECTION_MODE_SPECTRUM || detectionMode > DETECTION_MODE_PEAKS)
+			throw new IllegalArgumentException("unknown detection mode: " + detectionMode);
+		this.detectionMode = detectionMode;
+	}
+
+	public int getDetectionMode() {
+		return detectionMode;
+	}
+
+	/**
+	 * @return the detector of DETECTION_MODE_PEAKS (e.g. to show the ranked candidates) or null if
+	 *         it was not used yet. The values are updated from the engine thread.
+	 */
+	public PeakListPitchDetector getPeakListDetector() {
+		return peakListDetector;
+	}
+
+	/**
+	 * Selects the window function that is applied to the samples before the spectrum is calculated.
+	 * This is the trade-off between leakage and frequency resolution (e.g. hann for a better
+	 * resolution, blackman-harris for less leakage). The new value is used from the next cycle on.
+	 *
+	 * @param type			type of the window (see WindowFunctions)
+	 * @param parameter		parameter of the window (beta of the kaiser window; ignored by the other windows)
+	 */
+	public void setWindow(String type, double parameter) {
+		if(!WindowFunctions.isWindowName(type))
+			throw new IllegalArgumentException("Unknown window type: " + type);
+		this.windowParameter = parameter;
+		this.windowType = type;
+	}
+
+	public String getWindowType() {
+		return windowType;
+	}
+
+	public double getWindowParameter() {
+		return windowParameter;
+	}
+
+	/**
+	 * Switches between the float and the fixed-point (Q15, integer only) calculation of the
+	 * spectrum. The fixed-point pipeline needs no float conversion of the samples and is meant
+	 * for devices with a weak floating point unit. It always calculates the full fft (the zoom
+	 * transform is not available), but only the band of the guitar tuner is converted to the
+	 * logarithmic magnitude. It is only used in DETECTION_MODE_SPECTRUM.
+	 * The new value is used from the next cycle on.
+	 *
+	 * @param fixedPoint	true to use the fixed-point pipeline
+	 */
+	public void setFixedPoint(boolean fixedPoint) {
+		this.fixedPoint = fixedPoint;
+	}
+
+	public boolean isFixedPoint() {
+		return fixedPoint;
+	}
+
+	/**
+	 * Enables the zoom transform (chirp-z). If enabled, the spectrum is only calculated inside the
+	 * band of the guitar tuner (cut off frequencies) with the given bin spacing instead of the
+	 * full fft. The new value is used from the next cycle on.
+	 *
+	 * @param binSpacing	frequency step (in Hz) between two bins of the zoom transform. 0 disables
+	 *                      the zoom transform.
+	 */
+	public void setZoomBinSpacing(float binSpacing) {
+		if(binSpacing < 0)
+			throw new IllegalArgumentException("bin spacing must not be negative");
+		this.zoomBinSpacing = binSpacing;
+	}
+
+	public float getZoomBinSpacing() {
+		return zoomBinSpacing;
+	}
+
+	/**
+	 * Calculates the logarithmic magnitude of a complex spectrum: mag = log(sqrt(re^2 + im^2))
+	 * with re and im normalized by the fft size.
+	 *
+	 * @param re		real part of the spectrum
+	 * @param im		imaginary part of the spectrum
+	 * @param mag		result array
+	 * @param length	number of bins to process
+	 * @param fftSize	fft size (used for the normalization)
+	 */
+	static void calcLogMagnitude(float[] re, float[] im, float[] mag, int length, int fftSize) {
+		float realPower;
+		float imagPower;
+		for (int i = 0; i < length; i++) {
+			// Calc the magnitude = log(sqrt(re^2 + im^2))
+			// note that we still have to divide re and im by the fft size
+			realPower = re[i]/fftSize;
+			realPower = realPower * realPower;
+			imagPower = im[i]/fftSize;
+			imagPower = imagPower * imagPower;
+			mag[i] = (float) Math.log10(Math.sqrt(realPower + imagPower));
+		}
+	}
+
+	/**
+	 * Fast version of calcLogMagnitude(): calculates the logarithmic magnitude directly from
+	 * the squared magnitude (no division, no sqrt, no double precision math):
+	 *
+	 *   mag = log10(sqrt(re^2 + im^2) / fftSize) = log2(re^2 + im^2) * log10(2)/2 - log10(fftSize)
+	 *
+	 * The normalization is folded into the constant offset and log2 is approximated by fastLog2().
+	 * The absolute error of mag is below 0.00043 (0.0085 dB). Only the bins start ... end-1 are
+	 * calculated (e.g. the band of the guitar tuner); the other bins are set to -infinity.
+	 *
+	 * @param re		real part of the spectrum
+	 * @param im		imaginary part of the spectrum
+	 * @param mag		result array
+	 * @param start		first bin to calculate
+	 * @param end		bin after the last bin to calculate
+	 * @param fftSize	fft size (used for the normalization)
+	 */
+	static void calcFastLogMagnitude(float[] re, float[] im, float[] mag, int start, int end, int fftSize) {
+		float offset = (float) -Math.log10(fftSize);
+		float power;
+		Arrays.fill(mag, 0, start, Float.NEGATIVE_INFINITY);
+		for (int i = start; i < end; i++) {
+			power = re[i] * re[i] + im[i] * im[i];
+			if(power > 0)
+				mag[i] = fastLog2(power) * HALF_LOG10_2 + offset;
+			else
+				mag[i] = Float.NEGATIVE_INFINITY;
+		}
+		Arrays.fill(mag, end, mag.length, Float.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Same as calcFastLogMagnitude() but only stores the bins start ... start+mag.length-1
+	 * (mag[0] is the bin start). Used to keep only the band of the guitar tuner.
+	 *
+	 * @param re		real part of the spectrum
+	 * @param im		imaginary part of the spectrum
+	 * @param mag		result array (length: number of bins to calculate)
+	 * @param start		first bin to calculate
+	 * @param fftSize	fft size (used for the normalization)
+	 */
+	static void calcFastLogMagnitudeBand(float[] re, float[] im, float[] mag, int start, int fftSize) {
+		float offset = (float) -Math.log10(fftSize);
+		float power;
+		for (int i = 0; i < mag.length; i++) {
+			power = re[start + i] * re[start + i] + im[start + i] * im[start + i];
+			if(power > 0)
+				mag[i] = fastLog2(power) * HALF_LOG10_2 + offset;
+			else
+				mag[i] = Float.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Approximation of log2(x) for positive, normal floats: the exponent is taken from the bit
+	 * pattern and the log2 of the mantissa is looked up in a table with 256 entries (one per
+	 * interval of the 8 most significant mantissa bits, evaluated at the center of the interval).
+	 * The absolute error is below log2(1 + 1/512) = 0.0029.
+	 *
+	 * @param x		positive value
+	 * @return approximation of log2(x)
+	 */
+	static float fastLog2(float x) {
+		int bits = Float.floatToRawIntBits(x);
+		int exponent = ((bits >>> 23) & 0xFF) - 127;
+		return exponent + LOG2_TABLE[(bits >>> (23 - LOG2_TABLE_BITS)) & (LOG2_TABLE.length - 1)];
+	}
+
+	/**
+	 * Calculates the range of bins that lie inside the band of the guitar tuner (bandStart and
+	 * bandEnd). The bins outside are discarded by the guitar tuner anyway and don't have to be
+	 * calculated.
+	 *
+	 * @param hzPerBin	frequency step between two bins
+	 * @param binCount	number of bins of the spectrum
+	 */
+	private void updateBandBins(float hzPerBin, int binCount) {
+		bandStart = Math.min((int) Math.ceil(guitarTuner.getLowCutOffFrequency() / hzPerBin), binCount);
+		bandEnd = Math.max(bandStart, Math.min((int) (guitarTuner.getHighCutOffFrequency() / hzPerBin), binCount));
+	}
+
+	/**
+	 * Set the stopRequest flag. Will stop after the next cycle. Use release() to wait until the
+	 * engine has stopped.
 	 */
 	public void stopProcessing() {
 		stopRequested = true;
+		synchronized (stateLock) {
+			stateLock.notifyAll();		// wake up the engine if it is paused
+		}
+		LockSupport.unpark(this);		// don't wait for the next samples
+	}
+
+	/**
+	 * Pauses the engine: the audio source is closed (the microphone is released) but the thread,
+	 * the fft plans and all buffers are kept for resumeProcessing(). Blocks until the audio source
+	 * is closed. If the thread is not yet started (or still creating the fft instance and the
+	 * buffers), it will enter the paused state afterwards without blocking the caller.
+	 * Must not be called from the engine thread.
+	 */
+	public void pauseProcessing() {
+		synchronized (stateLock) {
+			if(engineState == STATE_RELEASED)
+				return;
+			pauseRequested = true;
+			LockSupport.unpark(this);	// don't wait for the next samples
+			while (engineState == STATE_RUNNING && isAlive()) {
+				try {
+					stateLock.wait();
+				} catch (InterruptedException e) {
+					Log.e(LOGTAG, "pauseProcessing: Interrupted while waiting for the engine!");
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resumes the engine after pauseProcessing(). Returns immediately; the audio source is
+	 * opened by the engine thread. See getTimeToFirstResult().
+	 */
+	public void resumeProcessing() {
+		synchronized (stateLock) {
+			pauseRequested = false;
+			stateLock.notifyAll();
+		}
 	}
 
 	/**
-	 * This method runs in a separate thread and does the audio recording and processing.
+	 * Stops the engine and waits until the thread (and the capture thread) has ended. The
+	 * engine can't be restarted afterwards. Must not be called from the engine thread.
+	 */
+	public void release() {
+		stopProcessing();
+		if(isAlive()) {
+			try {
+				join();
+			} catch (InterruptedException e) {
+				Log.e(LOGTAG, "release: Interrupted while waiting for the engine!");
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		setEngineState(STATE_RELEASED);
+	}
+
+	/**
+	 * @return state of the engine: STATE_CREATED, STATE_RUNNING, STATE_PAUSED or STATE_RELEASED
+	 */
+	public int getEngineState() {
+		return engineState;
+	}
+
+	private void setEngineState(int state) {
+		synchronized (stateLock) {
+			engineState = state;
+			stateLock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return time (ns) from the start (or the last resume) of the engine until the first result
+	 *         was delivered to the guitar tuner; -1 if there was no result yet
+	 */
+	public long getTimeToFirstResult() {
+		return timeToFirstResult;
+	}
+
+	/**
+	 * @return monitor with the latency histograms of all stages from the capture of the samples to
+	 *         the display (the TunerSurface records the drawing stages; see LatencyMonitor)
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return latencyMonitor;
+	}
+
+	/**
+	 * Records the time since the end of the last stage as latency of the given stage
+	 *
+	 * @param stage		one of the LatencyMonitor.STAGE_* constants
+	 */
+	private void endStage(int stage) {
+		long now = System.nanoTime();
+		latencyMonitor.record(stage, now - stageTimestamp);
+		stageTimestamp = now;
+	}
+
+	/**
+	 * This method runs in a separate thread and does the audio processing. The recording is done
+	 * by an AudioCaptureThread which passes the samples through a lock-free ring buffer.
 	 * From within this method the processFFTSamples() method of the guitarTuner is called and every
-	 * work that is done in the guitarTuner is also assigned to this thread (this includes drawing
-	 * the results on the surface view!)
+	 * work that is done in the guitarTuner is also assigned to this thread. A change of the analysis
+	 * profile is applied at the beginning of a cycle.
+	 * The thread keeps running while the engine is paused (see pauseProcessing()); only the audio
+	 * source is closed. It ends if stopProcessing() or release() is called. The state is set to
+	 * STATE_RELEASED in any case (also if an exception ends the thread), so that
+	 * pauseProcessing() never waits for a dead thread.
 	 */
 	public void run() {
-		float realPower;
-		float imagPower;
-		stopRequested = false;
-		Log.i(LOGTAG, "run: AudioProcessingEngine '" + this.getName() + "' started.");
-
-		// Determine buffer size for the audioRecord:
-		int minBufferSize = AudioRecord.getMinBufferSize(RECORDER_SAMPLERATE,
-				RECORDER_CHANNELS, RECORDER_AUDIO_ENCODING);
-		Log.d(LOGTAG, "constructor: min. buffer size is " + minBufferSize);
-		int audioBufferSize = Math.max(minBufferSize, BUFFER_SIZE * RECORDER_ELEMENT_SIZE) * 2;
-
-		// initialize the AudioRecord instance
-		audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, RECORDER_SAMPLERATE, RECORDER_CHANNELS,
-				RECORDER_AUDIO_ENCODING, audioBufferSize);
-
-		// allocate the buffers:
-		audioBuffer = new short[BUFFER_SIZE];
-		realSamples = new float[FFT_SIZE];
-		imagSamples = new float[FFT_SIZE];
-		mag = new float[FFT_SIZE / 2];
-
-		// Check if AudioRecord is correctly initialized:
-		if(audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
-			Log.e(LOGTAG, "run: audioRecord is null or not initialized! Abort!");
+		synchronized (stateLock) {
+			if(engineState == STATE_RELEASED)
+				return;		// released before the thread was started
+		}
+		boolean audioSourceOpen = false;
+		try {
+			startTimestamp = System.nanoTime();
+			Log.i(LOGTAG, "run: AudioProcessingEngine '" + this.getName() + "' started.");
+
+			// create the fft instance (might run the engine benchmark) and allocate the buffers.
+			// note: this is done before the state is set to RUNNING. pauseProcessing() doesn't
+			// wait for it (the engine will enter the paused state afterwards):
+			analysisProfile = requestedProfile;
+			if(ownsAudioSource && audioSource.getSampleRate() != analysisProfile.getSampleRate())
+				audioSource = new MicrophoneAudioSource(analysisProfile.getSampleRate(), analysisProfile.getBufferSize());
+			allocateBuffers(analysisProfile);
+			audioBuffer = new short[hopSize];
+			Log.i(LOGTAG, "run: Using FFT engine '" + fftInstance.getEngine().getName() + "' and analysis profile "
+					+ analysisProfile);
+			Log.i(LOGTAG, "run: Buffers: " + getRetainedHeapBytes() / 1024 + " KB (compact memory: " + appliedCompactMemory + ")");
+			PlanCache.logStatistics();
+			guitarTuner.setLatencyMonitor(latencyMonitor);
+			guitarTuner.setFrequencyEstimator(frequencyEstimator);
+			setEngineState(STATE_RUNNING);
+
+			while (!stopRequested) {
+				if(pauseRequested) {
+					waitWhilePaused();
+					continue;
+				}
+
+				// Open the audio source (e.g. start recording) and start capturing in a separate thread:
+				if(!openAudioSource()) {
+					stopRequested = true;
+					break;
+				}
+				audioSourceOpen = true;
+
+				// samples of the last run are outdated:
+				if(slidingWindow != null)
+					slidingWindow.reset();
+				noiseGate.reset();
+				onsetDetector.reset();
+				frequencyEstimator.reset();
+				analysisTimeLeft = 0;
+				failCounter = 0;
+
+				processAudio();
+
+				// Stop recording:
+				audioSourceOpen = false;
+				closeAudioSource();
+				latencyMonitor.logStatistics();
+			}
+		} finally {
+			if(audioSourceOpen)
+				closeAudioSource();		// the thread is ended by an exception
+			Log.i(LOGTAG, "run: AudioProcessingEngine '" + this.getName() + "' stopped");
+			PlanCache.trim(0);		// the tables are rebuilt by the next engine
 			stopRequested = true;
-			return;
+			setEngineState(STATE_RELEASED);
 		}
+	}
 
-		// Start recording:
-		audioRecord.startRecording();
+	/**
+	 * Blocks the engine thread in the paused state until resumeProcessing() or stopProcessing()
+	 * is called.
+	 */
+	private void waitWhilePaused() {
+		Log.i(LOGTAG, "waitWhilePaused: AudioProcessingEngine '" + this.getName() + "' paused.");
+		synchronized (stateLock) {
+			engineState = STATE_PAUSED;
+			stateLock.notifyAll();
+			while (pauseRequested && !stopRequested) {
+				try {
+					stateLock.wait();
+				} catch (InterruptedException e) {
+					Log.i(LOGTAG, "waitWhilePaused: Interrupted. stop.");
+					stopRequested = true;
+				}
+			}
+			if(!stopRequested) {
+				engineState = STATE_RUNNING;
+				startTimestamp = System.nanoTime();
+				timeToFirstResult = -1;
+			}
+		}
+		if(!stopRequested)
+			Log.i(LOGTAG, "waitWhilePaused: AudioProcessingEngine '" + this.getName() + "' resumed.");
+	}
 
-		while (!stopRequested) {
-			// Read new audio samples into the buffer:
-			if(audioRecord.read(audioBuffer, 0, audioBuffer.length) != audioBuffer.length) {
-				Log.e(LOGTAG, "run: Error while reading from AudioRecord. stop.");
+	/**
+	 * Reads the audio samples and passes the results to the guitar tuner until the engine is
+	 * stopped or paused (the audio source must be open).
+	 */
+	private void processAudio() {
+		while (!stopRequested && !pauseRequested) {
+			// Switch the analysis profile (at the cycle boundary):
+			AnalysisProfile profile = requestedProfile;
+			if(profile != analysisProfile && !switchAnalysisProfile(profile)) {
 				stopRequested = true;
 				break;
 			}
-			Log.d(LOGTAG, "run: audioBuffer: " + audioBuffer[0] + ", " + audioBuffer[1] + ", " + audioBuffer[2] + ", ..., " + audioBuffer[500]);
+			if(compactMemory != appliedCompactMemory) {
+				allocateBuffers(analysisProfile);
+				Log.i(LOGTAG, "processAudio: Buffers: " + getRetainedHeapBytes() / 1024 + " KB (compact memory: " + appliedCompactMemory + ")");
+			}
+
+			// Adapt the buffers if the hop size was changed. The time domain detectors only need a
+			// short window: they get a result every half window instead of every hop:
+			int mode = detectionMode;
+			boolean timeDomain = mode == DETECTION_MODE_MPM || mode == DETECTION_MODE_YIN;
+			int currentHopSize = hopSize;
+			if(timeDomain)
+				currentHopSize = Math.max(1, Math.min(currentHopSize, getAutocorrelationDetector().getWindowLength() / 2));
+			if(audioBuffer.length != currentHopSize)
+				audioBuffer = new short[currentHopSize];
 
-			// convert the shorts to floats and zero the imagSamples buffer:
-			for (int i = 0; i < realSamples.length; i++) {
-				realSamples[i] = 0f;
-				imagSamples[i] = 0f;
+			// Read one hop of new audio samples into the buffer:
+			if(!readHop(audioBuffer)) {
+				if(pauseRequested && !stopRequested)
+					break;		// the audio source is closed by the caller
+				if(!stopRequested)
+					Log.i(LOGTAG, "processAudio: End of audio source or error while reading. stop.");
+				stopRequested = true;
+				break;
 			}
-			short2float(audioBuffer, realSamples);
-
-			// do the fft:
-			fftInstance.applyWindow(realSamples, imagSamples);
-			fftInstance.fft(realSamples, imagSamples);
-
-			// calculate the logarithmic magnitude:
-			// note: the spectrum is symetrical around zero Hz and we are only interested in the positive
-			// part of it.
-			for (int i = 0; i < realSamples.length / 2; i++) {
-				// Calc the magnitude = log(sqrt(re^2 + im^2))
-				// note that we still have to divide re and im by the fft size
-				realPower = realSamples[i]/FFT_SIZE;
-				realPower = realPower * realPower;
-				imagPower = imagSamples[i]/FFT_SIZE;
-				imagPower = imagPower * imagPower;
-				mag[i] = (float) Math.log10(Math.sqrt(realPower + imagPower));
+			Log.d(LOGTAG, "processAudio: audioBuffer: " + audioBuffer[0] + ", " + audioBuffer[1] + ", " + audioBuffer[2] + ", ...");
+
+			// capture time of the newest sample in the hop (the samples that are still in the ring
+			// buffer were captured later):
+			stageTimestamp = System.nanoTime();
+			long captureTimestamp = captureThread.getCaptureTimestamp() - ringBuffer.available() * 1000000000L / sampleRate;
+			latencyMonitor.record(LatencyMonitor.STAGE_CAPTURE, stageTimestamp - captureTimestamp);
+			guitarTuner.setCaptureTimestamp(captureTimestamp);
+
+			// update the noise gate with the new samples (also while the window is filling up). The
+			// energy of the hop was summed up while reading it from the ring buffer:
+			float hopDuration = (float) currentHopSize / sampleRate;
+			boolean gateOpen = noiseGate.process(hopSumOfSquares[0], audioBuffer.length, hopDuration);
+
+			// look for the pluck of a string. A new note starts a new pitch history:
+			if(onsetDetector.process(audioBuffer, audioBuffer.length, sampleRate, noiseGate.getNoiseFloor())) {
+				Log.d(LOGTAG, "processAudio: Onset at sample " + onsetDetector.getLastOnsetSample());
+				guitarTuner.resetPitchHistory();
+				analysisTimeLeft = MAX_ANALYSIS_TIME;
+			} else if(noiseGateEnabled && !gateOpen) {
+				analysisTimeLeft = 0;	// the string does not sound anymore
 			}
 
-			// pass the magnitude samples to the Guitar Tuner:
-			if(!guitarTuner.processFFTSamples(mag, RECORDER_SAMPLERATE, (float)RECORDER_SAMPLERATE/(float)BUFFER_SIZE))
+			// append the new samples to the sliding window:
+			slidingWindow.write(audioBuffer, audioBuffer.length);
+
+			// wait until the window is filled. After a start or resume the older samples are zero:
+			// the step to the first captured sample would distort the spectrum (and the phase
+			// refinement would compare windows of different effective lengths). The time domain
+			// detectors only analyse their own short window at the end:
+			long requiredSamples = timeDomain ? getAutocorrelationDetector().getWindowLength() : slidingWindow.getLength();
+			if(slidingWindow.getTotalSamples() < requiredSamples)
+				continue;
+
+			// skip the analysis if nothing is played (or no string was plucked recently):
+			float updateRate = (float)sampleRate/(float)currentHopSize;
+			boolean analyse = (!noiseGateEnabled || gateOpen) && (!onsetTriggered || analysisTimeLeft > 0);
+			analysisTimeLeft -= hopDuration;
+			boolean success;
+			if(!analyse) {
+				idleCycleCount++;
+				success = guitarTuner.processIdle(updateRate);
+			} else {
+				success = analyseWindow(mode, updateRate);
+			}
+			if(!success) {
 				failCounter++;
-			else
+			} else {
 				failCounter = 0;
+				if(timeToFirstResult < 0) {
+					timeToFirstResult = System.nanoTime() - startTimestamp;
+					Log.i(LOGTAG, "processAudio: First result after " + timeToFirstResult / 1000000 + " ms");
+				}
+			}
 
-			// We stop the thread if processFFTSamples() failed 10 times in a row.
+			// We stop the thread if processFFTSamples() failed for MAX_FAIL_TIME seconds in a row.
 			// Usually this happens if the surface view is not initialized/valid and the app
 			// is in the background.
-			if(failCounter > 10) {
-				Log.w(LOGTAG, "run: Calling processFFTSamples() failed 10 times in a row. stop.");
+			if(failCounter > MAX_FAIL_TIME * sampleRate / currentHopSize) {
+				Log.w(LOGTAG, "processAudio: Calling the guitar tuner failed " + failCounter + " times in a row. stop.");
 				stopRequested = true;
 			}
 		}
 
-		// Stop recording:
-		audioRecord.stop();
-		audioRecord.release();
+	}
 
-		Log.i(LOGTAG, "run: AudioProcessingEngine '" + this.getName() + "' stopped");
-		stopRequested = true;
+	/**
+	 * Analyses the latest window of the sliding window with the given detection mode and passes
+	 * the result to the guitar tuner (we deliver one result per hop). This is the part of the
+	 * cycle of processAudio() after the hop was read and the noise gate decided to analyse it.
+	 * Package-private for the benchmarks (see prepareCycle()).
+	 *
+	 * @param mode			detection mode (see DETECTION_MODE_* constants)
+	 * @param updateRate	rate at which the results are delivered
+	 * @return true on success; false if the guitar tuner returned an error
+	 */
+	boolean analyseWindow(int mode, float updateRate) {
+		// get the latest window (oldest sample first):
+		slidingWindow.copyTo(pcmSamples);
+
+		// update the window function (the tables are only fetched if it has changed):
+		fftInstance.setWindow(windowType, windowParameter);
+		if(fixedPointFFT != null)
+			fixedPointFFT.setWindow(windowType, windowParameter);
+
+		// calculate the spectrum and pass it to the Guitar Tuner:
+		if(mode == DETECTION_MODE_STRINGS)
+			return processStringFilters(updateRate);
+		else if(mode == DETECTION_MODE_MPM || mode == DETECTION_MODE_YIN)
+			return processAutocorrelation(mode, updateRate);
+		else if(mode == DETECTION_MODE_PEAKS)
+			return processPeakList(updateRate);
+		else if(fixedPoint)
+			return processFixedPointSpectrum(updateRate);
+		else if(zoomBinSpacing > 0)
+			return processZoomSpectrum(updateRate);
+		else
+			return processFullSpectrum(updateRate);
+	}
+
+	/**
+	 * Prepares the engine for analyseWindow() without starting the thread or opening the audio
+	 * source: allocates the buffers for the requested profile and appends the given samples to
+	 * the sliding window. Only used by the benchmarks (package-private).
+	 *
+	 * @param sampleRate	sample rate of the samples
+	 * @param samples		samples that are appended to the sliding window (e.g. one window)
+	 */
+	void prepareCycle(int sampleRate, short[] samples) {
+		this.sampleRate = sampleRate;
+		if(analysisProfile != requestedProfile || fftInstance == null) {
+			analysisProfile = requestedProfile;
+			allocateBuffers(analysisProfile);
+			guitarTuner.setLatencyMonitor(latencyMonitor);
+			guitarTuner.setFrequencyEstimator(frequencyEstimator);
+		}
+		slidingWindow.write(samples, samples.length);
+	}
+
+	/**
+	 * Opens the audio source and starts the capture thread which fills the ring buffer.
+	 *
+	 * @return true on success
+	 */
+	private boolean openAudioSource() {
+		if(!audioSource.open()) {
+			Log.e(LOGTAG, "openAudioSource: Could not open audio source '" + audioSource.getName() + "'! Abort!");
+			return false;
+		}
+		sampleRate = audioSource.getSampleRate();
+		Log.i(LOGTAG, "openAudioSource: Reading from audio source '" + audioSource.getName() + "' (" + sampleRate + " Hz)");
+
+		// Start capturing in a separate thread (analysis and drawing must not delay the recording):
+		if(ringBuffer == null)
+			ringBuffer = new ShortRingBuffer(RING_BUFFER_SIZE);
+		else
+			ringBuffer.clear();		// drop the samples of the last run (the capture thread has ended)
+		captureThread = new AudioCaptureThread(audioSource, ringBuffer, this);
+		captureThread.start();
+		return true;
+	}
+
+	/**
+	 * Stops the capture thread and closes the audio source.
+	 */
+	private void closeAudioSource() {
+		captureThread.stopCapture();
+		try {
+			captureThread.join();
+		} catch (InterruptedException e) {
+			Log.e(LOGTAG, "closeAudioSource: Interrupted while waiting for the capture thread!");
+		}
+		audioSource.close();
+		Log.i(LOGTAG, "closeAudioSource: overruns: " + captureThread.getOverrunCount() + " (" + captureThread.getOverrunSamples()
+				+ " samples dropped)  underruns: " + underrunCount);
+	}
+
+	/**
+	 * Creates the fft instance and the buffers for the given profile and passes the band and hps
+	 * order to the guitar tuner. The fft instance is only recreated if the fft size changes (the
+	 * tables come from the PlanCache). If possible, the latest samples of the old sliding window
+	 * are kept so that the first result with the new profile is not delayed.
+	 * Also applies the compact memory mode.
+	 *
+	 * @param profile	new analysis profile
+	 */
+	private void allocateBuffers(AnalysisProfile profile) {
+		appliedCompactMemory = compactMemory;
+		// note: the fft engine is chosen for the zero padding of the window (see FFTEngineFactory)
+		if(fftInstance == null || fftSize != profile.getFftSize() || bufferSize != profile.getBufferSize()) {
+			if(fftInstance != null && fftSize != profile.getFftSize())
+				PlanCache.trim(0);	// the tables of the old fft size are not needed anymore
+			fftSize = profile.getFftSize();
+			fftInstance = new FFT(fftSize, fftEngineName, profile.getBufferSize());
+			realSamples = new float[fftSize / 2];
+			imagSamples = new float[fftSize / 2];
+			mag = null;
+			fixedPointFFT = null;	// will be recreated on demand
+			fixedPointRe = null;
+			fixedPointIm = null;
+			fixedPointMag = null;
+		}
+		if(appliedCompactMemory) {
+			lookupTable = null;
+			mag = null;		// created on demand (only the band)
+		} else if(mag == null || mag.length != fftSize / 2) {
+			mag = new float[fftSize / 2];
+		}
+
+		bufferSize = profile.getBufferSize();
+		SlidingWindow oldWindow = slidingWindow;
+		slidingWindow = new SlidingWindow(bufferSize);
+		if(oldWindow != null && oldWindow.isFilled()) {
+			oldWindow.copyTo(pcmSamples);	// pcmSamples still has the old length
+			slidingWindow.write(pcmSamples, pcmSamples.length);
+		}
+		pcmSamples = new short[bufferSize];
+		samples = null;				// created on demand (see getSampleBuffer())
+		chirpZTransform = null;		// depends on the band and the buffer size; will be recreated on demand
+		autocorrelationDetector = null;	// depends on the band and the sample rate; will be recreated on demand
+		peakListDetector = null;		// depends on the band; will be recreated on demand
+		frequencyEstimator.reset();		// the bins of the new spectrum are different
+		zoomRe = null;
+		zoomIm = null;
+		zoomMag = null;
+
+		guitarTuner.setCutOffFrequencies(profile.getLowCutOffFrequency(), profile.getHighCutOffFrequency());
+		guitarTuner.setHPSOrder(profile.getHpsOrder());
+		guitarTuner.setHPSInPlace(appliedCompactMemory);
 	}
 
+	/**
+	 * @return buffer for the float samples of the current window (created on demand)
+	 */
+	private float[] getSampleBuffer() {
+		if(samples == null || samples.length != bufferSize)
+			samples = new float[bufferSize];
+		return samples;
+	}
+
+	/**
+	 * Switches to another analysis profile. Only reopens the audio source if the engine records
+	 * from the microphone and the sample rate changes.
+	 *
+	 * @param profile	new analysis profile
+	 * @return true on success; false if the audio source could not be reopened
+	 */
+	private boolean switchAnalysisProfile(AnalysisProfile profile) {
+		if(profile.getSampleRate() != sampleRate) {
+			if(ownsAudioSource) {
+				closeAudioSource();
+				slidingWindow = null;	// old samples have the wrong sample rate
+				goertzelDetector = null;
+				audioSource = new MicrophoneAudioSource(profile.getSampleRate(), profile.getBufferSize());
+				if(!openAudioSource())
+					return false;
+			} else {
+				Log.i(LOGTAG, "switchAnalysisProfile: Audio source '" + audioSource.getName() + "' stays at "
+						+ sampleRate + " Hz.");
+			}
+		}
+		allocateBuffers(profile);
+		analysisProfile = profile;
+		Log.i(LOGTAG, "switchAnalysisProfile: Switched to analysis profile " + profile);
+		return true;
+	}
+
+	/**
+	 * Reads one hop from the ring buffer. Waits until enough samples are captured. The sum of the
+	 * squares of the samples is calculated in the same loop and stored in hopSumOfSquares.
+	 *
+	 * @param buffer	destination buffer (length == hop size)
+	 * @return true on success; false if stop or pause was requested or the capture thread has ended
+	 */
+	private boolean readHop(short[] buffer) {
+		hopSumOfSquares[0] = 0;
+		int count = ringBuffer.readSumOfSquares(buffer, 0, buffer.length, hopSumOfSquares);
+		if(count < buffer.length) {
+			underrunCount++;
+			while (count < buffer.length) {
+				// note: check finished first. If it is set, all samples are in the ring buffer
+				if(stopRequested || pauseRequested || (captureThread.isFinished() && ringBuffer.available() == 0))
+					return false;
+				LockSupport.parkNanos(MAX_WAIT_TIME);	// the capture thread unparks us after writing
+				count += ringBuffer.readSumOfSquares(buffer, count, buffer.length - count, hopSumOfSquares);
+			}
+		}
+		LockSupport.unpark(captureThread);	// there is space in the ring buffer again
+		return true;
+	}
+
+	/**
+	 * @return number of samples that were dropped because the analysis did not keep up with the
+	 *         recording (ring buffer full). Only live sources (microphone) drop samples.
+	 */
+	public long getOverrunSamples() {
+		return captureThread == null ? 0 : captureThread.getOverrunSamples();
+	}
+
+	/**
+	 * @return number of times samples were dropped because the ring buffer was full
+	 */
+	public int getOverrunCount() {
+		return captureThread == null ? 0 : captureThread.getOverrunCount();
+	}
+
+	/**
+	 * @return number of hops the analysis had to wait for new samples. This is normal for a live
+	 *         source (the analysis is faster than real time).
+	 */
+	public int getUnderrunCount() {
+		return underrunCount;
+	}
+
+	/**
+	 * Passes the complex spectrum of the current window to the frequency estimator of the guitar
+	 * tuner (if the phase refinement is enabled). Must be called before processFFTSamples().
+	 *
+	 * @param re		real part of the spectrum
+	 * @param im		imaginary part of the spectrum
+	 * @param firstBin	bin number of re[0]
+	 */
+	private void passSpectrumToEstimator(float[] re, float[] im, int firstBin) {
+		if(phaseRefinementEnabled)
+			frequencyEstimator.setSpectrum(re, im, firstBin, slidingWindow.getTotalSamples(), sampleRate, bufferSize);
+	}
+
+	/**
+	 * Calculates the full spectrum (0 Hz to samplerate/2) of the current window with the fft
+	 * and passes it to the guitar tuner.
+	 *
+	 * @param updateRate	rate at which the guitar tuner is called
+	 * @return result of processFFTSamples()
+	 */
+	private boolean processFullSpectrum(float updateRate) {
+		int binOffset = calcFullSpectrum();
+		passSpectrumToEstimator(realSamples, imagSamples, 0);
+		return guitarTuner.processFFTSamples(mag, binOffset, (float) sampleRate / fftSize, updateRate);
+	}
+
+	/**
+	 * Calculates the full spectrum of the current window with the fft and detects the pitch from
+	 * the strongest peaks (see PeakListPitchDetector). No harmonic product spectrum is calculated.
+	 *
+	 * @param updateRate	rate at which the guitar tuner is called
+	 * @return result of processDetectedFrequency()
+	 */
+	private boolean processPeakList(float updateRate) {
+		if(peakListDetector == null) {
+			peakListDetector = new PeakListPitchDetector(PeakListPitchDetector.DEFAULT_MAX_PEAKS,
+					guitarTuner.getLowCutOffFrequency(), guitarTuner.getHighCutOffFrequency());
+			Log.i(LOGTAG, "processPeakList: Created detector (" + PeakListPitchDetector.DEFAULT_MAX_PEAKS + " peaks, "
+					+ guitarTuner.getLowCutOffFrequency() + " - " + guitarTuner.getHighCutOffFrequency() + " Hz)");
+		}
+
+		int binOffset = calcFullSpectrum();
+		float frequency = peakListDetector.detect(mag, binOffset, (float) sampleRate / fftSize);
+		endStage(LatencyMonitor.STAGE_HPS);		// the peak list replaces the hps
+		return guitarTuner.processDetectedFrequency(frequency, updateRate);
+	}
+
+	/**
+	 * Calculates the logarithmic magnitude of the full spectrum (0 Hz to samplerate/2) of the
+	 * current window with the fft (only inside the band of the guitar tuner; in compact memory
+	 * mode mag only contains the band). The complex spectrum is kept in realSamples/imagSamples.
+	 *
+	 * @return bin number of mag[0]
+	 */
+	private int calcFullSpectrum() {
+		// do the fft:
+		// note: the signal is real valued. Therefore we use the real fft which packs the
+		// (zero padded) signal into a complex signal of half the length. The result is only
+		// the positive half of the spectrum (which is symmetrical around zero Hz).
+		// The fft size is much bigger than the number of samples (zero padding). Depending on the
+		// engine, the fft skips the butterflies that would only process zeros.
+		if(appliedCompactMemory) {
+			packWindowedReal(pcmSamples, fftInstance.getWindow(pcmSamples.length), realSamples, imagSamples);
+		} else {
+			float[] samples = getSampleBuffer();
+			short2float(pcmSamples, samples);
+			fftInstance.applyWindow(samples);
+			fftInstance.packReal(samples, realSamples, imagSamples);
+		}
+		endStage(LatencyMonitor.STAGE_CONVERSION);
+		fftInstance.fftReal(realSamples, imagSamples, pcmSamples.length);	// only the first samples are nonzero
+		endStage(LatencyMonitor.STAGE_FFT);
+
+		// calculate the logarithmic magnitude (only inside the band of the guitar tuner):
+		float hzPerBin = (float) sampleRate / fftSize;
+		updateBandBins(hzPerBin, fftSize / 2);
+		if(appliedCompactMemory) {
+			// only keep the band:
+			if(mag == null || mag.length != bandEnd - bandStart)
+				mag = new float[bandEnd - bandStart];
+			calcFastLogMagnitudeBand(realSamples, imagSamples, mag, bandStart, fftSize);
+			endStage(LatencyMonitor.STAGE_MAGNITUDE);
+			return bandStart;
+		}
+		calcFastLogMagnitude(realSamples, imagSamples, mag, bandStart, bandEnd, fftSize);
+		endStage(LatencyMonitor.STAGE_MAGNITUDE);
+		return 0;
+	}
+
+	/**
+	 * Calculates the full spectrum of the current window with the fixed-point fft (integer
+	 * arithmetic on the 16-bit samples) and passes the band of the guitar tuner to it (like the
+	 * compact path of calcFullSpectrum(): mag only holds the band and starts at bin bandStart).
+	 * The complex bins of the band are converted to float for the phase refinement.
+	 *
+	 * @param updateRate	rate at which the guitar tuner is called
+	 * @return result of processFFTSamples()
+	 */
+	private boolean processFixedPointSpectrum(float updateRate) {
+		if(fixedPointFFT == null) {
+			fixedPointFFT = new FixedPointFFT(fftSize);
+			fixedPointFFT.setWindow(windowType, windowParameter);
+			fixedPointRe = new int[fftSize / 2];
+			fixedPointIm = new int[fftSize / 2];
+			Log.i(LOGTAG, "processFixedPointSpectrum: Created fixed-point fft");
+		}
+
+		// do the fft (block floating point; the conversion is part of the fft):
+		endStage(LatencyMonitor.STAGE_CONVERSION);
+		int exponent = fixedPointFFT.fftRealWindowed(pcmSamples, pcmSamples.length, fixedPointRe, fixedPointIm);
+		endStage(LatencyMonitor.STAGE_FFT);
+
+		float hzPerBin = (float) sampleRate / fftSize;
+		updateBandBins(hzPerBin, fftSize / 2);
+		int bandLength = bandEnd - bandStart;
+
+		// the phase refinement needs the complex bins. They are scaled with the block exponent,
+		// so that the powers of two frames can be compared:
+		if(phaseRefinementEnabled) {
+			float scale = Math.scalb(1f, exponent);
+			for (int i = 0; i < bandLength; i++) {
+				realSamples[i] = fixedPointRe[bandStart + i] * scale;
+				imagSamples[i] = fixedPointIm[bandStart + i] * scale;
+			}
+		}
+
+		// calculate the squared magnitude (integer) and convert it to the logarithmic magnitude
+		// (only inside the band of the guitar tuner):
+		if(fixedPointMag == null || fixedPointMag.length != bandLength)
+			fixedPointMag = new float[bandLength];
+		FixedPointFFT.calcSquaredMagnitude(fixedPointRe, fixedPointIm, fixedPointRe, bandStart, bandEnd);
+		fixedPointFFT.calcLogMagnitudeBand(fixedPointRe, exponent, fixedPointMag, bandStart, bandEnd, 0);
+		endStage(LatencyMonitor.STAGE_MAGNITUDE);
+		passSpectrumToEstimator(realSamples, imagSamples, bandStart);
+
+		return guitarTuner.processFFTSamples(fixedPointMag, bandStart, hzPerBin, updateRate);
+	}
+
+	/**
+	 * Calculates the spectrum of the current window only inside the band of the guitar tuner
+	 * (zoom transform) and passes it to the guitar tuner.
+	 *
+	 * @param updateRate	rate at which the guitar tuner is called
+	 * @return result of processFFTSamples()
+	 */
+	private boolean processZoomSpectrum(float updateRate) {
+		// (re)create the zoom transform if the bin spacing has changed:
+		float binSpacing = zoomBinSpacing;
+		if(chirpZTransform == null || chirpZTransform.getBinSpacing() != binSpacing) {
+			// align the band to multiples of the bin spacing (the tuner needs bin numbers):
+			int firstBin = (int) Math.ceil(guitarTuner.getLowCutOffFrequency() / binSpacing);
+			int lastBin = (int) (guitarTuner.getHighCutOffFrequency() / binSpacing);
+			chirpZTransform = new ChirpZTransform(bufferSize, sampleRate, firstBin * binSpacing,
+					binSpacing, lastBin - firstBin + 1, fftInstance.getEngine().getName());
+			zoomBinOffset = firstBin;
+			zoomRe = new float[chirpZTransform.getBinCount()];
+			zoomIm = new float[chirpZTransform.getBinCount()];
+			zoomMag = new float[chirpZTransform.getBinCount()];
+			frequencyEstimator.reset();
+			Log.i(LOGTAG, "processZoomSpectrum: Created zoom transform with " + zoomMag.length + " bins ("
+					+ binSpacing + " Hz spacing)");
+		}
+
+		// do the zoom transform:
+		float[] samples = getSampleBuffer();
+		short2float(pcmSamples, samples);
+		fftInstance.applyWindow(samples);
+		endStage(LatencyMonitor.STAGE_CONVERSION);
+		chirpZTransform.transform(samples, zoomRe, zoomIm);
+		endStage(LatencyMonitor.STAGE_FFT);
+
+		// calculate the logarithmic magnitude (same scaling as the full spectrum):
+		calcFastLogMagnitude(zoomRe, zoomIm, zoomMag, 0, zoomMag.length, fftSize);
+		endStage(LatencyMonitor.STAGE_MAGNITUDE);
+		passSpectrumToEstimator(zoomRe, zoomIm, zoomBinOffset);
+
+		return guitarTuner.processFFTSamples(zoomMag, zoomBinOffset, binSpacing, updateRate);
+	}
+
+	/**
+	 * Detects the pitch of the current window with the Goertzel filter bank (no fft) and
+	 * passes it to the guitar tuner.
+	 *
+	 * @param updateRate	rate at which the guitar tuner is called
+	 * @return result of processDetectedFrequency()
+	 */
+	private boolean processStringFilters(float updateRate) {
+		if(goertzelDetector == null) {
+			float[] stringFrequencies = new float[GuitarTuner.STANDARD_TUNING.length];
+			for (int i = 0; i < stringFrequencies.length; i++)
+				stringFrequencies[i] = guitarTuner.pitchIndexToFrequency(GuitarTuner.STANDARD_TUNING[i]);
+			goertzelDetector = new GoertzelDetector(sampleRate, stringFrequencies, GOERTZEL_HARMONICS);
+		}
+
+		float[] samples = getSampleBuffer();
+		short2float(pcmSamples, samples);
+		fftInstance.applyWindow(samples);
+		endStage(LatencyMonitor.STAGE_CONVERSION);
+		float frequency = goertzelDetector.detect(samples, samples.length);
+		endStage(LatencyMonitor.STAGE_FFT);
+		return guitarTuner.processDetectedFrequency(frequency, updateRate);
+	}
+
+	/**
+	 * Detects the pitch of the latest samples of the current window in the time domain (McLeod
+	 * pitch method or YIN with the autocorrelation calculated by the fft) and passes it to the
+	 * guitar tuner. Only a few periods of the lowest frequency are analysed.
+	 *
+	 * @param mode			DETECTION_MODE_MPM or DETECTION_MODE_YIN
+	 * @param updateRate	rate at which the guitar tuner is called
+	 * @return result of processDetectedFrequency()
+	 */
+	private boolean processAutocorrelation(int mode, float updateRate) {
+		AutocorrelationPitchDetector detector = getAutocorrelationDetector();
+		endStage(LatencyMonitor.STAGE_CONVERSION);
+		float frequency = detector.detect(pcmSamples, pcmSamples.length,
+				mode == DETECTION_MODE_YIN ? AutocorrelationPitchDetector.ALGORITHM_YIN : AutocorrelationPitchDetector.ALGORITHM_MPM);
+		endStage(LatencyMonitor.STAGE_FFT);
+		return guitarTuner.processDetectedFrequency(frequency, updateRate);
+	}
+
+	/**
+	 * @return detector for DETECTION_MODE_MPM/YIN (created on demand for the current band, sample
+	 *         rate and window length)
+	 */
+	private AutocorrelationPitchDetector getAutocorrelationDetector() {
+		if(autocorrelationDetector == null) {
+			// the window of the detector must fit into the window of the engine:
+			float minFrequency = Math.max(guitarTuner.getLowCutOffFrequency(),
+					(float) AutocorrelationPitchDetector.WINDOW_PERIODS * sampleRate / pcmSamples.length + 1);
+			float maxFrequency = Math.min(guitarTuner.getHighCutOffFrequency(), sampleRate * 0.45f);
+			autocorrelationDetector = new AutocorrelationPitchDetector(sampleRate, minFrequency, maxFrequency,
+					fftInstance.getEngine().getName());
+			Log.i(LOGTAG, "getAutocorrelationDetector: Created detector with a window of "
+					+ autocorrelationDetector.getWindowLength() + " samples (" + minFrequency + " - " + maxFrequency + " Hz)");
+		}
+		return autocorrelationDetector;
+	}
 }
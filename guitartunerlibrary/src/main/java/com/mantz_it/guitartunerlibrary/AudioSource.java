@@ -0,0 +1,76 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Audio Source</h1>
+ *
+ * Module:      AudioSource.java
+ * Description: Interface of the sources that deliver the audio samples to the
+ *              AudioProcessingEngine (microphone, audio file, synthetic signal, ...).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public interface AudioSource {
+
+	/**
+	 * Opens the source (e.g. starts the recording). Called from the thread of the
+	 * AudioProcessingEngine before the first read().
+	 *
+	 * @return true on success; false if the source is not available
+	 */
+	public boolean open();
+
+	/**
+	 * @return sample rate of the source (in Hz). Valid after open() was successful.
+	 */
+	public int getSampleRate();
+
+	/**
+	 * @return true if the source delivers the samples in real time and can't wait (e.g. the
+	 *         microphone). Samples of a live source are dropped if the analysis can't keep up.
+	 */
+	public boolean isLive();
+
+	/**
+	 * Reads mono 16-bit samples from the source. Blocks until length samples are available
+	 * (except at the end of a finite source).
+	 *
+	 * @param buffer	destination buffer
+	 * @param offset	index of the first sample in buffer
+	 * @param length	number of samples to read
+	 * @return number of samples that were read; -1 if the end of the source is reached or on error
+	 */
+	public int read(short[] buffer, int offset, int length);
+
+	/**
+	 * @return System.nanoTime() at which the last sample returned by read() was captured (e.g. by
+	 *         the ADC); 0 if the source doesn't know it (the time at which read() returned is used)
+	 */
+	public long getCaptureTimestamp();
+
+	/**
+	 * Closes the source and releases its resources
+	 */
+	public void close();
+
+	/**
+	 * @return name of the source (for logging)
+	 */
+	public String getName();
+}
@@ -0,0 +1,242 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Autocorrelation Pitch Detector</h1>
+ *
+ * Module:      AutocorrelationPitchDetector.java
+ * Description: Time domain pitch detection with the McLeod Pitch Method (MPM) or YIN. The
+ *              autocorrelation of a short window (a few periods of the lowest frequency) is
+ *              calculated with the FFT (inverse transform of the power spectrum).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class AutocorrelationPitchDetector {
+	public static final int ALGORITHM_MPM = 0;		// McLeod Pitch Method (normalized square difference function)
+	public static final int ALGORITHM_YIN = 1;		// YIN (cumulative mean normalized difference function)
+	public static final int WINDOW_PERIODS = 3;		// length of the window in periods of the lowest frequency
+	private static final float MPM_CUTOFF = 0.93f;	// first key maximum that reaches this fraction of the highest one is the pitch
+	private static final float MPM_MIN_CLARITY = 0.5f;	// no pitch if the normalized peak is lower
+	private static final float YIN_THRESHOLD = 0.15f;	// first dip below this value is the pitch
+	private static final float SHORT_TO_FLOAT = 1f / 32768f;
+
+	private int sampleRate;
+	private int minLag;			// smallest period (in samples) that is searched (highest frequency)
+	private int maxLag;			// largest period (in samples) that is searched (lowest frequency)
+	private int windowLength;	// number of samples that are analysed
+	private FFT fft;			// size: next power of 2 >= windowLength + maxLag (no circular overlap)
+	private float[] x;			// samples of the window
+	private float[] re;			// fft buffer (real part)
+	private float[] im;			// fft buffer (imaginary part)
+	private float[] power;		// power spectrum (bins 0 to fftSize/2-1)
+	private float[] function;	// nsdf (MPM) or cmndf (YIN) for the lags 0 to maxLag+1
+	private int[] keyMaxima;	// lags of the key maxima of the nsdf (MPM)
+	private float clarity;		// confidence of the last result (0 ... 1)
+
+	/**
+	 * constructor.
+	 *
+	 * @param sampleRate		sample rate of the signal
+	 * @param minFrequency		lowest frequency that should be detected (in Hz)
+	 * @param maxFrequency		highest frequency that should be detected (in Hz)
+	 * @param fftEngineName		name of the fft engine (see FFTEngineFactory)
+	 */
+	public AutocorrelationPitchDetector(int sampleRate, float minFrequency, float maxFrequency, String fftEngineName) {
+		if(minFrequency <= 0 || maxFrequency <= minFrequency || maxFrequency >= sampleRate / 2)
+			throw new IllegalArgumentException("invalid frequency range: " + minFrequency + " - " + maxFrequency + " Hz");
+		this.sampleRate = sampleRate;
+		this.minLag = Math.max(2, (int) (sampleRate / maxFrequency));
+		this.maxLag = (int) Math.ceil(sampleRate / minFrequency);
+		this.windowLength = WINDOW_PERIODS * maxLag;
+		int fftSize = Integer.highestOneBit(windowLength + maxLag + 1) * 2;
+		this.fft = new FFT(fftSize, fftEngineName);
+		this.x = new float[windowLength];
+		this.re = new float[fftSize / 2];
+		this.im = new float[fftSize / 2];
+		this.power = new float[fftSize / 2];
+		this.function = new float[maxLag + 2];
+		this.keyMaxima = new int[maxLag / 2 + 2];	// positive lobes are separated by at least one lag
+	}
+
+	/**
+	 * @return number of samples that are needed by detect() (a few periods of the lowest frequency)
+	 */
+	public int getWindowLength() {
+		return windowLength;
+	}
+
+	/**
+	 * @return confidence of the last detected pitch (0 ... 1; peak of the nsdf or 1 - dip of the cmndf)
+	 */
+	public float getClarity() {
+		return clarity;
+	}
+
+	/**
+	 * @return number of bytes used by the buffers and the fft of this detector
+	 */
+	public int getRetainedHeapBytes() {
+		return (x.length + re.length + im.length + power.length + function.length + keyMaxima.length) * 4 + fft.getRetainedHeapBytes();
+	}
+
+	/**
+	 * Detects the pitch of the latest getWindowLength() samples.
+	 *
+	 * @param pcm			16-bit samples (oldest first)
+	 * @param end			index after the newest sample in pcm (>= getWindowLength())
+	 * @param algorithm		ALGORITHM_MPM or ALGORITHM_YIN
+	 * @return frequency of the pitch (in Hz); 0 if no pitch was found
+	 */
+	public float detect(short[] pcm, int end, int algorithm) {
+		int offset = end - windowLength;
+		for (int i = 0; i < windowLength; i++)
+			x[i] = pcm[offset + i] * SHORT_TO_FLOAT;
+		calcAutocorrelation();
+
+		float lag = algorithm == ALGORITHM_YIN ? searchYIN() : searchMPM();
+		return lag > 0 ? sampleRate / lag : 0;
+	}
+
+	/**
+	 * Calculates the autocorrelation r(tau) = sum x[j]*x[j+tau] of the window for the lags 0 to
+	 * maxLag+1 (stored in function): the inverse fft of the power spectrum. The power spectrum is
+	 * real and symmetric, therefore the inverse transform equals the forward transform (divided
+	 * by the fft size) and the real fft can be used for both transforms.
+	 */
+	private void calcAutocorrelation() {
+		int half = re.length;
+		int fftSize = half * 2;
+
+		// spectrum of the zero padded window:
+		fft.packReal(x, re, im);
+		fft.fftReal(re, im, windowLength);
+		for (int k = 0; k < half; k++)
+			power[k] = re[k] * re[k] + im[k] * im[k];
+		float nyquist = fft.getNyquist();
+
+		// pack the (symmetric) power spectrum P[0 ... fftSize-1] as real signal:
+		for (int i = 0; i < half; i++) {
+			int even = 2 * i;
+			int odd = even + 1;
+			re[i] = even <= half ? (even == half ? nyquist * nyquist : power[even]) : power[fftSize - even];
+			im[i] = odd < half ? power[odd] : power[fftSize - odd];
+		}
+		fft.fftReal(re, im);
+		for (int tau = 0; tau < function.length; tau++)
+			function[tau] = re[tau] / fftSize;
+	}
+
+	/**
+	 * McLeod Pitch Method: calculates the normalized square difference function
+	 * nsdf(tau) = 2*r(tau) / m(tau) with m(tau) = sum (x[j]^2 + x[j+tau]^2) and selects the first
+	 * key maximum (highest maximum between two zero crossings) that reaches MPM_CUTOFF of the
+	 * highest one.
+	 *
+	 * @return period (in samples, interpolated); 0 if no pitch was found
+	 */
+	private float searchMPM() {
+		// nsdf (in place of the autocorrelation):
+		float m = 2 * function[0];
+		for (int tau = 0; tau < function.length; tau++) {
+			if(tau > 0)
+				m -= x[tau - 1] * x[tau - 1] + x[windowLength - tau] * x[windowLength - tau];
+			function[tau] = m > 0 ? 2 * function[tau] / m : 0;
+		}
+
+		// find the key maxima (highest value of each positive lobe after the first negative zero
+		// crossing) and the highest one:
+		int keyMaximaCount = 0;
+		float highest = 0;
+		int tau = 1;
+		while (tau <= maxLag && function[tau] > 0)
+			tau++;
+		while (tau <= maxLag) {
+			while (tau <= maxLag && function[tau] <= 0)
+				tau++;
+			int best = tau;
+			for (; tau <= maxLag && function[tau] > 0; tau++) {
+				if(function[tau] > function[best])
+					best = tau;
+			}
+			// ignore maxima outside of the range (or at its border; the peak might be outside):
+			if(best >= minLag && best < maxLag) {
+				keyMaxima[keyMaximaCount++] = best;
+				highest = Math.max(highest, function[best]);
+			}
+		}
+		clarity = 0;
+		if(highest < MPM_MIN_CLARITY)
+			return 0;
+
+		// the first key maximum that is high enough is the period:
+		for (int i = 0; i < keyMaximaCount; i++) {
+			int keyMax = keyMaxima[i];
+			if(function[keyMax] >= MPM_CUTOFF * highest) {
+				clarity = Math.min(1, function[keyMax]);
+				return keyMax + parabolicOffset(keyMax);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * YIN: calculates the cumulative mean normalized difference function of the difference
+	 * function d(tau) = m(tau) - 2*r(tau) and selects the first dip below YIN_THRESHOLD.
+	 *
+	 * @return period (in samples, interpolated); 0 if no pitch was found
+	 */
+	private float searchYIN() {
+		// cmndf (in place of the autocorrelation):
+		float m = 2 * function[0];
+		float sum = 0;
+		function[0] = 1;
+		for (int tau = 1; tau < function.length; tau++) {
+			m -= x[tau - 1] * x[tau - 1] + x[windowLength - tau] * x[windowLength - tau];
+			float difference = Math.max(0, m - 2 * function[tau]);
+			sum += difference;
+			function[tau] = sum > 0 ? difference * tau / sum : 1;
+		}
+
+		// first dip below the threshold (walk down to the local minimum):
+		clarity = 0;
+		for (int tau = minLag; tau < maxLag; tau++) {
+			if(function[tau] < YIN_THRESHOLD) {
+				while (tau + 1 < maxLag && function[tau + 1] < function[tau])
+					tau++;
+				clarity = Math.max(0, 1 - function[tau]);
+				return tau + parabolicOffset(tau);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param tau	index of a local extremum in function (0 < tau < function.length-1)
+	 * @return offset of the interpolated extremum (-0.5 ... 0.5) of a parabola through tau-1, tau and tau+1
+	 */
+	private float parabolicOffset(int tau) {
+		float a = function[tau - 1];
+		float b = function[tau];
+		float c = function[tau + 1];
+		float denominator = a - 2 * b + c;
+		if(denominator == 0)
+			return 0;
+		return Math.max(-0.5f, Math.min(0.5f, 0.5f * (a - c) / denominator));
+	}
+}
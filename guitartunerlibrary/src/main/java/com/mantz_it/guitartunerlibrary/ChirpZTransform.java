@@ -0,0 +1,179 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Chirp-Z Transform</h1>
+ *
+ * Module:      ChirpZTransform.java
+ * Description: Zoom transform (chirp-z / Bluestein) that evaluates the spectrum
+ *              only inside a frequency band at a chosen bin spacing. The work
+ *              scales with the band of interest instead of the sample rate.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class ChirpZTransform {
+
+	private int inputLength;		// number of input samples (N)
+	private int binCount;			// number of output bins (M)
+	private int convolutionLength;	// fft length used for the fast convolution (L >= N+M-1, power of 2)
+	private float startFrequency;	// frequency of the first output bin (in Hz)
+	private float binSpacing;		// frequency step between two output bins (in Hz)
+	private FFTEngine engine;		// complex fft engine of length L
+
+	// y[n] = x[n] * A^-n * W^(n^2/2)  (modulation + pre-chirp)
+	private float[] inputChirpRe;
+	private float[] inputChirpIm;
+	// X[k] = W^(k^2/2) * (y conv v)[k]  (post-chirp)
+	private float[] outputChirpRe;
+	private float[] outputChirpIm;
+	// fft of the convolution kernel v[m] = W^(-m^2/2)
+	private float[] kernelRe;
+	private float[] kernelIm;
+
+	// work buffers for the convolution
+	private float[] workRe;
+	private float[] workIm;
+
+	/**
+	 * constructor. The band is [startFrequency, startFrequency + (binCount-1) * binSpacing].
+	 *
+	 * @param inputLength		number of (real) input samples
+	 * @param sampleRate		sample rate of the input
+	 * @param startFrequency	frequency of the first output bin (in Hz)
+	 * @param binSpacing		frequency step between two output bins (in Hz)
+	 * @param binCount			number of output bins
+	 * @param engineName		name of the fft engine for the convolution (see FFTEngineFactory)
+	 */
+	public ChirpZTransform(int inputLength, int sampleRate, float startFrequency, float binSpacing, int binCount, String engineName) {
+		this.inputLength = inputLength;
+		this.binCount = binCount;
+		this.startFrequency = startFrequency;
+		this.binSpacing = binSpacing;
+
+		convolutionLength = 1;
+		while (convolutionLength < inputLength + binCount - 1)
+			convolutionLength *= 2;
+		engine = FFTEngineFactory.createEngine(engineName, convolutionLength, inputLength);	// the input is zero padded
+
+		// note: the angles grow with n^2. We calculate them in double precision.
+		double chirpRate = Math.PI * binSpacing / sampleRate;		// W^(n^2/2) = exp(-j * chirpRate * n^2)
+		double modulationRate = 2 * Math.PI * startFrequency / sampleRate;	// A^-n = exp(-j * modulationRate * n)
+
+		inputChirpRe = new float[inputLength];
+		inputChirpIm = new float[inputLength];
+		for (int n = 0; n < inputLength; n++) {
+			double angle = -chirpRate * ((double) n * n) - modulationRate * n;
+			inputChirpRe[n] = (float) Math.cos(angle);
+			inputChirpIm[n] = (float) Math.sin(angle);
+		}
+
+		outputChirpRe = new float[binCount];
+		outputChirpIm = new float[binCount];
+		for (int k = 0; k < binCount; k++) {
+			double angle = -chirpRate * ((double) k * k);
+			outputChirpRe[k] = (float) Math.cos(angle);
+			outputChirpIm[k] = (float) Math.sin(angle);
+		}
+
+		// kernel v[m] for m = -(N-1) ... M-1 (negative indices wrap around):
+		kernelRe = new float[convolutionLength];
+		kernelIm = new float[convolutionLength];
+		for (int m = 0; m < binCount; m++) {
+			double angle = chirpRate * ((double) m * m);
+			kernelRe[m] = (float) Math.cos(angle);
+			kernelIm[m] = (float) Math.sin(angle);
+		}
+		for (int m = 1; m < inputLength; m++) {
+			double angle = chirpRate * ((double) m * m);
+			kernelRe[convolutionLength - m] = (float) Math.cos(angle);
+			kernelIm[convolutionLength - m] = (float) Math.sin(angle);
+		}
+		engine.fft(kernelRe, kernelIm);
+
+		workRe = new float[convolutionLength];
+		workIm = new float[convolutionLength];
+	}
+
+	/**
+	 * @return number of bytes of the buffers that are owned by this instance (including its fft engine)
+	 */
+	public int getRetainedHeapBytes() {
+		return (inputChirpRe.length + inputChirpIm.length + outputChirpRe.length + outputChirpIm.length
+				+ kernelRe.length + kernelIm.length + workRe.length + workIm.length) * 4 + engine.getRetainedHeapBytes();
+	}
+
+	public int getInputLength() {
+		return inputLength;
+	}
+
+	public int getBinCount() {
+		return binCount;
+	}
+
+	public float getStartFrequency() {
+		return startFrequency;
+	}
+
+	public float getBinSpacing() {
+		return binSpacing;
+	}
+
+	/**
+	 * Computes the spectrum of the real signal x at the frequencies
+	 * startFrequency + k * binSpacing (k < binCount). The result equals the one of a (zero padded)
+	 * fft at these frequencies.
+	 *
+	 * @param x			real valued input signal (length >= inputLength; only inputLength samples are used)
+	 * @param outRe		real part of the result (length >= binCount)
+	 * @param outIm		imaginary part of the result (length >= binCount)
+	 */
+	public void transform(float[] x, float[] outRe, float[] outIm) {
+		float tr, ti;
+
+		// pre-chirp and zero padding:
+		for (int n = 0; n < inputLength; n++) {
+			workRe[n] = x[n] * inputChirpRe[n];
+			workIm[n] = x[n] * inputChirpIm[n];
+		}
+		for (int n = inputLength; n < convolutionLength; n++) {
+			workRe[n] = 0f;
+			workIm[n] = 0f;
+		}
+
+		// fast convolution with the kernel: ifft(fft(y) * fft(v))
+		// note: the inverse fft is calculated as conj(fft(conj(.))) / L
+		engine.fft(workRe, workIm, inputLength);
+		for (int i = 0; i < convolutionLength; i++) {
+			tr = workRe[i] * kernelRe[i] - workIm[i] * kernelIm[i];
+			ti = workRe[i] * kernelIm[i] + workIm[i] * kernelRe[i];
+			workRe[i] = tr;
+			workIm[i] = -ti;
+		}
+		engine.fft(workRe, workIm);
+
+		// post-chirp (and the remaining conj and 1/L of the inverse fft):
+		float scale = 1f / convolutionLength;
+		for (int k = 0; k < binCount; k++) {
+			tr = workRe[k] * scale;
+			ti = -workIm[k] * scale;
+			outRe[k] = tr * outputChirpRe[k] - ti * outputChirpIm[k];
+			outIm[k] = tr * outputChirpIm[k] + ti * outputChirpRe[k];
+		}
+	}
+}
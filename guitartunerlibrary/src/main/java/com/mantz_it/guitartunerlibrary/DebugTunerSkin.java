@@ -50,17 +50,26 @@ public class DebugTunerSkin extends TunerSkin {
 		// narrow to the range: 50Hz-500Hz:
 		int startFrequency = 50;
 		int endFrequency = 500;
-		int startIndex = (int) (startFrequency / tuner.getHzPerSample());
-		int endIndex = (int) (endFrequency / tuner.getHzPerSample());
-		float samplesPerPx = (float) (endIndex - startIndex) / (float) width;        // number of fft samples per one pixel
-		float hzPerPx = tuner.getHzPerSample() * samplesPerPx;    // frequency span (in Hz) of one pixel
 
 		// Clear the canvas
 		c.drawRect(0, 0, width, height, backgroundPaint);
 
-
-		drawSpectrum(c, tuner.isValid() ? fftPaint : invalidPaint, tuner.getMag(), startIndex, endIndex, -9f, -2f, tuner.getHzPerSample());
-		drawSpectrum(c, tuner.isValid() ? highlightPaint : invalidPaint, tuner.getHPS(), startIndex, endIndex, -35f, -15f, tuner.getHzPerSample());
+		float hzPerPx = (endFrequency - startFrequency) / (float) width;	// frequency span (in Hz) of one pixel
+
+		// note: if the frequency was not detected from a spectrum, there is no spectrum to draw.
+		// In compact memory mode there is only the hps (no mag).
+		if(tuner.getHPS() != null) {
+			// note: the spectrum might be band limited (first index is bin number getBinOffset())
+			int startIndex = Math.max(0, (int) (startFrequency / tuner.getHzPerSample()) - tuner.getBinOffset());
+			int endIndex = Math.min(tuner.getHPS().length - 1, (int) (endFrequency / tuner.getHzPerSample()) - tuner.getBinOffset());
+			startFrequency = (int) ((startIndex + tuner.getBinOffset()) * tuner.getHzPerSample());
+			float samplesPerPx = (float) (endIndex - startIndex) / (float) width;        // number of fft samples per one pixel
+			hzPerPx = tuner.getHzPerSample() * samplesPerPx;    // frequency span (in Hz) of one pixel
+
+			if(tuner.getMag() != null)
+				drawSpectrum(c, tuner.isValid() ? fftPaint : invalidPaint, tuner.getMag(), startIndex, endIndex, -9f, -2f, tuner.getHzPerSample());
+			drawSpectrum(c, tuner.isValid() ? highlightPaint : invalidPaint, tuner.getHPS(), startIndex, endIndex, -35f, -15f, tuner.getHzPerSample());
+		}
 
 		// Draw detected (relevant) frequency component and pitch + debug info
 		if (tuner.getDetectedFrequency() > 0) {
@@ -87,6 +96,10 @@ public class DebugTunerSkin extends TunerSkin {
 			labelPosition = frequencyPosition <= width / 2 ? frequencyPosition + 5 : frequencyPosition - bounds.width() - 5;
 			c.drawText(text, 0, text.length(), labelPosition, yPos, paint);
 		}
+
+		// nothing is played (the spectra are the ones of the last analysed cycle):
+		if(tuner.isIdle())
+			c.drawText("idle", 5, height * 0.1f, invalidPaint);
 	}
 
 	/**
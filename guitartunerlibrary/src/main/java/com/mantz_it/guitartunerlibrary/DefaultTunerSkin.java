@@ -151,9 +151,19 @@ public class DefaultTunerSkin extends TunerSkin {
 			// reset alpha to default
 			gradientPaint.setAlpha(255);
 			foregroundPaint.setAlpha(255);
+		} else if(tuner.isIdle()) {
+			drawIdle(c);
 		}
 	}
 
+	/**
+	 * Draws the idle state (nothing is played): the needle rests in the middle of the scale.
+	 * @param c		canvas to draw
+	 */
+	protected void drawIdle(Canvas c) {
+		drawNeedle(c, 0, invalidPaint);
+	}
+
 	/**
 	 * Draws one pitch letter on the canvas.
 	 * @param c				canvas to draw
@@ -24,13 +24,45 @@ public class FFT {
 
 	int n, m;
 
-	// Lookup tables.  Only need to recompute when size of FFT changes.
+	// Lookup tables (shared, see PlanCache). Only need to recompute when size of FFT changes.
 	float[] cos;
 	float[] sin;
 
+	// window function (the table is fetched from the PlanCache for the length of the signal)
+	String windowType = WindowFunctions.WINDOW_BLACKMAN;
+	double windowParameter = WindowFunctions.DEFAULT_KAISER_BETA;
 	float[] window;
 
+	// complex fft engines: half size engine for fftReal(); full size engine for fft() (created on demand)
+	FFTEngine engine;
+	FFTEngine fullEngine;
+
+	// real part of the nyquist bin of the last fftReal() (the imaginary part is always zero)
+	float nyquist;
+
 	public FFT(int n) {
+		this(n, FFTEngineFactory.ENGINE_RADIX2);
+	}
+
+	/**
+	 * constructor.
+	 *
+	 * @param n				length of the FFT (power of 2)
+	 * @param engineName	name of the complex fft engine that does the work (see FFTEngineFactory)
+	 */
+	public FFT(int n, String engineName) {
+		this(n, engineName, n);
+	}
+
+	/**
+	 * constructor for signals that are zero padded to the length of the FFT.
+	 *
+	 * @param n					length of the FFT (power of 2)
+	 * @param engineName		name of the complex fft engine that does the work (see FFTEngineFactory)
+	 * @param signalLength		number of (real) samples of the signal that is passed to fftReal(re, im, signalLength).
+	 *                          'auto' picks the engine that is fastest for this zero padding.
+	 */
+	public FFT(int n, String engineName, int signalLength) {
 		this.n = n;
 		this.m = (int)(Math.log(n) / Math.log(2));
 
@@ -38,119 +70,211 @@ public class FFT {
 		if(n != (1<<m))
 			throw new RuntimeException("FFT length must be power of 2");
 
-		// precompute tables
-		cos = new float[n/2];
-		sin = new float[n/2];
-
-//     for(int i=0; i<n/4; i++) {
-//       cos[i] = Math.cos(-2*Math.PI*i/n);
-//       sin[n/4-i] = cos[i];
-//       cos[n/2-i] = -cos[i];
-//       sin[n/4+i] = cos[i];
-//       cos[n/2+i] = -cos[i];
-//       sin[n*3/4-i] = -cos[i];
-//       cos[n-i]   = cos[i];
-//       sin[n*3/4+i] = -cos[i];
-//     }
-
-		for(int i=0; i<n/2; i++) {
-			cos[i] = (float) Math.cos(-2*Math.PI*i/n);
-			sin[i] = (float) Math.sin(-2*Math.PI*i/n);
-		}
+		// get the (shared) tables
+		PlanCache.TwiddleTable twiddleTable = PlanCache.getTwiddleTable(n);
+		cos = twiddleTable.cos;
+		sin = twiddleTable.sin;
+
+		engine = FFTEngineFactory.createEngine(engineName, n/2, (signalLength + 1) / 2);
+	}
+
+	/**
+	 * @return the complex fft engine used by fftReal() (length n/2)
+	 */
+	public FFTEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return number of bytes of the buffers that are owned by this instance and its engines
+	 *         (the shared tables of the PlanCache are not included)
+	 */
+	public int getRetainedHeapBytes() {
+		return engine.getRetainedHeapBytes() + (fullEngine == null ? 0 : fullEngine.getRetainedHeapBytes());
+	}
 
-		makeWindow();
+	/**
+	 * Selects the window function that is used by applyWindow() (default: blackman).
+	 *
+	 * @param type			type of the window (see WindowFunctions)
+	 * @param parameter		parameter of the window (beta of the kaiser window; ignored by the other windows)
+	 */
+	public void setWindow(String type, double parameter) {
+		if(type.equals(windowType) && parameter == windowParameter)
+			return;
+		if(!WindowFunctions.isWindowName(type))
+			throw new IllegalArgumentException("Unknown window type: " + type);
+		windowType = type;
+		windowParameter = parameter;
+		window = null;
 	}
 
-	protected void makeWindow() {
-		// Make a blackman window:
-		// w(n)=0.42-0.5cos{(2*PI*n)/(N-1)}+0.08cos{(4*PI*n)/(N-1)};
-		window = new float[n];
-		for(int i = 0; i < window.length; i++)
-			window[i] = (float) (0.42 - 0.5 * Math.cos(2*Math.PI*i/(n-1))
-					+ 0.08 * Math.cos(4*Math.PI*i/(n-1)));
+	public String getWindowType() {
+		return windowType;
 	}
 
-	public float[] getWindow() {
+	/**
+	 * Returns the window table for a signal of the given length. The window always spans
+	 * the whole signal (not the fft length, the zero padding is not windowed).
+	 *
+	 * @param length	length of the signal
+	 * @return shared window table (must not be modified!)
+	 */
+	public float[] getWindow(int length) {
+		if(window == null || window.length != length)
+			window = PlanCache.getWindow(windowType, length, windowParameter);
 		return window;
 	}
 
+	/**
+	 * Applies the window to a complex signal (in place).
+	 *
+	 * @param re	real part of the signal
+	 * @param im	imaginary part of the signal (same length)
+	 */
 	public void applyWindow(float[] re, float[] im) {
+		float[] window = getWindow(re.length);
 		for (int i = 0; i < window.length; i++) {
 			re[i] = window[i] * re[i];
 			im[i] = window[i] * im[i];
 		}
 	}
 
-
-	/***************************************************************
-	 * fft.c
-	 * Douglas L. Jones
-	 * University of Illinois at Urbana-Champaign
-	 * January 19, 1992
-	 * http://cnx.rice.edu/content/m12016/latest/
+	/**
+	 * Applies the window to a real valued signal (in place).
 	 *
-	 *   fft: in-place radix-2 DIT DFT of a complex input
+	 * @param x		real valued signal
+	 */
+	public void applyWindow(float[] x) {
+		applyWindow(x, x.length);
+	}
+
+	/**
+	 * Applies the window to the first samples of a real valued signal (in place). Only these
+	 * samples are processed; the rest (e.g. zero padding) is not touched.
 	 *
-	 *   input:
-	 * n: length of FFT: must be a power of two
-	 * m: n = 2**m
-	 *   input/output
-	 * x: double array of length n with real part of data
-	 * y: double array of length n with imag part of data
+	 * @param x			real valued signal
+	 * @param length	number of samples that are windowed
+	 */
+	public void applyWindow(float[] x, int length) {
+		float[] window = getWindow(length);
+		for (int i = 0; i < length; i++)
+			x[i] = window[i] * x[i];
+	}
+
+	/**
+	 * Packs a real valued signal of length n into the layout expected by fftReal():
+	 * even samples go to re, odd samples go to im. If x is shorter than n, the
+	 * remaining samples are treated as zeros (zero padding).
 	 *
-	 *   Permission to copy and use this program is granted
-	 *   as long as this header is included.
-	 ****************************************************************/
-	public void fft(float[] x, float[] y)
-	{
-		int i,j,k,n1,n2,a;
-		float c,s,e,t1,t2;
-
-
-		// Bit-reverse
-		j = 0;
-		n2 = n/2;
-		for (i=1; i < n - 1; i++) {
-			n1 = n2;
-			while ( j >= n1 ) {
-				j = j - n1;
-				n1 = n1/2;
-			}
-			j = j + n1;
-
-			if (i < j) {
-				t1 = x[i];
-				x[i] = x[j];
-				x[j] = t1;
-				t1 = y[i];
-				y[i] = y[j];
-				y[j] = t1;
-			}
+	 * @param x		real valued signal (length <= n)
+	 * @param re	array of length n/2 that will receive the even samples
+	 * @param im	array of length n/2 that will receive the odd samples
+	 */
+	public void packReal(float[] x, float[] re, float[] im) {
+		int len = Math.min(x.length, n);
+		int i;
+		for (i = 0; i < len / 2; i++) {
+			re[i] = x[2*i];
+			im[i] = x[2*i+1];
 		}
+		if(len % 2 == 1) {
+			re[i] = x[len - 1];
+			im[i] = 0f;
+			i++;
+		}
+		for (; i < n / 2; i++) {
+			re[i] = 0f;
+			im[i] = 0f;
+		}
+	}
+
+	/**
+	 * FFT of a real valued signal of length n. The signal is treated as a complex signal of
+	 * length n/2 (even samples as real part, odd samples as imaginary part, see packReal()),
+	 * transformed with a n/2 point FFT and split into the spectrum of the real signal afterwards.
+	 * This needs roughly half the work of fft() and no (zero) imaginary input array.
+	 *
+	 * The result is the non-redundant half of the spectrum: bins 0 to n/2-1 (the nyquist bin
+	 * is returned by getNyquist()). It matches the first half of the output of fft() for the
+	 * same real input.
+	 *
+	 * @param re	input: even samples; output: real part of the bins 0 to n/2-1 (length n/2)
+	 * @param im	input: odd samples; output: imaginary part of the bins 0 to n/2-1 (length n/2)
+	 */
+	public void fftReal(float[] re, float[] im) {
+		fftReal(re, im, n);
+	}
+
+	/**
+	 * Same as fftReal(float[], float[]) for a zero padded signal: only the first nonZeroLength
+	 * (real) samples are nonzero. The engine can use this to skip the butterflies that only
+	 * process zeros (pruned FFT). The output is identical to the one of the padded transform.
+	 *
+	 * @param re				input: even samples; output: real part of the bins 0 to n/2-1 (length n/2)
+	 * @param im				input: odd samples; output: imaginary part of the bins 0 to n/2-1 (length n/2)
+	 * @param nonZeroLength		number of nonzero (real) samples at the beginning of the signal
+	 */
+	public void fftReal(float[] re, float[] im, int nonZeroLength) {
+		int half = n / 2;
+		float a,b,c,d,sumRe,sumIm,difRe,difIm,tRe,tIm;
 
-		// FFT
-		n1 = 0;
-		n2 = 1;
-
-		for (i=0; i < m; i++) {
-			n1 = n2;
-			n2 = n2 + n2;
-			a = 0;
-
-			for (j=0; j < n1; j++) {
-				c = cos[a];
-				s = sin[a];
-				a +=  1 << (m-i-1);
-
-				for (k=j; k < n; k=k+n2) {
-					t1 = c*x[k+n1] - s*y[k+n1];
-					t2 = s*x[k+n1] + c*y[k+n1];
-					x[k+n1] = x[k] - t1;
-					y[k+n1] = y[k] - t2;
-					x[k] = x[k] + t1;
-					y[k] = y[k] + t2;
-				}
+		// complex fft of the packed signal:
+		engine.fft(re, im, (nonZeroLength + 1) / 2);
+
+		// bin 0: X[0] = Z[0].re + Z[0].im; nyquist bin: X[n/2] = Z[0].re - Z[0].im
+		nyquist = re[0] - im[0];
+		re[0] = re[0] + im[0];
+		im[0] = 0f;
+
+		// split the remaining bins pairwise (k and n/2-k):
+		//   Xe[k] = (Z[k] + conj(Z[n/2-k])) / 2
+		//   Xo[k] = (Z[k] - conj(Z[n/2-k])) / 2i
+		//   X[k]  = Xe[k] + W^k * Xo[k]
+		for (int k = 1; k <= half / 2; k++) {
+			int j = half - k;
+			a = re[k];
+			b = im[k];
+			c = re[j];
+			d = im[j];
+			sumRe = 0.5f * (a + c);		// Xe[k]
+			sumIm = 0.5f * (b - d);
+			difRe = 0.5f * (b + d);		// Xo[k]
+			difIm = 0.5f * (c - a);
+
+			tRe = cos[k] * difRe - sin[k] * difIm;
+			tIm = sin[k] * difRe + cos[k] * difIm;
+			re[k] = sumRe + tRe;
+			im[k] = sumIm + tIm;
+
+			if(j != k) {
+				// Xe[j] = conj(Xe[k]) and Xo[j] = conj(Xo[k])
+				tRe = cos[j] * difRe + sin[j] * difIm;
+				tIm = sin[j] * difRe - cos[j] * difIm;
+				re[j] = sumRe + tRe;
+				im[j] = -sumIm + tIm;
 			}
 		}
 	}
+
+
+	/**
+	 * @return nyquist bin (n/2) of the last call to fftReal(). The bin is real valued.
+	 */
+	public float getNyquist() {
+		return nyquist;
+	}
+
+	/**
+	 * in-place DFT of a complex input of length n
+	 *
+	 * @param x		real part of the data
+	 * @param y		imag part of the data
+	 */
+	public void fft(float[] x, float[] y)
+	{
+		if(fullEngine == null)
+			fullEngine = FFTEngineFactory.createEngine(engine.getName(), n);
+		fullEngine.fft(x, y);
+	}
 }
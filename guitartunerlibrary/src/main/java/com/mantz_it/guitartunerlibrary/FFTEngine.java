@@ -0,0 +1,66 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - FFT Engine</h1>
+ *
+ * Module:      FFTEngine.java
+ * Description: Common interface for the complex FFT implementations. An engine
+ *              computes a complex, in-place FFT of a fixed size. Engines are
+ *              created by the FFTEngineFactory.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public interface FFTEngine {
+
+	/**
+	 * @return name of the engine (as used by the FFTEngineFactory)
+	 */
+	public String getName();
+
+	/**
+	 * @return length of the transform (power of two)
+	 */
+	public int getSize();
+
+	/**
+	 * @return number of bytes of the buffers that are owned by this engine (the shared tables of
+	 *         the PlanCache are not included)
+	 */
+	public int getRetainedHeapBytes();
+
+	/**
+	 * In-place forward DFT of a complex input. The output is in natural order.
+	 *
+	 * @param re	real part of the data (length getSize())
+	 * @param im	imaginary part of the data (length getSize())
+	 */
+	public void fft(float[] re, float[] im);
+
+	/**
+	 * In-place forward DFT of a complex input of which only the first nonZeroLength samples
+	 * are nonzero (e.g. a zero padded signal). Engines may skip the work that only involves
+	 * the zero tail. The output is identical to fft(re, im).
+	 *
+	 * @param re				real part of the data (length getSize(), zero after nonZeroLength)
+	 * @param im				imaginary part of the data (length getSize(), zero after nonZeroLength)
+	 * @param nonZeroLength		number of (potentially) nonzero samples at the beginning of the input
+	 */
+	public void fft(float[] re, float[] im, int nonZeroLength);
+}
@@ -0,0 +1,208 @@
+package com.mantz_it.guitartunerlibrary;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * <h1>Wear Guitar Tuner - FFT Engine Factory</h1>
+ *
+ * Module:      FFTEngineFactory.java
+ * Description: Creates FFTEngine instances by name. The special name 'auto' runs a
+ *              short micro-benchmark of all engines and returns the fastest one.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class FFTEngineFactory {
+	private static final String LOGTAG = "FFTEngineFactory";
+	public static final String ENGINE_RADIX2 = "radix2";
+	public static final String ENGINE_RADIX4 = "radix4";
+	public static final String ENGINE_SPLIT_RADIX = "splitradix";
+	public static final String ENGINE_STOCKHAM = "stockham";
+	public static final String ENGINE_AUTO = "auto";
+	private static final String[] ENGINE_NAMES = {ENGINE_RADIX2, ENGINE_RADIX4, ENGINE_SPLIT_RADIX, ENGINE_STOCKHAM};
+	private static final long BENCHMARK_WARMUP_TIME = 75000000;	// time (ns) each engine runs before it is measured (JIT)
+	private static final long BENCHMARK_SAMPLE_TIME = 1000000;	// min. time (ns) of one measurement (several runs for small sizes)
+	private static final int BENCHMARK_SAMPLES = 21;			// measurements per engine (the median is compared)
+
+	// results of the micro-benchmark ("size/nonZeroLength" -> name of the fastest engine). We only
+	// benchmark once per size and zero padding.
+	private static final HashMap<String, String> fastestEngines = new HashMap<String, String>();
+
+	/**
+	 * @return names of all available engines (without 'auto')
+	 */
+	public static String[] getEngineNames() {
+		return ENGINE_NAMES.clone();
+	}
+
+	/**
+	 * Will instantiate a FFTEngine object
+	 *
+	 * @param name		name of the engine (see ENGINE_* constants). 'auto' will pick the fastest engine
+	 * @param size		length of the transform (power of two)
+	 * @return a new instance of the desired engine
+	 */
+	public static FFTEngine createEngine(String name, int size) {
+		return createEngine(name, size, size);
+	}
+
+	/**
+	 * Will instantiate a FFTEngine object for inputs of which only the first nonZeroLength samples
+	 * are nonzero (see FFTEngine.fft(re, im, nonZeroLength)). The length only matters for 'auto':
+	 * the engines are compared with the pruned transform of this zero padding.
+	 *
+	 * @param name				name of the engine (see ENGINE_* constants). 'auto' will pick the fastest engine
+	 * @param size				length of the transform (power of two)
+	 * @param nonZeroLength		number of (potentially) nonzero samples at the beginning of the input
+	 * @return a new instance of the desired engine
+	 */
+	public static FFTEngine createEngine(String name, int size, int nonZeroLength) {
+		if(ENGINE_RADIX2.equals(name))
+			return new Radix2FFTEngine(size);
+		if(ENGINE_RADIX4.equals(name))
+			return new Radix4FFTEngine(size);
+		if(ENGINE_SPLIT_RADIX.equals(name))
+			return new SplitRadixFFTEngine(size);
+		if(ENGINE_STOCKHAM.equals(name))
+			return new StockhamFFTEngine(size);
+		if(ENGINE_AUTO.equals(name))
+			return createFastestEngine(size, nonZeroLength);
+		throw new IllegalArgumentException("Unknown FFT engine: " + name);
+	}
+
+	/**
+	 * Runs a short micro-benchmark with all engines (only the first time for each size) and
+	 * returns an instance of the fastest engine.
+	 *
+	 * @param size		length of the transform (power of two)
+	 * @return a new instance of the fastest engine on this device
+	 */
+	public static FFTEngine createFastestEngine(int size) {
+		return createFastestEngine(size, size);
+	}
+
+	/**
+	 * Runs a short micro-benchmark with all engines (only the first time for each size and zero
+	 * padding) and returns an instance of the fastest engine. The engines are timed with the
+	 * pruned transform fft(re, im, nonZeroLength), so engines that skip the zero tail are
+	 * preferred if the input is zero padded. Each engine is warmed up for BENCHMARK_WARMUP_TIME
+	 * and the median of BENCHMARK_SAMPLES measurements is compared (about 100 ms per engine).
+	 * The ranking is written to the log.
+	 *
+	 * @param size				length of the transform (power of two)
+	 * @param nonZeroLength		number of (potentially) nonzero samples at the beginning of the input
+	 * @return a new instance of the fastest engine on this device
+	 */
+	public static FFTEngine createFastestEngine(int size, int nonZeroLength) {
+		nonZeroLength = Math.max(1, Math.min(size, nonZeroLength));
+		String key = size + "/" + nonZeroLength;
+		String fastest;
+		synchronized (fastestEngines) {
+			fastest = fastestEngines.get(key);
+		}
+		if(fastest != null)
+			return createEngine(fastest, size);
+
+		// prepare random input data (zero padded):
+		Random random = new Random(0);
+		float[] testRe = new float[size];
+		float[] testIm = new float[size];
+		for (int i = 0; i < nonZeroLength; i++) {
+			testRe[i] = random.nextFloat() * 2 - 1;
+			testIm[i] = random.nextFloat() * 2 - 1;
+		}
+		float[] re = new float[size];
+		float[] im = new float[size];
+
+		final FFTEngine[] engines = new FFTEngine[ENGINE_NAMES.length];
+		final long[] times = new long[ENGINE_NAMES.length];
+		Integer[] ranking = new Integer[ENGINE_NAMES.length];
+		for (int i = 0; i < ENGINE_NAMES.length; i++) {
+			engines[i] = createEngine(ENGINE_NAMES[i], size);
+			times[i] = measureEngine(engines[i], testRe, testIm, re, im, nonZeroLength);
+			ranking[i] = i;
+		}
+		Arrays.sort(ranking, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return times[a] < times[b] ? -1 : (times[a] == times[b] ? 0 : 1);
+			}
+		});
+		FFTEngine fastestEngine = engines[ranking[0]];
+
+		StringBuilder rankingText = new StringBuilder();
+		for (int i = 0; i < ranking.length; i++) {
+			rankingText.append(i == 0 ? "" : ", ").append(i + 1).append(". ").append(engines[ranking[i]].getName())
+					.append(" (").append(Math.round(times[ranking[i]] / 100.0) / 10f).append(" us)");
+		}
+		Log.i(LOGTAG, "createFastestEngine: Ranking for size " + size + " (" + nonZeroLength + " nonzero; median per fft): "
+				+ rankingText);
+		synchronized (fastestEngines) {
+			fastestEngines.put(key, fastestEngine.getName());
+		}
+		return fastestEngine;
+	}
+
+	/**
+	 * Warms up the engine for BENCHMARK_WARMUP_TIME and measures the time of the pruned transform
+	 * BENCHMARK_SAMPLES times. Small transforms are repeated within a measurement, so that each
+	 * measurement takes at least BENCHMARK_SAMPLE_TIME (resolution of the timer).
+	 *
+	 * @param engine			engine to measure
+	 * @param testRe			real part of the input (is copied before each run)
+	 * @param testIm			imaginary part of the input (is copied before each run)
+	 * @param re				buffer for the real part (length of the transform)
+	 * @param im				buffer for the imaginary part (length of the transform)
+	 * @param nonZeroLength		number of (potentially) nonzero samples at the beginning of the input
+	 * @return median time of one transform (in ns; including the copy of the input)
+	 */
+	private static long measureEngine(FFTEngine engine, float[] testRe, float[] testIm, float[] re, float[] im,
+									  int nonZeroLength) {
+		int size = re.length;
+		long warmupRuns = 0;
+		long startTime = System.nanoTime();
+		long warmupTime;
+		do {
+			System.arraycopy(testRe, 0, re, 0, size);
+			System.arraycopy(testIm, 0, im, 0, size);
+			engine.fft(re, im, nonZeroLength);
+			warmupRuns++;
+			warmupTime = System.nanoTime() - startTime;
+		} while (warmupTime < BENCHMARK_WARMUP_TIME);
+
+		int runsPerSample = (int) Math.max(1, Math.min(Integer.MAX_VALUE, BENCHMARK_SAMPLE_TIME * warmupRuns / Math.max(1, warmupTime)));
+		long[] samples = new long[BENCHMARK_SAMPLES];
+		for (int s = 0; s < samples.length; s++) {
+			startTime = System.nanoTime();
+			for (int i = 0; i < runsPerSample; i++) {
+				System.arraycopy(testRe, 0, re, 0, size);
+				System.arraycopy(testIm, 0, im, 0, size);
+				engine.fft(re, im, nonZeroLength);
+			}
+			samples[s] = (System.nanoTime() - startTime) / runsPerSample;
+		}
+		Arrays.sort(samples);
+		return samples[samples.length / 2];
+	}
+}
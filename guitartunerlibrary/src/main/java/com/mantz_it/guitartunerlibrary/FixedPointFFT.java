@@ -0,0 +1,345 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Fixed Point FFT</h1>
+ *
+ * Module:      FixedPointFFT.java
+ * Description: Integer (Q15) version of the spectrum calculation for devices with a weak
+ *              floating point unit: Q15 window, real fft with block floating point scaling
+ *              and integer squared magnitude. Only the final logarithm is converted to float
+ *              (the GuitarTuner expects the same log magnitudes as from the float FFT).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class FixedPointFFT {
+	private static final int Q15_ROUND = 1 << 14;		// added before '>> 15' to round instead of truncate
+	private static final int MAX_STAGE_INPUT = 13573;	// (1 + sqrt(2)) * 13573 < 32768: a butterfly can't leave the 16-bit range
+	private static final int MAX_SPLIT_INPUT = 10922;	// 3 * 10922 < 32768: the real split can't leave the 16-bit range
+	private static final int LOG2_TABLE_BITS = 8;		// mantissa bits used by log2Q16()
+	private static final int[] LOG2_TABLE;				// log2(1 + i/256) in Q16
+	private static final float LOG10_2_Q16 = (float) (Math.log10(2) / 65536);	// converts log2 (Q16) to log10
+
+	static {
+		LOG2_TABLE = new int[1 << LOG2_TABLE_BITS];
+		for (int i = 0; i < LOG2_TABLE.length; i++)
+			LOG2_TABLE[i] = (int) Math.round(Math.log(1 + (double) i / LOG2_TABLE.length) / Math.log(2) * 65536);
+	}
+
+	int n, m;
+
+	// Q15 lookup tables (shared, see PlanCache)
+	short[] cos;
+	short[] sin;
+	short[] window;		// window for the length of the signal (fetched on demand)
+
+	// window function
+	String windowType = WindowFunctions.WINDOW_BLACKMAN;
+	double windowParameter = WindowFunctions.DEFAULT_KAISER_BETA;
+
+	/**
+	 * constructor.
+	 *
+	 * @param n		length of the (real valued) FFT (power of 2)
+	 */
+	public FixedPointFFT(int n) {
+		this.n = n;
+		this.m = (int)(Math.log(n) / Math.log(2));
+
+		// Make sure n is a power of 2
+		if(n != (1<<m))
+			throw new RuntimeException("FFT length must be power of 2");
+
+		short[][] twiddleTable = PlanCache.getFixedPointTwiddleTable(n);
+		cos = twiddleTable[0];
+		sin = twiddleTable[1];
+	}
+
+	/**
+	 * Selects the window function that is used by fftRealWindowed() (default: blackman).
+	 *
+	 * @param type			type of the window (see WindowFunctions)
+	 * @param parameter		parameter of the window (beta of the kaiser window; ignored by the other windows)
+	 */
+	public void setWindow(String type, double parameter) {
+		if(type.equals(windowType) && parameter == windowParameter)
+			return;
+		if(!WindowFunctions.isWindowName(type))
+			throw new IllegalArgumentException("Unknown window type: " + type);
+		windowType = type;
+		windowParameter = parameter;
+		window = null;
+	}
+
+	/**
+	 * FFT of a real valued 16-bit signal, zero padded to length n. The (Q15) window is applied
+	 * to the signal (not to the zero padding) while it is packed. Otherwise it works like FFT.fftReal(): the signal is packed
+	 * into a complex signal of length n/2 and the spectrum is split afterwards. The butterflies
+	 * that only process zeros are skipped (pruned FFT).
+	 *
+	 * All values stay inside the 16-bit range (block floating point): the windowed signal is
+	 * normalized before the transform (the full 30-bit product of sample and window is used, so
+	 * quiet signals don't lose precision) and scaled down before every stage that could overflow.
+	 * The returned block exponent describes the resulting scale of the spectrum:
+	 * X[k] = (re[k] + j*im[k]) * 2^exponent where X is the DFT of the windowed 16-bit samples.
+	 *
+	 * @param x			16-bit samples
+	 * @param length	number of (nonzero) samples in x
+	 * @param re		output: real part of the bins 0 to n/2-1 (length n/2)
+	 * @param im		output: imaginary part of the bins 0 to n/2-1 (length n/2)
+	 * @return block exponent of the result
+	 */
+	public int fftRealWindowed(short[] x, int length, int[] re, int[] im) {
+		int half = n / 2;
+		int exponent;
+		int maxAbs = 0;
+		int i, j, k;
+
+		// window and pack the signal (even samples to re, odd samples to im). The products
+		// are kept with 30 bits (Q15 sample * Q15 window) until the block is normalized:
+		length = Math.min(length, n);
+		if(window == null || window.length != length)
+			window = PlanCache.getFixedPointWindow(windowType, length, windowParameter);
+		int complexLength = (length + 1) / 2;
+		int prunedLength = 1;
+		while (prunedLength < complexLength)
+			prunedLength *= 2;
+		for (i = 0; i < prunedLength; i++) {
+			re[i] = 2*i < length ? x[2*i] * window[2*i] : 0;
+			im[i] = 2*i+1 < length ? x[2*i+1] * window[2*i+1] : 0;
+			maxAbs = Math.max(maxAbs, Math.max(Math.abs(re[i]), Math.abs(im[i])));
+		}
+
+		// normalize the block: use as many bits as possible without risking an overflow:
+		int shift = stageShift(maxAbs, MAX_STAGE_INPUT);
+		int round = (1 << shift) >> 1;
+		for (i = 0; i < prunedLength; i++) {
+			re[i] = (re[i] + round) >> shift;
+			im[i] = (im[i] + round) >> shift;
+		}
+		exponent = shift - 15;
+		maxAbs = (maxAbs + round) >> shift;
+
+		// bit reversal of the pruned part:
+		int n2 = prunedLength / 2;
+		int t1;
+		j = 0;
+		for (i = 1; i < prunedLength - 1; i++) {
+			k = n2;
+			while (k <= j) {
+				j = j - k;
+				k = k / 2;
+			}
+			j = j + k;
+			if (i < j) {
+				t1 = re[i];
+				re[i] = re[j];
+				re[j] = t1;
+				t1 = im[i];
+				im[i] = im[j];
+				im[j] = t1;
+			}
+		}
+
+		// The first stages would only combine each nonzero value with zeros (which copies it
+		// into the whole block). Spread the values backwards so that nothing is overwritten:
+		int blockSize = half / prunedLength;
+		for (i = prunedLength - 1; i >= 0 && blockSize > 1; i--) {
+			for (k = blockSize - 1; k >= 0; k--) {
+				re[i*blockSize + k] = re[i];
+				im[i*blockSize + k] = im[i];
+			}
+		}
+
+		// remaining radix-2 stages (decimation in time):
+		int ar, ai, br, bi, tr, ti, wr, wi;
+		for (int h = blockSize; h < half; h *= 2) {
+			shift = stageShift(maxAbs, MAX_STAGE_INPUT);
+			round = (1 << shift) >> 1;
+			exponent += shift;
+			maxAbs = 0;
+			int twiddleStep = n / (2 * h);
+			for (k = 0; k < h; k++) {
+				wr = cos[k * twiddleStep];
+				wi = sin[k * twiddleStep];
+				for (i = k; i < half; i += 2*h) {
+					j = i + h;
+					ar = (re[i] + round) >> shift;
+					ai = (im[i] + round) >> shift;
+					br = (re[j] + round) >> shift;
+					bi = (im[j] + round) >> shift;
+					tr = (wr * br - wi * bi + Q15_ROUND) >> 15;
+					ti = (wr * bi + wi * br + Q15_ROUND) >> 15;
+					re[i] = ar + tr;
+					im[i] = ai + ti;
+					re[j] = ar - tr;
+					im[j] = ai - ti;
+					maxAbs = Math.max(maxAbs, Math.max(Math.max(Math.abs(re[i]), Math.abs(im[i])),
+							Math.max(Math.abs(re[j]), Math.abs(im[j]))));
+				}
+			}
+		}
+
+		// split the spectrum of the packed signal into the spectrum of the real signal
+		// (see FFT.fftReal(); all intermediate values are doubled to keep the lsb):
+		shift = stageShift(maxAbs, MAX_SPLIT_INPUT);
+		round = (1 << shift) >> 1;
+		exponent += shift;
+		int a, b, c, d, sumRe, sumIm, difRe, difIm;
+		re[0] = ((re[0] + round) >> shift) + ((im[0] + round) >> shift);
+		im[0] = 0;
+		for (k = 1; k <= half / 2; k++) {
+			j = half - k;
+			a = (re[k] + round) >> shift;
+			b = (im[k] + round) >> shift;
+			c = (re[j] + round) >> shift;
+			d = (im[j] + round) >> shift;
+			sumRe = a + c;		// 2 * Xe[k]
+			sumIm = b - d;
+			difRe = b + d;		// 2 * Xo[k]
+			difIm = c - a;
+
+			tr = (cos[k] * difRe - sin[k] * difIm + Q15_ROUND) >> 15;
+			ti = (sin[k] * difRe + cos[k] * difIm + Q15_ROUND) >> 15;
+			re[k] = (sumRe + tr + 1) >> 1;
+			im[k] = (sumIm + ti + 1) >> 1;
+
+			if(j != k) {
+				tr = (cos[j] * difRe + sin[j] * difIm + Q15_ROUND) >> 15;
+				ti = (sin[j] * difRe - cos[j] * difIm + Q15_ROUND) >> 15;
+				re[j] = (sumRe + tr + 1) >> 1;
+				im[j] = (-sumIm + ti + 1) >> 1;
+			}
+		}
+
+		return exponent;
+	}
+
+	/**
+	 * Calculates the squared magnitude re^2 + im^2 of the output of fftReal() (integer only).
+	 * The result fits into an int because all values of the spectrum are in the 16-bit range.
+	 *
+	 * @param re		real part of the spectrum
+	 * @param im		imaginary part of the spectrum
+	 * @param power		result array (may be re or im)
+	 * @param length	number of bins to process
+	 */
+	public static void calcSquaredMagnitude(int[] re, int[] im, int[] power, int length) {
+		calcSquaredMagnitude(re, im, power, 0, length);
+	}
+
+	/**
+	 * Same as calcSquaredMagnitude() but only for the bins start ... end-1 (e.g. the band of
+	 * the guitar tuner). The other bins are not touched.
+	 *
+	 * @param re		real part of the spectrum
+	 * @param im		imaginary part of the spectrum
+	 * @param power		result array (may be re or im)
+	 * @param start		first bin to process
+	 * @param end		bin after the last bin to process
+	 */
+	public static void calcSquaredMagnitude(int[] re, int[] im, int[] power, int start, int end) {
+		for (int i = start; i < end; i++)
+			power[i] = re[i] * re[i] + im[i] * im[i];
+	}
+
+	/**
+	 * Converts the squared magnitudes to the logarithmic magnitudes that are calculated by the
+	 * float path (see AudioProcessingEngine.calcLogMagnitude()): mag = log10(|X| / n) where X is
+	 * the spectrum of the samples scaled to [-1, 1]. The logarithm is calculated with integer
+	 * operations (see log2Q16()); only the final scaling uses a float multiplication.
+	 *
+	 * @param power		squared magnitudes (from calcSquaredMagnitude())
+	 * @param exponent	block exponent of the spectrum (returned by fftReal())
+	 * @param mag		result array
+	 * @param length	number of bins to process
+	 */
+	public void calcLogMagnitude(int[] power, int exponent, float[] mag, int length) {
+		calcLogMagnitude(power, exponent, mag, 0, length);
+	}
+
+	/**
+	 * Same as calcLogMagnitude() but only for the bins start ... end-1 (e.g. the band of the
+	 * guitar tuner). The other bins of mag are not touched.
+	 *
+	 * @param power		squared magnitudes (from calcSquaredMagnitude())
+	 * @param exponent	block exponent of the spectrum (returned by fftReal())
+	 * @param mag		result array
+	 * @param start		first bin to process
+	 * @param end		bin after the last bin to process
+	 */
+	public void calcLogMagnitude(int[] power, int exponent, float[] mag, int start, int end) {
+		calcLogMagnitudeBand(power, exponent, mag, start, end, 0);
+	}
+
+	/**
+	 * Same as calcLogMagnitude() but mag only holds the band: the bin start is stored at
+	 * mag[magOffset] (e.g. magOffset = 0 to keep only the band of the guitar tuner).
+	 *
+	 * @param power		squared magnitudes (from calcSquaredMagnitude())
+	 * @param exponent	block exponent of the spectrum (returned by fftReal())
+	 * @param mag		result array
+	 * @param start		first bin to process
+	 * @param end		bin after the last bin to process
+	 * @param magOffset	index in mag of the bin start
+	 */
+	public void calcLogMagnitudeBand(int[] power, int exponent, float[] mag, int start, int end, int magOffset) {
+		// |X| = sqrt(power) * 2^exponent / 32768  ==>  log2(|X|/n) = log2(power)/2 + exponent - 15 - m
+		int offset = (exponent - 15 - m) << 16;
+		int shift = magOffset - start;
+		for (int i = start; i < end; i++) {
+			if(power[i] > 0)
+				mag[i + shift] = ((log2Q16(power[i]) >> 1) + offset) * LOG10_2_Q16;
+			else
+				mag[i + shift] = Float.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Integer approximation of log2(x) in Q16 format (16 fractional bits). The mantissa is looked
+	 * up in a table with 256 entries; the error is below log2(1 + 1/256) = 0.0057 (0.017 dB).
+	 *
+	 * @param x		positive value
+	 * @return log2(x) * 65536
+	 */
+	static int log2Q16(int x) {
+		int msb = 31 - Integer.numberOfLeadingZeros(x);
+		int index;
+		if(msb >= LOG2_TABLE_BITS)
+			index = (x >>> (msb - LOG2_TABLE_BITS)) & (LOG2_TABLE.length - 1);
+		else
+			index = (x << (LOG2_TABLE_BITS - msb)) & (LOG2_TABLE.length - 1);
+		return (msb << 16) + LOG2_TABLE[index];
+	}
+
+	/**
+	 * Calculates how many bits the block has to be shifted to the right so that all
+	 * values are below the given limit.
+	 *
+	 * @param maxAbs	maximum absolute value in the block
+	 * @param limit		maximum allowed absolute value
+	 * @return number of bits to shift right
+	 */
+	private static int stageShift(int maxAbs, int limit) {
+		int shift = 0;
+		while (maxAbs > (limit << shift))
+			shift++;
+		return shift;
+	}
+}
@@ -0,0 +1,220 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Goertzel Detector</h1>
+ *
+ * Module:      GoertzelDetector.java
+ * Description: Detects the pitch of a known set of strings (e.g. standard tuning)
+ *              with a small bank of Goertzel filters around the fundamental and the
+ *              harmonics of each string. No fft is needed. Signals that don't match any
+ *              string are rejected.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class GoertzelDetector {
+	private static final float COARSE_STEP = 50;	// distance (in cents) of the coarse filters around each string
+	private static final int COARSE_HARMONICS = 2;	// harmonics evaluated by the coarse pass (fundamental and 2nd harmonic)
+	private static final float[] FINE_STEPS = {15, 5};	// distances (in cents) of the fine filters in each refinement pass
+	private static final float MAX_DEVIATION = 75;	// search range (in cents) around the string frequency
+	private static final float MIN_SCORE_MARGIN = 1;	// min. distance (sum of log10 powers) of the best string to the others
+	// min. power of the harmonics at the detected frequency relative to the energy of the signal.
+	// A sinusoid reaches length/3 (hann window), white noise about 1 per harmonic:
+	private static final float MIN_TONALITY = 30;
+
+	private int sampleRate;
+	private float[] stringFrequencies;	// fundamental frequencies of the strings (in Hz)
+	private int harmonics;				// number of harmonics (including the fundamental) that are evaluated per filter
+	private float[] scores;				// work buffer: scores of the three coarse filters of the current string
+	private float[] bestScores;			// scores of the three coarse filters of the best string
+	private float[] powers;				// work buffer: powers of three Goertzel filters
+	private float centerPower;			// sum of the powers of the middle filters of the last harmonicScores() call
+
+	/**
+	 * constructor.
+	 *
+	 * @param sampleRate			sample rate of the signal
+	 * @param stringFrequencies		fundamental frequencies of the strings (in Hz)
+	 * @param harmonics				number of harmonics (including the fundamental) that contribute to a filter
+	 */
+	public GoertzelDetector(int sampleRate, float[] stringFrequencies, int harmonics) {
+		this.sampleRate = sampleRate;
+		this.stringFrequencies = stringFrequencies.clone();
+		this.harmonics = harmonics;
+		this.scores = new float[3];
+		this.bestScores = new float[3];
+		this.powers = new float[3];
+	}
+
+	/**
+	 * Detects the frequency of the strongest string in the (windowed) signal. First the filters
+	 * at the string frequency and +-COARSE_STEP cents are evaluated for every string (only the
+	 * fundamental and the 2nd harmonic). The string with the highest score is refined with
+	 * further sets of filters (+-FINE_STEPS cents, all harmonics) around the interpolated peak.
+	 * If the peak is not enclosed by the filters of a pass, the filters are moved towards it.
+	 * The result is rejected if the best string doesn't clearly stand out from the other strings,
+	 * if the peak leaves the search range (+-MAX_DEVIATION cents) of the string or if the
+	 * harmonics at the peak don't carry a clear part of the signal energy (noise or a tone
+	 * whose harmonics only leak into the filters).
+	 *
+	 * @param samples	windowed signal
+	 * @param length	number of samples to process
+	 * @return detected frequency (in Hz) or 0 if the signal doesn't match any string
+	 */
+	public float detect(float[] samples, int length) {
+		// coarse search over all strings:
+		int bestString = 0;
+		float bestScore = Float.NEGATIVE_INFINITY;
+		float secondScore = Float.NEGATIVE_INFINITY;
+		for (int s = 0; s < stringFrequencies.length; s++) {
+			harmonicScores(samples, length, stringFrequencies[s], COARSE_STEP, COARSE_HARMONICS, scores);
+			float max = Math.max(scores[0], Math.max(scores[1], scores[2]));
+			if(max > bestScore) {
+				secondScore = bestScore;
+				bestScore = max;
+				bestString = s;
+				System.arraycopy(scores, 0, bestScores, 0, 3);
+			} else if(max > secondScore)
+				secondScore = max;
+		}
+		if(bestScore - secondScore < MIN_SCORE_MARGIN)
+			return 0;		// no string stands out (e.g. a tone between the strings or noise)
+
+		// interpolate the peak between the coarse filters:
+		float cents = interpolatePeak(bestScores, COARSE_STEP);
+
+		// refine with the fine filters around the current estimate:
+		for (float step: FINE_STEPS) {
+			while(true) {
+				harmonicScores(samples, length, centsToFrequency(stringFrequencies[bestString], cents), step, harmonics, scores);
+				if(scores[1] > scores[0] && scores[1] > scores[2]) {
+					cents += interpolatePeak(scores, step);
+					break;
+				}
+				// the peak is not between the filters. move them towards it:
+				cents += scores[0] > scores[2] ? -step : step;
+				if(Math.abs(cents) > MAX_DEVIATION)
+					return 0;	// edge of the search range: the signal doesn't belong to this string
+			}
+		}
+
+		// the middle filters of the last pass are within step/2 of the peak. Their power must be a
+		// clear part of the signal energy:
+		float energy = 0;
+		for (int i = 0; i < length; i++)
+			energy += samples[i] * samples[i];
+		if(centerPower <= MIN_TONALITY * energy)
+			return 0;
+		return centsToFrequency(stringFrequencies[bestString], cents);
+	}
+
+	/**
+	 * Parabolic interpolation of the peak position between three equidistant points
+	 *
+	 * @param values	values at -step, 0 and +step
+	 * @param step		distance between the points
+	 * @return position of the peak relative to the middle point (limited to +-step)
+	 */
+	private float interpolatePeak(float[] values, float step) {
+		float denominator = values[0] - 2 * values[1] + values[2];
+		if(denominator >= 0) {
+			// no maximum in between (flat or convex). use the highest point:
+			if(values[0] > values[1] && values[0] >= values[2])
+				return -step;
+			if(values[2] > values[1])
+				return step;
+			return 0;
+		}
+		float offset = 0.5f * (values[0] - values[2]) / denominator;
+		return Math.max(-1, Math.min(1, offset)) * step;
+	}
+
+	/**
+	 * Sums up the logarithmic power of the fundamental and its harmonics (like the harmonic
+	 * product spectrum does for the fft) for three frequencies: frequency-step, frequency and
+	 * frequency+step (in cents).
+	 *
+	 * @param samples		windowed signal
+	 * @param length		number of samples to process
+	 * @param frequency		fundamental frequency of the middle filter (in Hz)
+	 * @param step			distance of the outer filters (in cents)
+	 * @param harmonics		number of harmonics (including the fundamental) that are evaluated
+	 * @param scores		result: scores of the three frequencies
+	 */
+	private void harmonicScores(float[] samples, int length, float frequency, float step, int harmonics, float[] scores) {
+		float lower = centsToFrequency(frequency, -step);
+		float upper = centsToFrequency(frequency, step);
+		scores[0] = 0;
+		scores[1] = 0;
+		scores[2] = 0;
+		centerPower = 0;
+		for (int h = 1; h <= harmonics; h++) {
+			if(h * upper >= sampleRate / 2)
+				break;
+			goertzelPowers(samples, length, h * lower, h * frequency, h * upper, powers);
+			centerPower += powers[1];
+			scores[0] += (float) Math.log10(powers[0] + 1e-20f);
+			scores[1] += (float) Math.log10(powers[1] + 1e-20f);
+			scores[2] += (float) Math.log10(powers[2] + 1e-20f);
+		}
+	}
+
+	/**
+	 * Goertzel algorithm for three frequencies at once. The three filters run in the same loop
+	 * (the samples are only loaded once and the independent recursions can be pipelined).
+	 *
+	 * @param samples		signal
+	 * @param length		number of samples to process
+	 * @param frequency0	frequency of the first filter (in Hz)
+	 * @param frequency1	frequency of the second filter (in Hz)
+	 * @param frequency2	frequency of the third filter (in Hz)
+	 * @param powers		result: squared magnitudes of the three frequency components
+	 */
+	private void goertzelPowers(float[] samples, int length, float frequency0, float frequency1, float frequency2, float[] powers) {
+		float c0 = (float) (2 * Math.cos(2 * Math.PI * frequency0 / sampleRate));
+		float c1 = (float) (2 * Math.cos(2 * Math.PI * frequency1 / sampleRate));
+		float c2 = (float) (2 * Math.cos(2 * Math.PI * frequency2 / sampleRate));
+		float a1 = 0, a2 = 0, b1 = 0, b2 = 0, d1 = 0, d2 = 0;
+		float a0, b0, d0, x;
+		for (int i = 0; i < length; i++) {
+			x = samples[i];
+			a0 = x + c0 * a1 - a2;
+			b0 = x + c1 * b1 - b2;
+			d0 = x + c2 * d1 - d2;
+			a2 = a1;
+			a1 = a0;
+			b2 = b1;
+			b1 = b0;
+			d2 = d1;
+			d1 = d0;
+		}
+		powers[0] = a1 * a1 + a2 * a2 - c0 * a1 * a2;
+		powers[1] = b1 * b1 + b2 * b2 - c1 * b1 * b2;
+		powers[2] = d1 * d1 + d2 * d2 - c2 * d1 * d2;
+	}
+
+	/**
+	 * @param frequency		base frequency (in Hz)
+	 * @param cents			deviation (in cents)
+	 * @return the frequency that deviates the given amount of cents from the base frequency
+	 */
+	private static float centsToFrequency(float frequency, float cents) {
+		return (float) (frequency * Math.pow(2, cents / 1200));
+	}
+}
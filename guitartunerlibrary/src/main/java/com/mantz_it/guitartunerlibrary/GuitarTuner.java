@@ -3,6 +3,7 @@ package com.mantz_it.guitartunerlibrary;
 import android.os.Vibrator;
 import android.util.Log;
 
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -33,10 +34,13 @@ import java.util.Locale;
  */
 public class GuitarTuner {
 	private static final String LOGTAG = "GuitarTuner";
-	private static final int LOW_CUT_OFF_FREQUENCY = 50;	// lowest frequency that will be extracted from the fft data
-	private static final int HIGH_CUT_OFF_FREQUENCY = 2500;	// highest frequency that will be extracted from the fft data
+	private static final int DEFAULT_LOW_CUT_OFF_FREQUENCY = 50;	// lowest frequency that will be extracted from the fft data
+	private static final int DEFAULT_HIGH_CUT_OFF_FREQUENCY = 2500;	// highest frequency that will be extracted from the fft data
 	private static final float CONCERT_PITCH = 440.0f;		// frequency of the A4 pitch
-	private static final int HPS_ORDER = 3;					// order to calculate the harmonic product spectrum
+	private static final int DEFAULT_HPS_ORDER = 3;			// order to calculate the harmonic product spectrum
+	private static final int PEAK_NEIGHBOURS = 5;			// number of magnitudes around the max of the hps used for the interpolation
+	private static final long MIN_VIBRATE_INTERVAL = 1500;	// min. time (in ms) between two vibration feedbacks
+	public static final int[] STANDARD_TUNING = {7, 12, 17, 22, 26, 31};	// pitch indices of the strings (E A D G B E)
 	private static final long[] VIBRATE_PATTERN_UP = {0, 200};							//  ~~~
 	private static final long[] VIBRATE_PATTERN_DOWN = {0, 200, 200, 200};				//  ~~~   ~~~
 	private static final long[] VIBRATE_PATTERN_TUNED = {0, 100, 100, 100, 100, 100};	//  ~~  ~~  ~~
@@ -45,9 +49,15 @@ public class GuitarTuner {
 
 	private float[] mag;					// magnitudes of the spectrum
 	private float[] hps;					// harmonic product spectrum
+	private float[] hpsBuffer;				// own array for the hps (not used in hps-in-place mode)
+	private int hpsBufferStart;				// first index of the bins that were calculated in hpsBuffer (the others are -infinity)
+	private int hpsBufferEnd;				// index after the last bin that was calculated in hpsBuffer
 	private float updateRate;				// indicates how often processFFTSamples() will be called per second
-	private long lastUpdateTimestamp;		// time of the last call to processFFTSamples()
+	private long lastUpdateTimestamp;		// time (System.nanoTime()) of the last call to processFFTSamples()
+	private long captureTimestamp;			// time (System.nanoTime()) at which the newest analysed sample was captured
+	private LatencyMonitor latencyMonitor;	// receives the latencies of the hps and the callback (might be null)
 	private float hzPerSample;				// frequency step of one index in mag
+	private int binOffset;					// bin number (multiple of hzPerSample) of the first index in mag
 	private float strongestFrequency;		// holds the frequency of the strongest (max mag) frequency component (after HPS)
 	private float detectedFrequency;		// holds the frequency that was calculated to be the most likely/relevant frequency component
 	private float targetFrequency;			// desired frequency to tune to
@@ -56,7 +66,15 @@ public class GuitarTuner {
 	private float lastDetectedFrequency;	// detected frequency of the last cycle
 	private float lastTargetFrequency;		// target frequency of the last cycle
 	private boolean valid;					// indicates if the current result is valid
+	private boolean idle;					// indicates that nothing is played (the analysis was skipped)
 	private boolean vibrate = false;		// on/off switch for the vibration feedback
+	private long lastVibrateTimestamp;		// time of the last vibration feedback
+	private int lowCutOffFrequency = DEFAULT_LOW_CUT_OFF_FREQUENCY;		// lowest frequency that will be extracted from the spectrum
+	private int highCutOffFrequency = DEFAULT_HIGH_CUT_OFF_FREQUENCY;	// highest frequency that will be extracted from the spectrum
+	private int hpsOrder = DEFAULT_HPS_ORDER;	// order to calculate the harmonic product spectrum
+	private boolean hpsInPlace = false;		// calculate the hps in the mag array (saves memory, getMag() returns null)
+	private float[] peakMag = new float[PEAK_NEIGHBOURS];	// magnitudes around the max of the hps (saved before they are overwritten in place)
+	private InstantaneousFrequencyEstimator frequencyEstimator;	// refines the strongest frequency with the phase (might be null)
 
 	/**
 	 * constructor
@@ -79,30 +97,139 @@ public class GuitarTuner {
 	 * @return true if success; false if something went wrong (e.g. the callback interface returned an error)
 	 */
 	public boolean processFFTSamples(float[] mag, int sampleRate, float updateRate) {
-		this.lastUpdateTimestamp = System.currentTimeMillis();
+		return processFFTSamples(mag, 0, ((float)(sampleRate / 2)) / mag.length, updateRate);
+	}
+
+	/**
+	 * This method processes a band limited spectrum (e.g. from a zoom transform) and pass the
+	 * results to the callback interface. mag[i] is the magnitude at the frequency
+	 * (binOffset + i) * hzPerSample.
+	 *
+	 * @param mag			spectrum samples (starting at bin binOffset)
+	 * @param binOffset		bin number of the first sample in mag (0 if mag starts at 0 Hz)
+	 * @param hzPerSample	frequency step between two samples in mag
+	 * @param updateRate	rate at which the audioProcessingEngine will call this method
+	 * @return true if success; false if something went wrong (e.g. the callback interface returned an error)
+	 */
+	public boolean processFFTSamples(float[] mag, int binOffset, float hzPerSample, float updateRate) {
+		this.lastUpdateTimestamp = System.nanoTime();
 		this.updateRate = updateRate;
 		this.mag = mag;
-		hzPerSample = ((float)(sampleRate / 2)) / mag.length;
+		this.hzPerSample = hzPerSample;
+		this.binOffset = binOffset;
+		this.idle = false;
 
 		// Eliminate frequency components outside the interesting band:
-		for (int i = 0; i < LOW_CUT_OFF_FREQUENCY / hzPerSample; i++)
+		int lowIndex = Math.min(mag.length, Math.max(0, (int) Math.ceil(lowCutOffFrequency / hzPerSample - binOffset)));
+		int highIndex = Math.min(mag.length, Math.max(lowIndex, (int)(highCutOffFrequency / hzPerSample) - binOffset));
+		for (int i = 0; i < lowIndex; i++)
 			mag[i] = Float.NEGATIVE_INFINITY;	// set magnitude to 0 (== -invinity dB)
-		for (int i = (int)(HIGH_CUT_OFF_FREQUENCY / hzPerSample); i < mag.length; i++)
+		for (int i = highIndex; i < mag.length; i++)
 			mag[i] = Float.NEGATIVE_INFINITY;	// set magnitude to 0 (== -invinity dB)
 
-		// Calculate Harmonic Product Spectrum
-		if(hps == null || hps.length != mag.length)
-			hps = new float[mag.length];
-		calcHarmonicProductSpectrum(mag, hps, HPS_ORDER);
-
-		// calculate the max (strongest frequency) of the HPS
-		int maxIndex = 0;
-		for (int i = 1; i < hps.length; i++) {
-			if(hps[maxIndex] < hps[i])
-				maxIndex = i;
+		// Calculate Harmonic Product Spectrum and its max (strongest frequency)
+		// note: the hps is only finite for bins inside the band whose harmonics are all inside the
+		// band. It is only calculated for these bins; the other bins are -infinity.
+		int start = lowIndex;
+		int end = Math.max(start, (highIndex + binOffset) / (hpsOrder + 1) - binOffset);
+		int maxIndex;
+		if(hpsInPlace) {
+			// the magnitudes around the max are saved in peakMag before they are overwritten
+			maxIndex = calcHarmonicProductSpectrumBand(mag, mag, binOffset, hpsOrder, start, end, peakMag);
+			for (int i = end; i < highIndex; i++)
+				mag[i] = Float.NEGATIVE_INFINITY;
+			this.hps = mag;
+			this.mag = null;	// the spectrum is overwritten
+		} else {
+			if(hpsBuffer == null || hpsBuffer.length != mag.length) {
+				hpsBuffer = new float[mag.length];
+				Arrays.fill(hpsBuffer, Float.NEGATIVE_INFINITY);
+				hpsBufferStart = hpsBufferEnd = 0;
+			} else if(start != hpsBufferStart || end != hpsBufferEnd) {
+				Arrays.fill(hpsBuffer, hpsBufferStart, hpsBufferEnd, Float.NEGATIVE_INFINITY);	// the band has changed
+			}
+			hpsBufferStart = start;
+			hpsBufferEnd = end;
+			maxIndex = calcHarmonicProductSpectrumBand(mag, hpsBuffer, binOffset, hpsOrder, start, end, peakMag);
+			this.hps = hpsBuffer;
 		}
-		strongestFrequency = maxIndex * hzPerSample;
 
+		// the hps only finds the bin of the fundamental. The exact frequency between the bins is
+		// interpolated from the magnitudes around it:
+		float peakOffset = interpolatePeak(peakMag);
+		strongestFrequency = (maxIndex + peakOffset + binOffset) * hzPerSample;
+
+		// refine it with the phase difference to the previous frame (if the complex spectrum was
+		// passed to the estimator):
+		if(frequencyEstimator != null)
+			strongestFrequency = frequencyEstimator.refine(maxIndex + Math.round(peakOffset) + binOffset, strongestFrequency);
+		if(latencyMonitor != null)
+			latencyMonitor.record(LatencyMonitor.STAGE_HPS, System.nanoTime() - lastUpdateTimestamp);
+
+		return evaluateResult();
+	}
+
+	/**
+	 * This method processes a frequency that was detected without a spectrum (e.g. by a filter
+	 * bank) and pass the results to the callback interface. getMag() and getHPS() will return
+	 * null afterwards. A frequency of 0 means that no pitch was detected; the result is reported
+	 * like processIdle() does (invalid and without feedback).
+	 *
+	 * @param frequency		detected frequency (in Hz) or 0 if there is no pitch
+	 * @param updateRate	rate at which the audioProcessingEngine will call this method
+	 * @return true if success; false if something went wrong (e.g. the callback interface returned an error)
+	 */
+	public boolean processDetectedFrequency(float frequency, float updateRate) {
+		this.lastUpdateTimestamp = System.nanoTime();
+		this.updateRate = updateRate;
+		this.mag = null;
+		this.hps = null;
+		if(frequency <= 0)
+			return processIdle(updateRate);
+		this.idle = false;
+		if(frequencyEstimator != null)
+			frequencyEstimator.reset();	// there is no spectrum of this frame
+		strongestFrequency = frequency;
+		return evaluateResult();
+	}
+
+	/**
+	 * This method is called instead of processFFTSamples() if nothing is played (e.g. the noise
+	 * gate of the AudioProcessingEngine is closed). The result is marked as idle and invalid,
+	 * the values of the last result (detected frequency, spectra) are kept so that skins can
+	 * render the idle state without any recomputation. No feedback is given to the user.
+	 *
+	 * @param updateRate	rate at which the audioProcessingEngine will call this method
+	 * @return true if success; false if the callback interface returned an error
+	 */
+	public boolean processIdle(float updateRate) {
+		this.lastUpdateTimestamp = System.nanoTime();
+		this.updateRate = updateRate;
+		idle = true;
+		valid = false;
+		resetPitchHistory();	// the next note starts a new series
+		return callbackInterface.process(this);
+	}
+
+	/**
+	 * Forgets the pitch that was detected in the past cycles (e.g. after a string was plucked).
+	 * The next detected pitch starts a new series of cycles and is not compared to the old note.
+	 * Must be called from the thread that calls processFFTSamples().
+	 */
+	public void resetPitchHistory() {
+		pitchHoldCounter = 0;
+		lastDetectedFrequency = 0;
+		if(frequencyEstimator != null)
+			frequencyEstimator.reset();	// the phase of the old note is not related to the new one
+	}
+
+	/**
+	 * Derives the target pitch from the strongest frequency, gives feedback to the user and
+	 * informs the callback interface about the updated values.
+	 *
+	 * @return true if success; false if the callback interface returned an error
+	 */
+	private boolean evaluateResult() {
 		// detect the relevant frequency component:
 		detectedFrequency = strongestFrequency; 	// this might be improved in the future (maybe the strongest frequency is not always the correct one?)
 		targetPitchIndex = frequencyToPitchIndex(detectedFrequency);
@@ -111,36 +238,45 @@ public class GuitarTuner {
 
 		// check against the results of the past cycles:
 		if(detectedFrequency > lastDetectedFrequency*0.99 && detectedFrequency < lastDetectedFrequency*1.01) {
-			Log.d(LOGTAG, "processFFTSamples: detected frequency matches the old one!");
+			Log.d(LOGTAG, "evaluateResult: detected frequency matches the old one!");
 			pitchHoldCounter++;
 		} else {
-			Log.d(LOGTAG, "processFFTSamples: detected frequency differs from the last by " + detectedFrequency/lastDetectedFrequency*100 + "%");
+			Log.d(LOGTAG, "evaluateResult: detected frequency differs from the last by " + detectedFrequency/lastDetectedFrequency*100 + "%");
 			pitchHoldCounter = 0;
 		}
 
 		// If we have a stable pitch since more than 2 cycles, give feedback to the user:
+		// note: with overlapping windows the cycles are short. We limit the rate of the vibration
+		// feedback so that the patterns don't run into each other.
 		if(pitchHoldCounter > 2) {
+			boolean vibrateNow = vibrate && (lastVibrateTimestamp == 0
+					|| (lastUpdateTimestamp - lastVibrateTimestamp) / 1000000 >= MIN_VIBRATE_INTERVAL);
+			long[] vibratePattern;
 			if(detectedFrequency < getLowerToleranceBoundaryFrequency(targetPitchIndex)) {
-				Log.i(LOGTAG, "processFFTSamples: Result: Tune up by " + (targetFrequency-detectedFrequency) + " Hz! "
+				Log.i(LOGTAG, "evaluateResult: Result: Tune up by " + (targetFrequency-detectedFrequency) + " Hz! "
 								+ "Target frequency is " + targetFrequency + " Hz.");
-				if(vibrate)
-					vibrator.vibrate(VIBRATE_PATTERN_UP, -1);
+				vibratePattern = VIBRATE_PATTERN_UP;
 			} else if(detectedFrequency > getUpperToleranceBoundaryFrequency(targetPitchIndex)) {
-				Log.i(LOGTAG, "processFFTSamples: Result: Tune down by " + (detectedFrequency-targetFrequency) + " Hz! "
+				Log.i(LOGTAG, "evaluateResult: Result: Tune down by " + (detectedFrequency-targetFrequency) + " Hz! "
 								+ "Target frequency is " + targetFrequency + " Hz.");
-				if(vibrate)
-					vibrator.vibrate(VIBRATE_PATTERN_DOWN, -1);
+				vibratePattern = VIBRATE_PATTERN_DOWN;
 			} else {
-				Log.i(LOGTAG, "processFFTSamples: Result: TUNED! Target frequency is " + targetFrequency + " Hz (Error: "
+				Log.i(LOGTAG, "evaluateResult: Result: TUNED! Target frequency is " + targetFrequency + " Hz (Error: "
 								+ (detectedFrequency-targetFrequency) + " Hz).");
-				if(vibrate)
-					vibrator.vibrate(VIBRATE_PATTERN_TUNED, -1);
+				vibratePattern = VIBRATE_PATTERN_TUNED;
+			}
+			if(vibrateNow) {
+				vibrator.vibrate(vibratePattern, -1);
+				lastVibrateTimestamp = lastUpdateTimestamp;
 			}
 			pitchHoldCounter = 0;
 		}
 
 		// inform the callback interface about updated values:
+		long callbackStart = System.nanoTime();
 		boolean success = callbackInterface.process(this);
+		if(latencyMonitor != null)
+			latencyMonitor.record(LatencyMonitor.STAGE_CALLBACK, System.nanoTime() - callbackStart);
 
 		lastDetectedFrequency = detectedFrequency;
 		lastTargetFrequency = targetFrequency;
@@ -148,19 +284,93 @@ public class GuitarTuner {
 	}
 
 	/**
-	 * calculates the harmonic product spectrum from an array of magnitudes (in dB)
+	 * Copies the results of the current cycle (including the results of the last cycle and
+	 * copies of the spectra) into another instance. The copy can be used by another thread (e.g.
+	 * for drawing) while this instance processes the next cycle. The arrays of the target are
+	 * reused if they have the right size.
+	 *
+	 * @param snapshot	instance that receives the results (not used for processing itself)
+	 */
+	public void copyResultsTo(GuitarTuner snapshot) {
+		copyResultsTo(snapshot, true);
+	}
+
+	/**
+	 * Same as copyResultsTo(snapshot) but the spectra (mag and hps) are only copied if copySpectra
+	 * is set. Otherwise getMag() and getHPS() of the snapshot will return null (the caller can set
+	 * them with setSnapshotSpectra()).
+	 *
+	 * @param snapshot		instance that receives the results (not used for processing itself)
+	 * @param copySpectra	true to copy the spectra
+	 */
+	public void copyResultsTo(GuitarTuner snapshot, boolean copySpectra) {
+		snapshot.mag = copySpectra ? copyArray(mag, snapshot.mag) : null;
+		snapshot.hps = copySpectra ? copyArray(hps, snapshot.hps) : null;
+		snapshot.updateRate = updateRate;
+		snapshot.lastUpdateTimestamp = lastUpdateTimestamp;
+		snapshot.captureTimestamp = captureTimestamp;
+		snapshot.latencyMonitor = latencyMonitor;
+		snapshot.hzPerSample = hzPerSample;
+		snapshot.binOffset = binOffset;
+		snapshot.strongestFrequency = strongestFrequency;
+		snapshot.detectedFrequency = detectedFrequency;
+		snapshot.targetFrequency = targetFrequency;
+		snapshot.targetPitchIndex = targetPitchIndex;
+		snapshot.pitchHoldCounter = pitchHoldCounter;
+		snapshot.lastDetectedFrequency = lastDetectedFrequency;
+		snapshot.lastTargetFrequency = lastTargetFrequency;
+		snapshot.valid = valid;
+		snapshot.idle = idle;
+		snapshot.vibrate = vibrate;
+		snapshot.lowCutOffFrequency = lowCutOffFrequency;
+		snapshot.highCutOffFrequency = highCutOffFrequency;
+		snapshot.hpsOrder = hpsOrder;
+	}
+
+	/**
+	 * Sets the spectra of a snapshot (see copyResultsTo()). Must not be used on an instance that
+	 * processes samples.
+	 *
+	 * @param mag	magnitudes of the spectrum (might be null)
+	 * @param hps	harmonic product spectrum (might be null)
+	 */
+	void setSnapshotSpectra(float[] mag, float[] hps) {
+		this.mag = mag;
+		this.hps = hps;
+	}
+
+	/**
+	 * @param source	array to copy (might be null)
+	 * @param target	array that should be reused if possible (might be null)
+	 * @return copy of source (null if source is null)
+	 */
+	private static float[] copyArray(float[] source, float[] target) {
+		if(source == null)
+			return null;
+		if(target == null || target.length != source.length)
+			target = new float[source.length];
+		System.arraycopy(source, 0, target, 0, source.length);
+		return target;
+	}
+
+	/**
+	 * calculates the harmonic product spectrum from an array of magnitudes (in dB) for all bins
+	 * (processFFTSamples() only calculates the band, see calcHarmonicProductSpectrumBand();
+	 * package private so that both can be benchmarked and compared)
 	 * @param mag		magnitude array (in dB)
 	 * @param hps		result array (will be overwritten with the result)
+	 * @param binOffset	bin number of the first sample in mag (0 if mag starts at 0 Hz)
 	 * @param order		order of the product; 1 = up to the first harmonic ...
 	 */
-	private void calcHarmonicProductSpectrum(float[] mag, float[] hps, int order) {
+	void calcHarmonicProductSpectrum(float[] mag, float[] hps, int binOffset, int order) {
 		if(mag.length != hps.length) {
 			Log.e(LOGTAG, "calcHarmonicProductSpectrum: mag[] and hps[] have to be of the same length!");
 			throw new IllegalArgumentException("mag[] and hps[] have to be of the same length");
 		}
 
 		// initialize the hps array
-		int hpsLength = mag.length / (order+1);
+		// note: we can only calculate the hps for bins whose harmonics are all inside of mag
+		int hpsLength = Math.max(0, (mag.length + binOffset) / (order+1) - binOffset);
 		for (int i = 0; i < hps.length; i++) {
 			if(i < hpsLength)
 				hps[i] = mag[i];
@@ -173,15 +383,118 @@ public class GuitarTuner {
 			int downsamplingFactor = harmonic + 1;
 			for (int index = 0; index < hpsLength; index++) {
 				// Calculate the average (downsampling):
+				// note: the bin (index + binOffset) is at index (index + binOffset) * downsamplingFactor - binOffset
+				// in the downsampled spectrum
+				int start = (index + binOffset) * downsamplingFactor - binOffset;
 				float avg = 0;
 				for (int i = 0; i < downsamplingFactor; i++) {
-					avg += mag[index*downsamplingFactor + i];
+					avg += mag[start + i];
 				}
 				hps[index] += avg / downsamplingFactor;
 			}
 		}
 	}
 
+	/**
+	 * Calculates the position of a spectral peak with sub-bin precision. The peak is searched
+	 * in the bins next to the center of the given magnitudes (the max of the hps is not always
+	 * the max of the spectrum) and a parabola is fitted through the (logarithmic) magnitudes of
+	 * the peak and its neighbours. On the log scale the main lobe of the window is close to a
+	 * gaussian, which makes this fit almost exact (< 0.2 cents with a 4k fft of a 2k window).
+	 *
+	 * @param peakMag	magnitudes (log) of the bins (center - 2) ... (center + 2)
+	 * @return offset (in bins, -1.5 ... 1.5) of the peak relative to the center bin
+	 */
+	static float interpolatePeak(float[] peakMag) {
+		int center = PEAK_NEIGHBOURS / 2;
+		int peak = center;
+		if(peakMag[center - 1] > peakMag[peak])
+			peak = center - 1;
+		if(peakMag[center + 1] > peakMag[peak])
+			peak = center + 1;
+
+		float a = peakMag[peak - 1];
+		float b = peakMag[peak];
+		float c = peakMag[peak + 1];
+		if(Float.isInfinite(a) || Float.isInfinite(b) || Float.isInfinite(c))
+			return peak - center;	// peak at the edge of the band: no interpolation
+		float denominator = a - 2 * b + c;
+		if(denominator >= 0)
+			return peak - center;	// no maximum (flat spectrum)
+		float delta = 0.5f * (a - c) / denominator;
+		return peak - center + Math.max(-0.5f, Math.min(0.5f, delta));
+	}
+
+	/**
+	 * calculates the harmonic product spectrum like calcHarmonicProductSpectrum() but only for the
+	 * bins start ... end-1 (the band of the guitar tuner). The other bins of hps are not touched.
+	 * All harmonics of a bin are added at once: the downsampled spectra are read with one index
+	 * per harmonic that advances by the downsampling factor. The first four harmonics are
+	 * straight-line code (the checks of the order are loop invariant); higher orders use a loop.
+	 * The max of the hps is searched in the same pass.
+	 *
+	 * hps may be the same array as mag (in place): the hps of a bin only depends on the bin itself
+	 * and on bins with a higher index (its harmonics) and the bins are calculated in ascending
+	 * order. Because the magnitudes are lost in this case, the original magnitudes around the max
+	 * are copied to peakMag (in both cases).
+	 *
+	 * @param mag		magnitude array (in dB)
+	 * @param hps		result array (might be mag)
+	 * @param binOffset	bin number of the first sample in mag (0 if mag starts at 0 Hz)
+	 * @param order		order of the product; 1 = up to the first harmonic ...
+	 * @param start		first index that is calculated
+	 * @param end		index after the last index that is calculated (the harmonics of end-1 must be inside mag)
+	 * @param peakMag	receives the magnitudes of the bins (max - 2) ... (max + 2) (length 5)
+	 * @return index of the (first) max of the hps (start if there is no finite value)
+	 */
+	int calcHarmonicProductSpectrumBand(float[] mag, float[] hps, int binOffset, int order, int start, int end, float[] peakMag) {
+		int maxIndex = start;
+		float max = Float.NEGATIVE_INFINITY;
+		float previous1 = start >= 1 ? mag[start - 1] : Float.NEGATIVE_INFINITY;	// original magnitude of index - 1
+		float previous2 = start >= 2 ? mag[start - 2] : Float.NEGATIVE_INFINITY;	// original magnitude of index - 2
+		for (int i = 0; i < PEAK_NEIGHBOURS; i++)
+			peakMag[i] = Float.NEGATIVE_INFINITY;
+
+		// note: the bin (index + binOffset) is at index (index + binOffset) * downsamplingFactor - binOffset
+		// in the spectrum that is downsampled by downsamplingFactor
+		int bin = start + binOffset;
+		int index2 = bin * 2 - binOffset;
+		int index3 = bin * 3 - binOffset;
+		int index4 = bin * 4 - binOffset;
+		int index5 = bin * 5 - binOffset;
+		for (int index = start; index < end; index++, index2 += 2, index3 += 3, index4 += 4, index5 += 5) {
+			float original = mag[index];
+			float sum = original + (mag[index2] + mag[index2 + 1]) * 0.5f;
+			if(order >= 2)
+				sum += (mag[index3] + mag[index3 + 1] + mag[index3 + 2]) * (1f / 3);
+			if(order >= 3)
+				sum += (mag[index4] + mag[index4 + 1] + mag[index4 + 2] + mag[index4 + 3]) * 0.25f;
+			if(order >= 4)
+				sum += (mag[index5] + mag[index5 + 1] + mag[index5 + 2] + mag[index5 + 3] + mag[index5 + 4]) * 0.2f;
+			for (int downsamplingFactor = 6; downsamplingFactor <= order + 1; downsamplingFactor++) {
+				int first = (index + binOffset) * downsamplingFactor - binOffset;
+				float avg = 0;
+				for (int i = 0; i < downsamplingFactor; i++)
+					avg += mag[first + i];
+				sum += avg / downsamplingFactor;
+			}
+			hps[index] = sum;
+
+			if(sum > max) {
+				max = sum;
+				maxIndex = index;
+				peakMag[0] = previous2;
+				peakMag[1] = previous1;
+				peakMag[2] = original;
+				peakMag[3] = index + 1 < mag.length ? mag[index + 1] : Float.NEGATIVE_INFINITY;
+				peakMag[4] = index + 2 < mag.length ? mag[index + 2] : Float.NEGATIVE_INFINITY;
+			}
+			previous2 = previous1;
+			previous1 = original;
+		}
+		return maxIndex;
+	}
+
 	/**
 	 * converts a frequency (float) into an pitch index ( 0 is A0, 1 is A0#, 2 is B0, 3 is C1, ...).
 	 * This will round the frequency to the closest pitch index.
@@ -285,14 +598,135 @@ public class GuitarTuner {
 		return updateRate;
 	}
 
+	/**
+	 * @return time (System.nanoTime()) of the last result
+	 */
 	public long getLastUpdateTimestamp() {
 		return lastUpdateTimestamp;
 	}
 
+	/**
+	 * @return time (System.nanoTime()) at which the newest sample of the last result was captured;
+	 *         0 if unknown
+	 */
+	public long getCaptureTimestamp() {
+		return captureTimestamp;
+	}
+
+	/**
+	 * Sets the capture time of the newest sample that is passed with the next call to
+	 * processFFTSamples() (or processDetectedFrequency()/processIdle()).
+	 *
+	 * @param captureTimestamp	System.nanoTime() at which the sample was captured
+	 */
+	public void setCaptureTimestamp(long captureTimestamp) {
+		this.captureTimestamp = captureTimestamp;
+	}
+
+	/**
+	 * @return monitor that receives the latencies of this tuner (might be null). Snapshots (see
+	 *         copyResultsTo()) share the monitor of the original.
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return latencyMonitor;
+	}
+
+	/**
+	 * Sets the monitor that receives the latencies of the hps/peak search and the callback
+	 * (the AudioProcessingEngine passes its monitor when it starts).
+	 *
+	 * @param latencyMonitor	latency monitor (null to disable the measurement)
+	 */
+	public void setLatencyMonitor(LatencyMonitor latencyMonitor) {
+		this.latencyMonitor = latencyMonitor;
+	}
+
+	public InstantaneousFrequencyEstimator getFrequencyEstimator() {
+		return frequencyEstimator;
+	}
+
+	/**
+	 * Sets the estimator that refines the strongest frequency with the phase difference between
+	 * two frames. The spectrum of every frame has to be passed to the estimator before
+	 * processFFTSamples() is called (otherwise the frequency is not refined).
+	 *
+	 * @param frequencyEstimator	estimator (null to disable the refinement)
+	 */
+	public void setFrequencyEstimator(InstantaneousFrequencyEstimator frequencyEstimator) {
+		this.frequencyEstimator = frequencyEstimator;
+	}
+
 	public float getHzPerSample() {
 		return hzPerSample;
 	}
 
+	public int getBinOffset() {
+		return binOffset;
+	}
+
+	public int getLowCutOffFrequency() {
+		return lowCutOffFrequency;
+	}
+
+	public int getHighCutOffFrequency() {
+		return highCutOffFrequency;
+	}
+
+	/**
+	 * Sets the band in which the pitch is searched. Must be called from the thread that calls
+	 * processFFTSamples() (e.g. by the AudioProcessingEngine when the analysis profile changes).
+	 *
+	 * @param lowCutOffFrequency	lowest frequency that will be extracted from the spectrum (in Hz)
+	 * @param highCutOffFrequency	highest frequency that will be extracted from the spectrum (in Hz)
+	 */
+	public void setCutOffFrequencies(int lowCutOffFrequency, int highCutOffFrequency) {
+		if(lowCutOffFrequency < 0 || lowCutOffFrequency >= highCutOffFrequency)
+			throw new IllegalArgumentException("invalid cut off frequencies: " + lowCutOffFrequency + " - " + highCutOffFrequency);
+		this.lowCutOffFrequency = lowCutOffFrequency;
+		this.highCutOffFrequency = highCutOffFrequency;
+	}
+
+	public int getHPSOrder() {
+		return hpsOrder;
+	}
+
+	/**
+	 * Sets the order of the harmonic product spectrum. Must be called from the thread that calls
+	 * processFFTSamples().
+	 *
+	 * @param hpsOrder		order of the product; 1 = up to the first harmonic ...
+	 */
+	public void setHPSOrder(int hpsOrder) {
+		if(hpsOrder < 1)
+			throw new IllegalArgumentException("hps order must be at least 1");
+		this.hpsOrder = hpsOrder;
+	}
+
+	public boolean isHPSInPlace() {
+		return hpsInPlace;
+	}
+
+	/**
+	 * Calculates the harmonic product spectrum in the array that is passed to processFFTSamples()
+	 * instead of a separate array. getMag() will return null afterwards (the spectrum is
+	 * overwritten). Must be called from the thread that calls processFFTSamples().
+	 *
+	 * @param hpsInPlace	true to save the memory of the hps array
+	 */
+	public void setHPSInPlace(boolean hpsInPlace) {
+		this.hpsInPlace = hpsInPlace;
+		if(hpsInPlace)
+			hps = hpsBuffer = null;
+	}
+
+	/**
+	 * @return number of bytes of the buffers that are owned by this instance (the spectrum that is
+	 *         passed to processFFTSamples() is owned by the caller)
+	 */
+	public int getRetainedHeapBytes() {
+		return hpsBuffer == null || hpsInPlace ? 0 : hpsBuffer.length * 4;
+	}
+
 	public float getDetectedFrequency() {
 		return detectedFrequency;
 	}
@@ -309,6 +743,13 @@ public class GuitarTuner {
 		return valid;
 	}
 
+	/**
+	 * @return true if nothing is played (see processIdle()). The result is invalid in this case.
+	 */
+	public boolean isIdle() {
+		return idle;
+	}
+
 	public boolean isVibrate() {
 		return vibrate;
 	}
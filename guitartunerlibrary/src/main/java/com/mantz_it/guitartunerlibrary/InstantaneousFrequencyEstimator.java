@@ -0,0 +1,153 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Instantaneous Frequency Estimator</h1>
+ *
+ * Module:      InstantaneousFrequencyEstimator.java
+ * Description: Refines the frequency of a spectral peak with the phase difference of the peak bin
+ *              between two consecutive (overlapping) frames (phase vocoder). Only the complex values
+ *              of a few bins around the peak are kept from the previous frame.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class InstantaneousFrequencyEstimator {
+	private static final int CANDIDATE_BINS = 5;			// bins around the peak that are kept for the next frame
+	private static final float MIN_POWER_RATIO = 0.25f;		// min. power of the previous frame relative to the current one (no onset in between)
+	private static final double TWO_PI = 2 * Math.PI;
+
+	private int sampleRate;
+	private int maxHop;				// max. number of samples between two frames (the frames must overlap or be adjacent)
+
+	// spectrum of the current frame (references to the arrays of the engine; only valid until refine() is called):
+	private float[] re;
+	private float[] im;
+	private int firstBin;			// bin number of re[0] and im[0]
+	private long samplePosition;	// position (in samples since the start of the recording) of the current frame
+
+	// candidate bins of the previous frame:
+	private float[] previousRe = new float[CANDIDATE_BINS];
+	private float[] previousIm = new float[CANDIDATE_BINS];
+	private int previousFirstBin;			// bin number of previousRe[0]
+	private long previousSamplePosition;
+	private boolean previousValid = false;	// false if there is no previous frame (or it must not be used)
+	private boolean refined = false;		// true if the last result of refine() was refined
+
+	/**
+	 * Passes the complex spectrum of the current frame. Must be called before the peak of the
+	 * frame is refined with refine(). The arrays are not copied (only the candidate bins are
+	 * copied by refine()).
+	 *
+	 * @param re				real part of the spectrum
+	 * @param im				imaginary part of the spectrum
+	 * @param firstBin			bin number of re[0] (0 for a full spectrum)
+	 * @param samplePosition	position of the frame in the signal (e.g. total number of samples
+	 *                          when the frame was taken). Only the difference to the previous frame is used.
+	 * @param sampleRate		sample rate of the signal
+	 * @param windowLength		length of the analysed window (max. distance between two frames)
+	 */
+	public void setSpectrum(float[] re, float[] im, int firstBin, long samplePosition, int sampleRate, int windowLength) {
+		if(sampleRate != this.sampleRate || windowLength != this.maxHop) {
+			this.sampleRate = sampleRate;
+			this.maxHop = windowLength;
+			previousValid = false;
+		}
+		this.re = re;
+		this.im = im;
+		this.firstBin = firstBin;
+		this.samplePosition = samplePosition;
+	}
+
+	/**
+	 * Forgets the previous frame (e.g. after a gap in the signal or the pluck of a string).
+	 */
+	public void reset() {
+		previousValid = false;
+		re = null;
+		im = null;
+	}
+
+	/**
+	 * Refines the frequency of a peak with the phase difference of its bin between the previous
+	 * and the current frame. The phase of a stationary sinusoid advances by 2*pi*f*hop/sampleRate
+	 * between two frames. The deviation of the measured phase difference from the one that is
+	 * expected for the given frequency is the correction (it is unambiguous within
+	 * +- sampleRate/(2*hop) Hz around the given frequency).
+	 * The candidate bins around the peak are kept for the next frame. If there is no spectrum of
+	 * the current frame (see setSpectrum()) or no usable previous frame, the frequency is returned
+	 * unchanged.
+	 *
+	 * @param peakBin		bin number of the peak (the bin closest to frequency)
+	 * @param frequency		estimate of the frequency of the peak (e.g. interpolated between the bins; in Hz)
+	 * @return refined frequency (in Hz)
+	 */
+	public float refine(int peakBin, float frequency) {
+		refined = false;
+		if(re == null || im == null) {
+			previousValid = false;
+			return frequency;
+		}
+
+		float result = frequency;
+		int index = peakBin - firstBin;
+		int previousIndex = peakBin - previousFirstBin;
+		long hop = samplePosition - previousSamplePosition;
+		if(previousValid && hop > 0 && hop <= maxHop && index >= 0 && index < re.length
+				&& previousIndex >= 0 && previousIndex < CANDIDATE_BINS) {
+			float currentRe = re[index];
+			float currentIm = im[index];
+			float lastRe = previousRe[previousIndex];
+			float lastIm = previousIm[previousIndex];
+			float power = currentRe * currentRe + currentIm * currentIm;
+			float previousPower = lastRe * lastRe + lastIm * lastIm;
+			if(power > 0 && previousPower >= MIN_POWER_RATIO * power) {
+				// phase difference: arg(current * conj(previous))
+				double phaseDifference = Math.atan2(currentIm * lastRe - currentRe * lastIm, currentRe * lastRe + currentIm * lastIm);
+				double expectedPhaseDifference = TWO_PI * frequency * hop / sampleRate;
+				double deviation = phaseDifference - expectedPhaseDifference;
+				deviation -= TWO_PI * Math.floor((deviation + Math.PI) / TWO_PI);	// wrap to -pi ... pi
+				result = (float) (frequency + deviation * sampleRate / (TWO_PI * hop));
+				refined = true;
+			}
+		}
+
+		// keep the candidate bins for the next frame:
+		previousFirstBin = peakBin - CANDIDATE_BINS / 2;
+		for (int i = 0; i < CANDIDATE_BINS; i++) {
+			int binIndex = previousFirstBin + i - firstBin;
+			boolean inside = binIndex >= 0 && binIndex < re.length;
+			previousRe[i] = inside ? re[binIndex] : 0;
+			previousIm[i] = inside ? im[binIndex] : 0;
+		}
+		previousSamplePosition = samplePosition;
+		previousValid = true;
+
+		// the arrays are reused by the engine for the next frame:
+		re = null;
+		im = null;
+		return result;
+	}
+
+	/**
+	 * @return true if the last result of refine() was refined with the phase difference
+	 */
+	public boolean isRefined() {
+		return refined;
+	}
+}
@@ -0,0 +1,133 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Latency Histogram</h1>
+ *
+ * Module:      LatencyHistogram.java
+ * Description: Histogram of latencies with logarithmic buckets (8 per octave, < 7% error).
+ *              All buckets are preallocated; recording does not allocate memory.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;		// 2^3 buckets per octave
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = 64 * SUB_BUCKETS;	// covers the whole positive long range
+	private final int[] buckets = new int[BUCKET_COUNT];
+	private int count = 0;
+	private long sum = 0;
+	private long max = 0;
+
+	/**
+	 * Adds a latency to the histogram. Must only be called from one thread (other threads can
+	 * read the values at any time; they might be slightly inconsistent).
+	 *
+	 * @param nanos		latency (ns). Negative values are counted as 0.
+	 */
+	public void record(long nanos) {
+		if(nanos < 0)
+			nanos = 0;
+		buckets[bucketIndex(nanos)]++;
+		count++;
+		sum += nanos;
+		if(nanos > max)
+			max = nanos;
+	}
+
+	/**
+	 * @param value		value >= 0
+	 * @return index of the bucket containing the value
+	 */
+	private static int bucketIndex(long value) {
+		if(value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);	// >= SUB_BUCKET_BITS
+		int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+	}
+
+	/**
+	 * @param index		bucket index
+	 * @return smallest value of the bucket
+	 */
+	private static long bucketLowerBound(int index) {
+		if(index < SUB_BUCKETS)
+			return index;
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+	}
+
+	/**
+	 * Calculates a percentile of the recorded latencies. The result is the center of the bucket
+	 * which contains the percentile (but not more than the max. latency).
+	 *
+	 * @param percentile	percentile (0 ... 100), e.g. 50 for the median
+	 * @return latency (ns); 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		int total = count;
+		if(total == 0)
+			return 0;
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long cumulated = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			cumulated += buckets[i];
+			if(cumulated >= target) {
+				long lower = bucketLowerBound(i);
+				long upper = i + 1 < BUCKET_COUNT ? bucketLowerBound(i + 1) : Long.MAX_VALUE;
+				return Math.min(lower + (upper - lower) / 2, max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return number of recorded latencies
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return mean of the recorded latencies (ns); 0 if nothing was recorded
+	 */
+	public long getMean() {
+		int total = count;
+		return total == 0 ? 0 : sum / total;
+	}
+
+	/**
+	 * @return max. recorded latency (ns)
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Clears the histogram. Must be called from the recording thread.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			buckets[i] = 0;
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+}
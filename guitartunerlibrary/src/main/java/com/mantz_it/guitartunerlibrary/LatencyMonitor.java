@@ -0,0 +1,111 @@
+package com.mantz_it.guitartunerlibrary;
+
+import android.util.Log;
+
+/**
+ * <h1>Wear Guitar Tuner - Latency Monitor</h1>
+ *
+ * Module:      LatencyMonitor.java
+ * Description: Keeps one LatencyHistogram per stage of the pipeline (capture to pixels).
+ *              The stages are recorded by the AudioProcessingEngine, the GuitarTuner and the
+ *              TunerSurface (all timestamps are System.nanoTime()).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class LatencyMonitor {
+	private static final String LOGTAG = "LatencyMonitor";
+	public static final int STAGE_CAPTURE = 0;		// capture of the newest sample of a hop until it is read by the engine
+	public static final int STAGE_CONVERSION = 1;	// noise gate, onset detection, window copy and conversion to float
+	public static final int STAGE_FFT = 2;			// fft (or zoom transform / filter bank)
+	public static final int STAGE_MAGNITUDE = 3;	// logarithmic magnitude
+	public static final int STAGE_HPS = 4;			// harmonic product spectrum and peak search (GuitarTuner)
+	public static final int STAGE_CALLBACK = 5;		// callback of the guitar tuner (e.g. publishing to the TunerSurface)
+	public static final int STAGE_DRAW = 6;			// publication of a result until its first frame is posted (TunerSurface)
+	public static final int STAGE_TOTAL = 7;		// capture of the newest sample until the frame is posted
+	public static final int STAGE_COUNT = 8;
+	private static final String[] STAGE_NAMES = {"capture", "conversion", "fft", "magnitude", "hps", "callback",
+			"draw", "total"};
+	private final LatencyHistogram[] histograms = new LatencyHistogram[STAGE_COUNT];
+
+	/**
+	 * constructor.
+	 */
+	public LatencyMonitor() {
+		for (int i = 0; i < STAGE_COUNT; i++)
+			histograms[i] = new LatencyHistogram();
+	}
+
+	/**
+	 * Adds a latency to the histogram of a stage. Each stage must only be recorded by one thread.
+	 *
+	 * @param stage		one of the STAGE_* constants
+	 * @param nanos		latency (ns)
+	 */
+	public void record(int stage, long nanos) {
+		histograms[stage].record(nanos);
+	}
+
+	/**
+	 * @param stage		one of the STAGE_* constants
+	 * @return histogram of the stage
+	 */
+	public LatencyHistogram getHistogram(int stage) {
+		return histograms[stage];
+	}
+
+	/**
+	 * @param stage			one of the STAGE_* constants
+	 * @param percentile	percentile (0 ... 100), e.g. 95
+	 * @return latency (ns) of the stage at the given percentile
+	 */
+	public long getPercentile(int stage, double percentile) {
+		return histograms[stage].getPercentile(percentile);
+	}
+
+	/**
+	 * @param stage		one of the STAGE_* constants
+	 * @return name of the stage (e.g. "fft")
+	 */
+	public static String getStageName(int stage) {
+		return STAGE_NAMES[stage];
+	}
+
+	/**
+	 * Clears the histograms of all stages. Must be called while no stage is recorded.
+	 */
+	public void reset() {
+		for (LatencyHistogram histogram : histograms)
+			histogram.reset();
+	}
+
+	/**
+	 * Logs p50, p95, p99 and max of all stages which were recorded
+	 */
+	public void logStatistics() {
+		for (int i = 0; i < STAGE_COUNT; i++) {
+			LatencyHistogram histogram = histograms[i];
+			if(histogram.getCount() == 0)
+				continue;
+			Log.i(LOGTAG, "logStatistics: " + STAGE_NAMES[i] + ": p50=" + histogram.getPercentile(50) / 1000
+					+ " us  p95=" + histogram.getPercentile(95) / 1000 + " us  p99=" + histogram.getPercentile(99) / 1000
+					+ " us  max=" + histogram.getMax() / 1000 + " us  (" + histogram.getCount() + " values)");
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package com.mantz_it.guitartunerlibrary;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <h1>Wear Guitar Tuner - Mapped File Audio Source</h1>
+ *
+ * Module:      MappedFileAudioSource.java
+ * Description: Audio source that reads a WAV file (16-bit PCM) or a raw PCM file
+ *              (16-bit little endian, mono). The file is memory mapped: the samples are
+ *              copied directly from the mapping into the buffer of the reader.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class MappedFileAudioSource implements AudioSource {
+	private static final String LOGTAG = "MappedFileAudioSource";
+	private static final int WAVE_FORMAT_PCM = 1;
+	private File file;
+	private boolean raw;			// true: file has no header (raw PCM)
+	private boolean realTime;		// true: deliver the samples at the speed of the sample rate
+	private int sampleRate;
+	private int channels = 1;		// number of interleaved channels (only the first one is used)
+	private ShortBuffer samples;	// view on the mapped samples
+	private long startTime;			// time of the first read (nanoseconds, used for the real time mode)
+	private long samplesRead;		// number of samples delivered since open()
+
+	/**
+	 * Constructor for WAV files (the sample rate is read from the header).
+	 *
+	 * @param file		WAV file (PCM, 16-bit)
+	 * @param realTime	if true, read() blocks so that the samples are delivered at the speed of the
+	 *                  sample rate. Otherwise the file is processed as fast as possible.
+	 */
+	public MappedFileAudioSource(File file, boolean realTime) {
+		this.file = file;
+		this.realTime = realTime;
+		this.raw = false;
+	}
+
+	/**
+	 * Constructor for raw PCM files (16-bit little endian, mono, no header).
+	 *
+	 * @param file			raw PCM file
+	 * @param sampleRate	sample rate of the file
+	 * @param realTime		if true, read() blocks so that the samples are delivered at the speed of the
+	 *                      sample rate. Otherwise the file is processed as fast as possible.
+	 */
+	public MappedFileAudioSource(File file, int sampleRate, boolean realTime) {
+		this.file = file;
+		this.sampleRate = sampleRate;
+		this.realTime = realTime;
+		this.raw = true;
+	}
+
+	@Override
+	public boolean open() {
+		MappedByteBuffer buffer;
+		try {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+			try {
+				// note: the mapping stays valid after the channel is closed
+				FileChannel channel = randomAccessFile.getChannel();
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} finally {
+				randomAccessFile.close();
+			}
+		} catch (IOException e) {
+			Log.e(LOGTAG, "open: Can't map file " + file + ": " + e.getMessage());
+			return false;
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if(!raw && !parseWavHeader(buffer))
+			return false;
+
+		// the buffer is now positioned at the first sample:
+		samples = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+		samplesRead = 0;
+		Log.i(LOGTAG, "open: Mapped " + file + " (" + samples.remaining() / channels + " samples, "
+				+ sampleRate + " Hz, " + channels + " channel(s))");
+		return true;
+	}
+
+	/**
+	 * Reads the header of a WAV file and positions the buffer at the first sample
+	 * (the limit is set to the end of the data chunk). The chunk sizes are unsigned 32-bit
+	 * values and are clamped to the end of the mapping (e.g. truncated recordings).
+	 *
+	 * @param buffer	mapped file (little endian)
+	 * @return true on success; false if the format is not supported
+	 */
+	private boolean parseWavHeader(ByteBuffer buffer) {
+		if(buffer.remaining() < 12 || buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) {	// 'RIFF', 'WAVE'
+			Log.e(LOGTAG, "parseWavHeader: " + file + " is not a WAV file");
+			return false;
+		}
+		boolean formatFound = false;
+		int position = 12;
+		while (position + 8 <= buffer.limit()) {
+			int chunkId = buffer.getInt(position);
+			long chunkSize = buffer.getInt(position + 4) & 0xFFFFFFFFL;
+			position += 8;
+			int chunkEnd = (int) Math.min(buffer.limit(), position + chunkSize);
+			if(chunkId == 0x20746d66) {			// 'fmt '
+				if(chunkEnd - position < 16) {
+					Log.e(LOGTAG, "parseWavHeader: fmt chunk is too short (" + chunkSize + " bytes)");
+					return false;
+				}
+				int format = buffer.getShort(position) & 0xFFFF;
+				channels = buffer.getShort(position + 2) & 0xFFFF;
+				sampleRate = buffer.getInt(position + 4);
+				int bitsPerSample = buffer.getShort(position + 14) & 0xFFFF;
+				if(format != WAVE_FORMAT_PCM || bitsPerSample != 16 || channels < 1 || sampleRate <= 0) {
+					Log.e(LOGTAG, "parseWavHeader: Unsupported format (format=" + format + ", bits="
+							+ bitsPerSample + ", channels=" + channels + ", rate=" + sampleRate + "). Only 16-bit PCM is supported.");
+					return false;
+				}
+				formatFound = true;
+			} else if(chunkId == 0x61746164) {	// 'data'
+				if(!formatFound) {
+					Log.e(LOGTAG, "parseWavHeader: data chunk before fmt chunk");
+					return false;
+				}
+				buffer.limit(chunkEnd);
+				buffer.position(position);
+				return true;
+			}
+			long nextPosition = position + chunkSize + (chunkSize & 1);	// chunks are word aligned
+			if(nextPosition >= buffer.limit())
+				break;	// the chunk ends at the end of the file (or beyond)
+			position = (int) nextPosition;
+		}
+		Log.e(LOGTAG, "parseWavHeader: No data chunk found in " + file);
+		return false;
+	}
+
+	@Override
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	@Override
+	public boolean isLive() {
+		return false;
+	}
+
+	@Override
+	public int read(short[] buffer, int offset, int length) {
+		int count = Math.min(length, samples.remaining() / channels);
+		if(count <= 0)
+			return -1;
+
+		if(channels == 1) {
+			samples.get(buffer, offset, count);
+		} else {
+			// only use the first channel:
+			int position = samples.position();
+			for (int i = 0; i < count; i++)
+				buffer[offset + i] = samples.get(position + i * channels);
+			samples.position(position + count * channels);
+		}
+
+		if(realTime)
+			waitForRealTime(count);
+		return count;
+	}
+
+	/**
+	 * Blocks until the samples that are delivered so far would have been recorded in real time.
+	 *
+	 * @param count		number of samples that are delivered by the current read
+	 */
+	private void waitForRealTime(int count) {
+		if(samplesRead == 0)
+			startTime = System.nanoTime();
+		samplesRead += count;
+		long sleepTime = (samplesRead * 1000000000L / sampleRate - (System.nanoTime() - startTime)) / 1000000;
+		if(sleepTime > 0) {
+			try {
+				Thread.sleep(sleepTime);
+			} catch (InterruptedException e) {
+				Log.w(LOGTAG, "waitForRealTime: Interrupted!");
+			}
+		}
+	}
+
+	@Override
+	public long getCaptureTimestamp() {
+		return 0;	// the samples are not captured
+	}
+
+	@Override
+	public void close() {
+		samples = null;		// the mapping is released by the garbage collector
+	}
+
+	@Override
+	public String getName() {
+		return "file " + file.getName();
+	}
+}
@@ -0,0 +1,153 @@
+package com.mantz_it.guitartunerlibrary;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+
+/**
+ * <h1>Wear Guitar Tuner - Microphone Audio Source</h1>
+ *
+ * Module:      MicrophoneAudioSource.java
+ * Description: Audio source that records from the microphone (android AudioRecord).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class MicrophoneAudioSource implements AudioSource {
+	private static final String LOGTAG = "MicrophoneAudioSource";
+	private static final int RECORDER_CHANNELS = AudioFormat.CHANNEL_IN_MONO;
+	private static final int RECORDER_AUDIO_ENCODING = AudioFormat.ENCODING_PCM_16BIT;
+	private static final int RECORDER_ELEMENT_SIZE = 2;	// 16-bit
+	private static final int TIMEBASE_MONOTONIC = 0;	// AudioTimestamp.TIMEBASE_MONOTONIC (API 24)
+	private int sampleRate;
+	private int bufferSize;		// minimum size (in samples) of the internal buffer of the AudioRecord
+	private AudioRecord audioRecord;
+	private Method getTimestampMethod;		// AudioRecord.getTimestamp() (API 24; null if not available)
+	private Object[] getTimestampArguments;	// arguments of getTimestampMethod (reused for every call)
+	private AudioTimestamp audioTimestamp;	// receives the result of getTimestampMethod
+	private long framesRead;				// number of samples read since open()
+	private long captureTimestamp;			// see getCaptureTimestamp()
+
+	/**
+	 * constructor.
+	 *
+	 * @param sampleRate	sample rate of the recording (in Hz)
+	 * @param bufferSize	number of samples the internal buffer of the recorder should be able to keep
+	 *                      (the recorder uses at least twice this size)
+	 */
+	public MicrophoneAudioSource(int sampleRate, int bufferSize) {
+		this.sampleRate = sampleRate;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public boolean open() {
+		// Determine buffer size for the audioRecord:
+		int minBufferSize = AudioRecord.getMinBufferSize(sampleRate, RECORDER_CHANNELS, RECORDER_AUDIO_ENCODING);
+		Log.d(LOGTAG, "open: min. buffer size is " + minBufferSize);
+		int audioBufferSize = Math.max(minBufferSize, bufferSize * RECORDER_ELEMENT_SIZE) * 2;
+
+		// initialize the AudioRecord instance
+		audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, sampleRate, RECORDER_CHANNELS,
+				RECORDER_AUDIO_ENCODING, audioBufferSize);
+
+		// Check if AudioRecord is correctly initialized:
+		if(audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+			Log.e(LOGTAG, "open: audioRecord is not initialized!");
+			audioRecord.release();
+			audioRecord = null;
+			return false;
+		}
+
+		// AudioRecord.getTimestamp() is only available on API 24 and higher (we compile against an
+		// older API, therefore we have to call it by reflection):
+		framesRead = 0;
+		captureTimestamp = 0;
+		if(getTimestampMethod == null && Build.VERSION.SDK_INT >= 24) {
+			try {
+				getTimestampMethod = AudioRecord.class.getMethod("getTimestamp", AudioTimestamp.class, int.class);
+				audioTimestamp = new AudioTimestamp();
+				getTimestampArguments = new Object[] {audioTimestamp, TIMEBASE_MONOTONIC};
+			} catch (NoSuchMethodException e) {
+				Log.w(LOGTAG, "open: AudioRecord.getTimestamp() is not available: " + e.getMessage());
+			}
+		}
+
+		// Start recording:
+		audioRecord.startRecording();
+		return true;
+	}
+
+	@Override
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	@Override
+	public boolean isLive() {
+		return true;
+	}
+
+	@Override
+	public int read(short[] buffer, int offset, int length) {
+		int count = audioRecord.read(buffer, offset, length);
+		if(count < 0)
+			return -1;
+
+		// calculate the capture time of the last sample from the latest timestamp of the recorder:
+		framesRead += count;
+		captureTimestamp = 0;
+		if(getTimestampMethod != null) {
+			try {
+				if((Integer) getTimestampMethod.invoke(audioRecord, getTimestampArguments) == AudioRecord.SUCCESS) {
+					captureTimestamp = audioTimestamp.nanoTime
+							+ (framesRead - 1 - audioTimestamp.framePosition) * 1000000000L / sampleRate;
+				}
+			} catch (Exception e) {
+				Log.w(LOGTAG, "read: AudioRecord.getTimestamp() failed: " + e.getMessage());
+				getTimestampMethod = null;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public long getCaptureTimestamp() {
+		return captureTimestamp;
+	}
+
+	@Override
+	public void close() {
+		if(audioRecord != null) {
+			audioRecord.stop();
+			audioRecord.release();
+			audioRecord = null;
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "microphone";
+	}
+}
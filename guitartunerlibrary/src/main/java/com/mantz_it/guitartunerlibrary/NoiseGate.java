@@ -0,0 +1,138 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Noise Gate</h1>
+ *
+ * Module:      NoiseGate.java
+ * Description: Cheap time domain gate that decides if something is played. It compares
+ *              the RMS of the new samples with an adaptive estimate of the noise floor.
+ *              The AudioProcessingEngine skips the spectral analysis while the gate is closed.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class NoiseGate {
+	private static final float OPEN_RATIO = 4f;			// rms must be 12 dB above the noise floor to open the gate
+	private static final float CLOSE_RATIO = 2f;		// gate closes if the rms is less than 6 dB above the noise floor (hysteresis)
+	private static final float MIN_NOISE_FLOOR = 8f;	// lowest noise floor (rms in 16-bit units; ~ -72 dBFS)
+	private static final float HOLD_TIME = 0.5f;		// time (s) the gate stays open after the signal dropped below the close level
+	private static final float FALL_TIME = 0.05f;		// time constant (s) of the noise floor if the rms is below it
+	private static final float RISE_TIME_CLOSED = 2f;	// time constant (s) of the noise floor if the rms is above it (gate closed)
+	private static final float RISE_TIME_OPEN = 10f;	// time constant (s) of the noise floor if the rms is above it (gate open)
+	private static final int SEED_HOPS = 4;				// number of hops after a reset that are used to seed the noise floor
+	private static final float MAX_SEED_TIME = 0.3f;	// max. time (s) used to seed the noise floor (for long hops)
+	private float noiseFloor = MIN_NOISE_FLOOR;	// estimated rms of the background noise
+	private int seedHops = 0;					// number of hops that seeded the noise floor since the last reset
+	private float seedTime = 0;					// duration (s) of the hops that seeded the noise floor
+	private float rms = 0;						// rms of the last processed samples
+	private float holdTime = 0;					// remaining hold time (s)
+	private boolean open = false;
+
+	/**
+	 * Calculates the rms of the new samples, updates the noise floor estimate and decides if the
+	 * gate is open. The noise floor follows the rms quickly downwards and slowly upwards (even
+	 * slower while the gate is open, so that a played note does not raise it much).
+	 * After a reset the noise floor is seeded with the minimum rms of the first SEED_HOPS hops
+	 * (max. MAX_SEED_TIME). The gate stays closed during this time.
+	 *
+	 * @param samples		new 16-bit samples
+	 * @param length		number of samples in the array
+	 * @param duration		duration (s) of the samples (length / sample rate)
+	 * @return true if the gate is open (something is played)
+	 */
+	public boolean process(short[] samples, int length, float duration) {
+		long sum = 0;
+		for (int i = 0; i < length; i++)
+			sum += samples[i] * samples[i];
+		return process(sum, length, duration);
+	}
+
+	/**
+	 * Same as process(samples, length, duration), but with the sum of the squares of the new
+	 * samples already calculated by the caller (e.g. while reading them with
+	 * ShortRingBuffer.readSumOfSquares()). No extra pass over the samples is needed.
+	 *
+	 * @param sumOfSquares	sum of the squares of the new 16-bit samples
+	 * @param length		number of new samples
+	 * @param duration		duration (s) of the samples (length / sample rate)
+	 * @return true if the gate is open (something is played)
+	 */
+	public boolean process(long sumOfSquares, int length, float duration) {
+		rms = (float) Math.sqrt((double) sumOfSquares / length);
+
+		// seed the noise floor with the level of the room (otherwise the gate would open after
+		// every start until the noise floor has risen from MIN_NOISE_FLOOR):
+		if(seedHops < SEED_HOPS && seedTime < MAX_SEED_TIME) {
+			noiseFloor = Math.max(MIN_NOISE_FLOOR, seedHops == 0 ? rms : Math.min(noiseFloor, rms));
+			seedHops++;
+			seedTime += duration;
+			return false;
+		}
+
+		// update the state of the gate:
+		if(rms > noiseFloor * OPEN_RATIO) {
+			open = true;
+			holdTime = HOLD_TIME;
+		} else if(open) {
+			if(rms < noiseFloor * CLOSE_RATIO) {
+				holdTime -= duration;
+				if(holdTime <= 0)
+					open = false;
+			} else {
+				holdTime = HOLD_TIME;
+			}
+		}
+
+		// update the noise floor estimate:
+		float timeConstant = rms < noiseFloor ? FALL_TIME : (open ? RISE_TIME_OPEN : RISE_TIME_CLOSED);
+		noiseFloor += (rms - noiseFloor) * Math.min(1f, duration / timeConstant);
+		noiseFloor = Math.max(noiseFloor, MIN_NOISE_FLOOR);
+		return open;
+	}
+
+	/**
+	 * Closes the gate and resets the noise floor estimate. The next hops seed the new estimate.
+	 */
+	public void reset() {
+		noiseFloor = MIN_NOISE_FLOOR;
+		seedHops = 0;
+		seedTime = 0;
+		rms = 0;
+		holdTime = 0;
+		open = false;
+	}
+
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * @return rms of the last processed samples (in 16-bit units)
+	 */
+	public float getRms() {
+		return rms;
+	}
+
+	/**
+	 * @return estimated rms of the background noise (in 16-bit units)
+	 */
+	public float getNoiseFloor() {
+		return noiseFloor;
+	}
+}
@@ -0,0 +1,96 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Onset Detector</h1>
+ *
+ * Module:      OnsetDetector.java
+ * Description: Cheap energy based onset detector. Detects the pluck of a string as a sudden
+ *              rise of the short time energy above the recent average.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class OnsetDetector {
+	public static final int BLOCK_SIZE = 128;				// number of samples of one energy value (16 ms at 8 kHz)
+	private static final float ONSET_RATIO = 4f;			// energy must rise by 6 dB above the average
+	private static final float MIN_LEVEL_RATIO = 4f;		// rms must be 12 dB above the noise floor
+	private static final float AVERAGE_TIME = 0.1f;			// time constant (s) of the energy average
+	private static final float MIN_ONSET_INTERVAL = 0.15f;	// min. time (s) between two onsets
+	private float average = 0;		// average energy of the past blocks
+	private long sampleCounter = 0;	// number of processed samples
+	private long lastOnsetSample = -1;	// sample number of the last onset (-1 = none yet)
+	private int onsetCount = 0;
+
+	/**
+	 * Calculates the energy of the new samples in blocks of BLOCK_SIZE and checks each block for
+	 * an onset. Leftover samples (length is no multiple of BLOCK_SIZE) form a smaller block.
+	 *
+	 * @param samples		new 16-bit samples
+	 * @param length		number of samples in the array
+	 * @param sampleRate	sample rate of the samples
+	 * @param noiseFloor	rms of the background noise (see NoiseGate.getNoiseFloor())
+	 * @return true if an onset was detected in the samples
+	 */
+	public boolean process(short[] samples, int length, int sampleRate, float noiseFloor) {
+		boolean onset = false;
+		float minEnergy = noiseFloor * noiseFloor * MIN_LEVEL_RATIO * MIN_LEVEL_RATIO;
+		int minInterval = (int) (MIN_ONSET_INTERVAL * sampleRate);
+		for (int start = 0; start < length; start += BLOCK_SIZE) {
+			int end = Math.min(start + BLOCK_SIZE, length);
+			long sum = 0;
+			for (int i = start; i < end; i++)
+				sum += samples[i] * samples[i];
+			float energy = (float) sum / (end - start);
+
+			if(energy > average * ONSET_RATIO && energy > minEnergy
+					&& (lastOnsetSample < 0 || sampleCounter + start - lastOnsetSample >= minInterval)) {
+				lastOnsetSample = sampleCounter + start;
+				onsetCount++;
+				onset = true;
+			}
+			average += (energy - average) * Math.min(1f, (end - start) / (AVERAGE_TIME * sampleRate));
+		}
+		sampleCounter += length;
+		return onset;
+	}
+
+	/**
+	 * Forgets all onsets and the energy average
+	 */
+	public void reset() {
+		average = 0;
+		sampleCounter = 0;
+		lastOnsetSample = -1;
+		onsetCount = 0;
+	}
+
+	/**
+	 * @return sample number (counted from the last reset) of the last onset; -1 if there was none
+	 */
+	public long getLastOnsetSample() {
+		return lastOnsetSample;
+	}
+
+	/**
+	 * @return number of onsets since the last reset
+	 */
+	public int getOnsetCount() {
+		return onsetCount;
+	}
+}
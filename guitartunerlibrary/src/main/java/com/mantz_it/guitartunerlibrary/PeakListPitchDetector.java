@@ -0,0 +1,293 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Peak List Pitch Detector</h1>
+ *
+ * Module:      PeakListPitchDetector.java
+ * Description: Detects the pitch from a short list of the strongest peaks of the spectrum instead of a
+ *              dense harmonic product spectrum. The peaks are selected with a min-heap; the fundamental
+ *              candidates are scored by matching their harmonics against the peak list.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class PeakListPitchDetector {
+	public static final int DEFAULT_MAX_PEAKS = 20;		// number of peaks that are kept (K)
+	public static final int MAX_CANDIDATES = 5;			// number of ranked candidates that are kept
+	private static final int MAX_DIVISOR = 4;			// a peak might be up to the 4th harmonic (weak or missing fundamental)
+	private static final int MAX_HARMONIC = 12;			// highest harmonic that is matched
+	private static final float TOLERANCE = 0.03f;		// max. distance (fraction of the fundamental) between a peak and a harmonic
+	private static final float WEIGHT_OFFSET = 0.5f;	// weight (log magnitude, 10 dB) of the weakest peak in the list
+	private static final float[] HARMONIC_WEIGHTS = new float[MAX_HARMONIC + 1];	// 1/sqrt(harmonic)
+	static {
+		for (int harmonic = 1; harmonic <= MAX_HARMONIC; harmonic++)
+			HARMONIC_WEIGHTS[harmonic] = (float) (1 / Math.sqrt(harmonic));
+	}
+
+	private float minFrequency;		// lowest fundamental (in Hz)
+	private float maxFrequency;		// upper end of the band in which the peaks are searched (in Hz)
+
+	// min-heap of the strongest peaks (root: weakest of the kept peaks):
+	private int maxPeaks;
+	private int[] heapIndex;		// index of the peak in mag
+	private float[] heapMag;		// log magnitude of the peak
+	private int peakCount;
+
+	private float[] peakFrequency;	// interpolated frequency of the peaks (in Hz)
+	private float[] peakWeight;		// weight of the peaks for the score (log magnitude above the weakest peak)
+	private float[] peakAmplitude;	// linear amplitude of the peaks (weight of the frequency estimate)
+
+	// ranked candidates (best first):
+	private float[] candidateFrequency = new float[MAX_CANDIDATES];
+	private float[] candidateScore = new float[MAX_CANDIDATES];
+	private int candidateCount;
+
+	/**
+	 * constructor.
+	 *
+	 * @param maxPeaks			number of peaks that are kept (e.g. DEFAULT_MAX_PEAKS)
+	 * @param minFrequency		lowest fundamental and lower end of the band (in Hz)
+	 * @param maxFrequency		upper end of the band (in Hz). Fundamentals are searched up to maxFrequency/2
+	 *                          (at least the first harmonic has to be inside the band)
+	 */
+	public PeakListPitchDetector(int maxPeaks, float minFrequency, float maxFrequency) {
+		if(maxPeaks < 1)
+			throw new IllegalArgumentException("maxPeaks must be at least 1");
+		this.maxPeaks = maxPeaks;
+		this.minFrequency = minFrequency;
+		this.maxFrequency = maxFrequency;
+		this.heapIndex = new int[maxPeaks];
+		this.heapMag = new float[maxPeaks];
+		this.peakFrequency = new float[maxPeaks];
+		this.peakWeight = new float[maxPeaks];
+		this.peakAmplitude = new float[maxPeaks];
+	}
+
+	/**
+	 * Detects the pitch in a (logarithmic) magnitude spectrum:
+	 * 1. the strongest local maxima inside the band are selected with a min-heap of size K
+	 *    (one pass over the band, no sorting) and interpolated between the bins.
+	 * 2. every peak divided by 1 ... MAX_DIVISOR is a candidate for the fundamental. The score of
+	 *    a candidate is the sum of the weights of the peaks that are close to one of its
+	 *    harmonics. The weights decrease with the harmonic number, so that the octave below
+	 *    (which matches the same peaks as higher harmonics) scores lower. O(K^2) per spectrum.
+	 * 3. the frequency of the best candidate is averaged from the matched peaks (divided by their
+	 *    harmonic number and weighted by amplitude and harmonic number).
+	 *
+	 * @param mag			log magnitudes (see AudioProcessingEngine.calcFastLogMagnitude())
+	 * @param binOffset		bin number of mag[0]
+	 * @param hzPerBin		frequency step between two bins
+	 * @return detected frequency (in Hz) or 0 if there is no peak
+	 */
+	public float detect(float[] mag, int binOffset, float hzPerBin) {
+		findPeaks(mag, binOffset, hzPerBin);
+		candidateCount = 0;
+		if(peakCount == 0)
+			return 0;
+
+		// weight of the peaks: log magnitude above the weakest kept peak (heap root)
+		float floor = heapMag[0] - WEIGHT_OFFSET;
+		for (int i = 0; i < peakCount; i++) {
+			peakWeight[i] = heapMag[i] - floor;
+			peakAmplitude[i] = (float) Math.pow(10, heapMag[i]);
+		}
+
+		// score all candidates:
+		float bestFrequency = 0;
+		float bestScore = 0;
+		for (int i = 0; i < peakCount; i++) {
+			for (int divisor = 1; divisor <= MAX_DIVISOR; divisor++) {
+				float fundamental = peakFrequency[i] / divisor;
+				if(fundamental < minFrequency || fundamental > maxFrequency / 2)
+					continue;
+				// note: |peak - harmonic * fundamental| <= TOLERANCE * fundamental  <=>  |ratio - harmonic| <= TOLERANCE
+				float inverse = 1 / fundamental;
+				float score = 0;
+				for (int j = 0; j < peakCount; j++) {
+					float ratio = peakFrequency[j] * inverse;
+					int harmonic = (int) (ratio + 0.5f);
+					if(harmonic >= 1 && harmonic <= MAX_HARMONIC && Math.abs(ratio - harmonic) <= TOLERANCE)
+						score += peakWeight[j] * HARMONIC_WEIGHTS[harmonic];
+				}
+				addCandidate(fundamental, score);
+				if(score > bestScore) {
+					bestScore = score;
+					bestFrequency = fundamental;
+				}
+			}
+		}
+		if(bestScore == 0)
+			return 0;
+
+		// average the frequency of the best candidate from its harmonics:
+		double sum = 0;
+		double weightSum = 0;
+		for (int j = 0; j < peakCount; j++) {
+			int harmonic = Math.round(peakFrequency[j] / bestFrequency);
+			if(harmonic >= 1 && harmonic <= MAX_HARMONIC
+					&& Math.abs(peakFrequency[j] - harmonic * bestFrequency) <= TOLERANCE * bestFrequency) {
+				double weight = peakAmplitude[j] * harmonic;	// higher harmonics give a more precise estimate
+				sum += weight * peakFrequency[j] / harmonic;
+				weightSum += weight;
+			}
+		}
+		return (float) (sum / weightSum);
+	}
+
+	/**
+	 * Selects the maxPeaks strongest local maxima of mag inside the band (min-heap on the log
+	 * magnitude: a new peak replaces the root if it is stronger) and interpolates their frequency.
+	 *
+	 * @param mag			log magnitudes
+	 * @param binOffset		bin number of mag[0]
+	 * @param hzPerBin		frequency step between two bins
+	 */
+	private void findPeaks(float[] mag, int binOffset, float hzPerBin) {
+		int start = Math.max(1, (int) Math.ceil(minFrequency / hzPerBin) - binOffset);
+		int end = Math.min(mag.length - 1, (int) (maxFrequency / hzPerBin) - binOffset);
+		peakCount = 0;
+		for (int i = start; i < end; i++) {
+			float value = mag[i];
+			if(value > mag[i - 1] && value >= mag[i + 1] && value > Float.NEGATIVE_INFINITY) {
+				if(peakCount < maxPeaks)
+					heapInsert(i, value);
+				else if(value > heapMag[0])
+					heapReplaceRoot(i, value);
+			}
+		}
+
+		// interpolate the frequency of the peaks (parabola through the log magnitudes):
+		for (int i = 0; i < peakCount; i++) {
+			int index = heapIndex[i];
+			float a = mag[index - 1];
+			float b = mag[index];
+			float c = mag[index + 1];
+			float delta = 0;
+			float denominator = a - 2 * b + c;
+			if(!Float.isInfinite(a) && !Float.isInfinite(c) && denominator < 0)
+				delta = Math.max(-0.5f, Math.min(0.5f, 0.5f * (a - c) / denominator));
+			peakFrequency[i] = (index + delta + binOffset) * hzPerBin;
+		}
+	}
+
+	/**
+	 * Adds a peak to the (not full) heap and restores the heap order (sift up).
+	 */
+	private void heapInsert(int index, float value) {
+		int i = peakCount++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if(heapMag[parent] <= value)
+				break;
+			heapMag[i] = heapMag[parent];
+			heapIndex[i] = heapIndex[parent];
+			i = parent;
+		}
+		heapMag[i] = value;
+		heapIndex[i] = index;
+	}
+
+	/**
+	 * Replaces the weakest peak (root) of the full heap and restores the heap order (sift down).
+	 */
+	private void heapReplaceRoot(int index, float value) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if(child >= peakCount)
+				break;
+			if(child + 1 < peakCount && heapMag[child + 1] < heapMag[child])
+				child++;
+			if(heapMag[child] >= value)
+				break;
+			heapMag[i] = heapMag[child];
+			heapIndex[i] = heapIndex[child];
+			i = child;
+		}
+		heapMag[i] = value;
+		heapIndex[i] = index;
+	}
+
+	/**
+	 * Inserts a candidate into the ranked list. Candidates within the tolerance of each other are
+	 * the same pitch (only the best score is kept).
+	 */
+	private void addCandidate(float frequency, float score) {
+		for (int i = 0; i < candidateCount; i++) {
+			if(Math.abs(candidateFrequency[i] - frequency) <= TOLERANCE * Math.min(candidateFrequency[i], frequency)) {
+				if(candidateScore[i] >= score)
+					return;
+				// remove the weaker duplicate:
+				System.arraycopy(candidateFrequency, i + 1, candidateFrequency, i, candidateCount - i - 1);
+				System.arraycopy(candidateScore, i + 1, candidateScore, i, candidateCount - i - 1);
+				candidateCount--;
+				break;
+			}
+		}
+		int position = candidateCount;
+		while (position > 0 && candidateScore[position - 1] < score)
+			position--;
+		if(position >= MAX_CANDIDATES)
+			return;
+		int moved = Math.min(candidateCount, MAX_CANDIDATES - 1) - position;
+		System.arraycopy(candidateFrequency, position, candidateFrequency, position + 1, moved);
+		System.arraycopy(candidateScore, position, candidateScore, position + 1, moved);
+		candidateFrequency[position] = frequency;
+		candidateScore[position] = score;
+		candidateCount = Math.min(candidateCount + 1, MAX_CANDIDATES);
+	}
+
+	/**
+	 * @return number of peaks of the last spectrum (<= maxPeaks)
+	 */
+	public int getPeakCount() {
+		return peakCount;
+	}
+
+	/**
+	 * @return number of ranked candidates of the last spectrum (<= MAX_CANDIDATES)
+	 */
+	public int getCandidateCount() {
+		return candidateCount;
+	}
+
+	/**
+	 * @param rank	0 ... getCandidateCount()-1 (0 is the best candidate)
+	 * @return fundamental frequency of the candidate (not averaged from the harmonics; in Hz)
+	 */
+	public float getCandidateFrequency(int rank) {
+		return candidateFrequency[rank];
+	}
+
+	/**
+	 * @param rank	0 ... getCandidateCount()-1 (0 is the best candidate)
+	 * @return score of the candidate (e.g. a second candidate at the octave with a similar score
+	 *         indicates an uncertain octave)
+	 */
+	public float getCandidateScore(int rank) {
+		return candidateScore[rank];
+	}
+
+	/**
+	 * @return number of bytes of the buffers of this detector
+	 */
+	public int getRetainedHeapBytes() {
+		return maxPeaks * 5 * 4 + MAX_CANDIDATES * 2 * 4;
+	}
+}
@@ -0,0 +1,349 @@
+package com.mantz_it.guitartunerlibrary;
+
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <h1>Wear Guitar Tuner - Plan Cache</h1>
+ *
+ * Module:      PlanCache.java
+ * Description: Process wide cache for the lookup tables of the audio processing
+ *              (short to float table, fft twiddle factors, windows). Tables are
+ *              built once and shared between all engines and threads.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class PlanCache {
+	private static final String LOGTAG = "PlanCache";
+
+	public static final int DEFAULT_MAX_BYTES = 2 * 1024 * 1024;	// enough for the tables of two fft sizes up to 32768
+
+	// tables in the order of their last use (least recently used first):
+	private static final LinkedHashMap<String, Object> tables = new LinkedHashMap<String, Object>(16, 0.75f, true);
+	private static int retainedBytes = 0;	// number of bytes of all cached tables
+	private static int maxBytes = DEFAULT_MAX_BYTES;	// the least recently used tables are evicted above this size
+	private static int hitCount = 0;		// number of requests that were served from the cache
+	private static int missCount = 0;		// number of requests that had to build a new table
+	private static int evictionCount = 0;	// number of tables that were evicted
+
+	/**
+	 * Twiddle factors W_n^i = exp(-2*pi*j*i/n) for i < 3n/4 (enough for radix-2, radix-4
+	 * and split-radix transforms). Instances are shared: the arrays must not be modified!
+	 */
+	public static class TwiddleTable {
+		public final int n;
+		public final float[] cos;
+		public final float[] sin;
+
+		private TwiddleTable(int n) {
+			this.n = n;
+			int length = Math.max(1, 3 * n / 4);
+			float[] cos = new float[length];
+			float[] sin = new float[length];
+			for (int i = 0; i < length; i++) {
+				cos[i] = (float) Math.cos(-2*Math.PI*i/n);
+				sin[i] = (float) Math.sin(-2*Math.PI*i/n);
+			}
+			this.cos = cos;
+			this.sin = sin;
+		}
+	}
+
+	/**
+	 * Looks up a table in the cache and updates the statistics
+	 *
+	 * @param key	key of the table
+	 * @return the table or null if it is not cached yet
+	 */
+	private static Object lookup(String key) {
+		Object table = tables.get(key);
+		if(table != null)
+			hitCount++;
+		else
+			missCount++;
+		return table;
+	}
+
+	/**
+	 * Adds a new table to the cache. If the cache exceeds maxBytes afterwards, the least recently
+	 * used tables are evicted (the new table is kept in any case).
+	 *
+	 * @param key		key of the table
+	 * @param table		new table
+	 */
+	private static void put(String key, Object table) {
+		tables.put(key, table);
+		retainedBytes += getTableBytes(table);
+		evict(maxBytes, key);
+	}
+
+	/**
+	 * Evicts the least recently used tables until the cache holds at most the given number of bytes
+	 *
+	 * @param bytes		max. number of bytes of the remaining tables
+	 * @param keepKey	key of a table that must not be evicted (or null)
+	 */
+	private static void evict(int bytes, String keepKey) {
+		Iterator<Map.Entry<String, Object>> iterator = tables.entrySet().iterator();
+		while (retainedBytes > bytes && iterator.hasNext()) {
+			Map.Entry<String, Object> entry = iterator.next();
+			if(entry.getKey().equals(keepKey))
+				continue;
+			retainedBytes -= getTableBytes(entry.getValue());
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Evicts the least recently used tables until the cache holds at most the given number of
+	 * bytes. The evicted tables stay valid for the instances that already use them; they are
+	 * only rebuilt for the next request. Called by the AudioProcessingEngine when it ends or
+	 * switches to another fft size.
+	 *
+	 * @param bytes		max. number of bytes of the remaining tables (0 to clear the cache)
+	 */
+	public static synchronized void trim(int bytes) {
+		evict(bytes, null);
+	}
+
+	/**
+	 * Sets the max. size of the cache. The least recently used tables are evicted if a new
+	 * table exceeds it.
+	 *
+	 * @param bytes		max. number of bytes of all cached tables
+	 */
+	public static synchronized void setMaxBytes(int bytes) {
+		maxBytes = bytes;
+		evict(bytes, null);
+	}
+
+	public static synchronized int getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the lookup table to convert 16-bit PCM samples to floats: table[sample + 32768]
+	 * The array is shared and must not be modified!
+	 *
+	 * @return lookup table with 65536 entries
+	 */
+	public static synchronized float[] getShortToFloatTable() {
+		float[] table = (float[]) lookup("short2float");
+		if(table == null) {
+			table = new float[65536];
+			for (int i = 0; i < table.length; i++)
+				table[i] = (i - 32768f) / 32768f;
+			put("short2float", table);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the twiddle factors for a transform of length n
+	 *
+	 * @param n		length of the transform
+	 * @return shared twiddle table
+	 */
+	public static synchronized TwiddleTable getTwiddleTable(int n) {
+		String key = "twiddle:" + n;
+		TwiddleTable table = (TwiddleTable) lookup(key);
+		if(table == null) {
+			table = new TwiddleTable(n);
+			put(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the per stage twiddle tables of the radix-4 engine for a transform of length n:
+	 * {W^k re, W^k im, W^2k re, W^2k im, W^3k re, W^3k im}. Each array holds the twiddles of all
+	 * radix-4 stages (span n, n/4, ...) stored stage after stage.
+	 * The arrays are shared and must not be modified!
+	 *
+	 * @param n		length of the transform
+	 * @return shared twiddle tables
+	 */
+	public static synchronized float[][] getRadix4TwiddleTables(int n) {
+		String key = "radix4:" + n;
+		float[][] tables4 = (float[][]) lookup(key);
+		if(tables4 == null) {
+			int tableSize = 0;
+			for (int span = n; span >= 4; span /= 4)
+				tableSize += span / 4;
+			tables4 = new float[6][tableSize];
+
+			int offset = 0;
+			for (int span = n; span >= 4; span /= 4) {
+				for (int k = 0; k < span / 4; k++) {
+					for (int t = 1; t <= 3; t++) {
+						tables4[2*(t-1)][offset + k] = (float) Math.cos(-2 * Math.PI * t * k / span);
+						tables4[2*(t-1)+1][offset + k] = (float) Math.sin(-2 * Math.PI * t * k / span);
+					}
+				}
+				offset += span / 4;
+			}
+			put(key, tables4);
+		}
+		return tables4;
+	}
+
+	/**
+	 * Returns a window of the given type and length (see WindowFunctions).
+	 * The array is shared and must not be modified!
+	 *
+	 * @param type			type of the window (see WindowFunctions.WINDOW_* constants)
+	 * @param length		length of the window
+	 * @param parameter		parameter of the window (beta of the kaiser window; ignored by the other windows)
+	 * @return shared window table
+	 */
+	public static synchronized float[] getWindow(String type, int length, double parameter) {
+		String key = "window:" + type + ":" + length;
+		if(WindowFunctions.WINDOW_KAISER.equals(type))
+			key += ":" + parameter;
+		float[] window = (float[]) lookup(key);
+		if(window == null) {
+			window = WindowFunctions.createWindow(type, length, parameter);
+			put(key, window);
+		}
+		return window;
+	}
+
+	/**
+	 * Returns the twiddle factors W_n^i = exp(-2*pi*j*i/n) for i < n/2 in Q15 format
+	 * (used by the fixed-point fft): {cos, sin}. The arrays are shared and must not be modified!
+	 *
+	 * @param n		length of the transform
+	 * @return shared Q15 twiddle table
+	 */
+	public static synchronized short[][] getFixedPointTwiddleTable(int n) {
+		String key = "twiddleQ15:" + n;
+		short[][] table = (short[][]) lookup(key);
+		if(table == null) {
+			table = new short[2][Math.max(1, n / 2)];
+			for (int i = 0; i < table[0].length; i++) {
+				table[0][i] = toQ15(Math.cos(-2*Math.PI*i/n));
+				table[1][i] = toQ15(Math.sin(-2*Math.PI*i/n));
+			}
+			put(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns a window of the given type and length in Q15 format (used by the fixed-point fft).
+	 * The array is shared and must not be modified!
+	 *
+	 * @param type			type of the window (see WindowFunctions.WINDOW_* constants)
+	 * @param length		length of the window
+	 * @param parameter		parameter of the window (beta of the kaiser window; ignored by the other windows)
+	 * @return shared Q15 window table
+	 */
+	public static synchronized short[] getFixedPointWindow(String type, int length, double parameter) {
+		String key = "windowQ15:" + type + ":" + length;
+		if(WindowFunctions.WINDOW_KAISER.equals(type))
+			key += ":" + parameter;
+		short[] window = (short[]) lookup(key);
+		if(window == null) {
+			float[] floatWindow = getWindow(type, length, parameter);
+			window = new short[length];
+			for (int i = 0; i < window.length; i++)
+				window[i] = toQ15(floatWindow[i]);
+			put(key, window);
+		}
+		return window;
+	}
+
+	/**
+	 * Converts a value in the range [-1, 1] to Q15 format (1.0 is saturated to 32767)
+	 *
+	 * @param value		value in the range [-1, 1]
+	 * @return Q15 value
+	 */
+	private static short toQ15(double value) {
+		return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * 32768)));
+	}
+
+	/**
+	 * @return number of requests that were served from the cache
+	 */
+	public static synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return number of requests that had to build a new table
+	 */
+	public static synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return number of tables that were evicted (see setMaxBytes() and trim())
+	 */
+	public static synchronized int getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return number of cached tables
+	 */
+	public static synchronized int getTableCount() {
+		return tables.size();
+	}
+
+	/**
+	 * @return number of bytes of all cached tables
+	 */
+	public static synchronized int getRetainedHeapBytes() {
+		return retainedBytes;
+	}
+
+	/**
+	 * @param table		cached table (array, array of arrays or TwiddleTable)
+	 * @return number of bytes of the table
+	 */
+	private static int getTableBytes(Object table) {
+		if(table instanceof float[])
+			return ((float[]) table).length * 4;
+		if(table instanceof short[])
+			return ((short[]) table).length * 2;
+		if(table instanceof TwiddleTable)
+			return (((TwiddleTable) table).cos.length + ((TwiddleTable) table).sin.length) * 4;
+		if(table instanceof Object[]) {
+			int bytes = 0;
+			for (Object subTable : (Object[]) table)
+				bytes += getTableBytes(subTable);
+			return bytes;
+		}
+		return 0;
+	}
+
+	/**
+	 * Writes the cache statistics to the log
+	 */
+	public static synchronized void logStatistics() {
+		Log.i(LOGTAG, "logStatistics: " + tables.size() + " tables cached (" + getRetainedHeapBytes() / 1024
+				+ " KB, max. " + maxBytes / 1024 + " KB). hits: " + hitCount + " misses: " + missCount + " evictions: " + evictionCount);
+	}
+}
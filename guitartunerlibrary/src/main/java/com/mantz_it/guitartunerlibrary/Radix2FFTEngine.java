@@ -0,0 +1,227 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Radix-2 FFT Engine</h1>
+ *
+ * Module:      Radix2FFTEngine.java
+ * Description: In-place radix-2 DIT FFT with bit-reverse reordering.
+ *              This is the original FFT implementation of the tuner.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class Radix2FFTEngine implements FFTEngine {
+
+	private int n, m;
+
+	// Lookup tables (shared, see PlanCache). Only need to recompute when size of FFT changes.
+	private float[] cos;
+	private float[] sin;
+
+	/**
+	 * constructor.
+	 *
+	 * @param n		length of the transform (power of two)
+	 */
+	public Radix2FFTEngine(int n) {
+		this.n = n;
+		this.m = (int)(Math.log(n) / Math.log(2));
+
+		// Make sure n is a power of 2
+		if(n != (1<<m))
+			throw new RuntimeException("FFT length must be power of 2");
+
+		// get the (shared) tables
+		PlanCache.TwiddleTable twiddleTable = PlanCache.getTwiddleTable(n);
+		cos = twiddleTable.cos;
+		sin = twiddleTable.sin;
+	}
+
+	@Override
+	public String getName() {
+		return FFTEngineFactory.ENGINE_RADIX2;
+	}
+
+	@Override
+	public int getSize() {
+		return n;
+	}
+
+	@Override
+	public int getRetainedHeapBytes() {
+		return 0;	// only shared tables
+	}
+
+	/***************************************************************
+	 * fft.c
+	 * Douglas L. Jones
+	 * University of Illinois at Urbana-Champaign
+	 * January 19, 1992
+	 * http://cnx.rice.edu/content/m12016/latest/
+	 *
+	 *   fft: in-place radix-2 DIT DFT of a complex input
+	 *
+	 *   input:
+	 * n: length of FFT: must be a power of two
+	 * m: n = 2**m
+	 *   input/output
+	 * x: double array of length n with real part of data
+	 * y: double array of length n with imag part of data
+	 *
+	 *   Permission to copy and use this program is granted
+	 *   as long as this header is included.
+	 ****************************************************************/
+	@Override
+	public void fft(float[] x, float[] y)
+	{
+		int i,j,k,n1,n2,a;
+		float c,s,t1,t2;
+
+
+		// Bit-reverse
+		j = 0;
+		n2 = n/2;
+		for (i=1; i < n - 1; i++) {
+			n1 = n2;
+			while ( j >= n1 ) {
+				j = j - n1;
+				n1 = n1/2;
+			}
+			j = j + n1;
+
+			if (i < j) {
+				t1 = x[i];
+				x[i] = x[j];
+				x[j] = t1;
+				t1 = y[i];
+				y[i] = y[j];
+				y[j] = t1;
+			}
+		}
+
+		// FFT
+		n1 = 0;
+		n2 = 1;
+
+		for (i=0; i < m; i++) {
+			n1 = n2;
+			n2 = n2 + n2;
+			a = 0;
+
+			for (j=0; j < n1; j++) {
+				c = cos[a];
+				s = sin[a];
+				a +=  1 << (m-i-1);
+
+				for (k=j; k < n; k=k+n2) {
+					t1 = c*x[k+n1] - s*y[k+n1];
+					t2 = s*x[k+n1] + c*y[k+n1];
+					x[k+n1] = x[k] - t1;
+					y[k+n1] = y[k] - t2;
+					x[k] = x[k] + t1;
+					y[k] = y[k] + t2;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Input pruned version of fft(). The first log2(n / nonZeroLength) stages of the DIT
+	 * only combine a nonzero sample with zeros. Their result is a copy of the nonzero sample
+	 * into every position of its block. These stages are replaced by the copy and only the
+	 * first nonZeroLength samples are bit-reversed. The output is identical to fft().
+	 *
+	 * @param x					real part of the data (zero after nonZeroLength)
+	 * @param y					imag part of the data (zero after nonZeroLength)
+	 * @param nonZeroLength		number of (potentially) nonzero samples at the beginning of the input
+	 */
+	@Override
+	public void fft(float[] x, float[] y, int nonZeroLength)
+	{
+		int i,j,k,n1,n2,a;
+		float c,s,t1,t2;
+
+		// number of stages that can be skipped and size of the nonzero part (power of two):
+		int skippedStages = 0;
+		while (skippedStages < m && (n >> (skippedStages + 1)) >= nonZeroLength)
+			skippedStages++;
+		if(skippedStages == 0) {
+			fft(x, y);
+			return;
+		}
+		int prunedLength = n >> skippedStages;
+		int blockSize = 1 << skippedStages;
+
+		// Bit-reverse the nonzero part (with log2(prunedLength) bits):
+		j = 0;
+		n2 = prunedLength/2;
+		for (i=1; i < prunedLength - 1; i++) {
+			n1 = n2;
+			while ( j >= n1 ) {
+				j = j - n1;
+				n1 = n1/2;
+			}
+			j = j + n1;
+
+			if (i < j) {
+				t1 = x[i];
+				x[i] = x[j];
+				x[j] = t1;
+				t1 = y[i];
+				y[i] = y[j];
+				y[j] = t1;
+			}
+		}
+
+		// Spread each sample to its block (== result of the skipped stages).
+		// Run backwards so we don't overwrite samples that are not yet spread:
+		for (i = prunedLength - 1; i >= 0; i--) {
+			t1 = x[i];
+			t2 = y[i];
+			for (k = i * blockSize; k < (i + 1) * blockSize; k++) {
+				x[k] = t1;
+				y[k] = t2;
+			}
+		}
+
+		// FFT (remaining stages)
+		n2 = blockSize;
+
+		for (i=skippedStages; i < m; i++) {
+			n1 = n2;
+			n2 = n2 + n2;
+			a = 0;
+
+			for (j=0; j < n1; j++) {
+				c = cos[a];
+				s = sin[a];
+				a +=  1 << (m-i-1);
+
+				for (k=j; k < n; k=k+n2) {
+					t1 = c*x[k+n1] - s*y[k+n1];
+					t2 = s*x[k+n1] + c*y[k+n1];
+					x[k+n1] = x[k] - t1;
+					y[k+n1] = y[k] - t2;
+					x[k] = x[k] + t1;
+					y[k] = y[k] + t2;
+				}
+			}
+		}
+	}
+}
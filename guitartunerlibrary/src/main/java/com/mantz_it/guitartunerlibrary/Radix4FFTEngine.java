@@ -0,0 +1,167 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Radix-4 FFT Engine</h1>
+ *
+ * Module:      Radix4FFTEngine.java
+ * Description: In-place radix-4 DIF FFT (radix-2^2 formulation). If the length
+ *              is not a power of four, a final radix-2 stage is added. The twiddle
+ *              factors are stored per stage in contiguous tables.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class Radix4FFTEngine implements FFTEngine {
+
+	private int n, m;
+
+	// twiddle tables (W^k, W^2k and W^3k) for all radix-4 stages. stored stage after stage. (shared, see PlanCache)
+	private float[] w1re, w1im;
+	private float[] w2re, w2im;
+	private float[] w3re, w3im;
+
+	/**
+	 * constructor.
+	 *
+	 * @param n		length of the transform (power of two)
+	 */
+	public Radix4FFTEngine(int n) {
+		this.n = n;
+		this.m = (int)(Math.log(n) / Math.log(2));
+
+		// Make sure n is a power of 2
+		if(n != (1<<m))
+			throw new RuntimeException("FFT length must be power of 2");
+
+		// get the (shared) tables:
+		float[][] tables = PlanCache.getRadix4TwiddleTables(n);
+		w1re = tables[0];
+		w1im = tables[1];
+		w2re = tables[2];
+		w2im = tables[3];
+		w3re = tables[4];
+		w3im = tables[5];
+	}
+
+	@Override
+	public String getName() {
+		return FFTEngineFactory.ENGINE_RADIX4;
+	}
+
+	@Override
+	public int getSize() {
+		return n;
+	}
+
+	@Override
+	public int getRetainedHeapBytes() {
+		return 0;	// only shared tables
+	}
+
+	@Override
+	public void fft(float[] re, float[] im, int nonZeroLength) {
+		// no pruning for this algorithm. compute the full transform:
+		fft(re, im);
+	}
+
+	@Override
+	public void fft(float[] re, float[] im) {
+		int span;
+		int offset = 0;
+		float r02, i02, r13, i13, sr, si, dr, di, tr, ti;
+
+		// radix-4 stages:
+		for (span = n; span >= 4; span /= 4) {
+			int q = span / 4;
+			for (int block = 0; block < n; block += span) {
+				for (int k = 0; k < q; k++) {
+					int i0 = block + k;
+					int i1 = i0 + q;
+					int i2 = i1 + q;
+					int i3 = i2 + q;
+
+					r02 = re[i0] + re[i2];
+					i02 = im[i0] + im[i2];
+					r13 = re[i1] + re[i3];
+					i13 = im[i1] + im[i3];
+					sr = re[i0] - re[i2];
+					si = im[i0] - im[i2];
+					dr = re[i1] - re[i3];
+					di = im[i1] - im[i3];
+
+					// i0: A + B
+					re[i0] = r02 + r13;
+					im[i0] = i02 + i13;
+
+					// i1: (A - B) * W^2k
+					tr = r02 - r13;
+					ti = i02 - i13;
+					re[i1] = tr * w2re[offset + k] - ti * w2im[offset + k];
+					im[i1] = tr * w2im[offset + k] + ti * w2re[offset + k];
+
+					// i2: ((x0-x2) - j(x1-x3)) * W^k
+					tr = sr + di;
+					ti = si - dr;
+					re[i2] = tr * w1re[offset + k] - ti * w1im[offset + k];
+					im[i2] = tr * w1im[offset + k] + ti * w1re[offset + k];
+
+					// i3: ((x0-x2) + j(x1-x3)) * W^3k
+					tr = sr - di;
+					ti = si + dr;
+					re[i3] = tr * w3re[offset + k] - ti * w3im[offset + k];
+					im[i3] = tr * w3im[offset + k] + ti * w3re[offset + k];
+				}
+			}
+			offset += q;
+		}
+
+		// final radix-2 stage (only if n is not a power of 4):
+		if(span == 2) {
+			for (int k = 0; k < n; k += 2) {
+				tr = re[k + 1];
+				ti = im[k + 1];
+				re[k + 1] = re[k] - tr;
+				im[k + 1] = im[k] - ti;
+				re[k] = re[k] + tr;
+				im[k] = im[k] + ti;
+			}
+		}
+
+		// Bit-reverse (the DIF stages leave the output in bit-reversed order)
+		int i, j, n1;
+		j = 0;
+		for (i = 1; i < n - 1; i++) {
+			n1 = n / 2;
+			while (j >= n1) {
+				j = j - n1;
+				n1 = n1 / 2;
+			}
+			j = j + n1;
+
+			if (i < j) {
+				tr = re[i];
+				re[i] = re[j];
+				re[j] = tr;
+				ti = im[i];
+				im[i] = im[j];
+				im[j] = ti;
+			}
+		}
+	}
+}
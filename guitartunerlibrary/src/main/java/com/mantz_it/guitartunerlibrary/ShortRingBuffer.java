@@ -0,0 +1,154 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Short Ring Buffer</h1>
+ *
+ * Module:      ShortRingBuffer.java
+ * Description: Lock-free single-producer/single-consumer ring buffer for 16-bit samples.
+ *              One thread (capture) writes, one other thread (analysis) reads.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class ShortRingBuffer {
+	private final short[] buffer;
+	private final int mask;				// capacity - 1 (capacity is a power of 2)
+	private volatile long writeCount;	// total number of samples written (only modified by the producer)
+	private volatile long readCount;	// total number of samples read (only modified by the consumer)
+
+	/**
+	 * constructor.
+	 *
+	 * @param capacity	number of samples the buffer can hold (power of 2)
+	 */
+	public ShortRingBuffer(int capacity) {
+		if(capacity <= 0 || (capacity & (capacity - 1)) != 0)
+			throw new IllegalArgumentException("capacity must be a power of 2");
+		buffer = new short[capacity];
+		mask = capacity - 1;
+	}
+
+	public int getCapacity() {
+		return buffer.length;
+	}
+
+	/**
+	 * Drops all samples. Must only be called while neither the producer nor the consumer
+	 * accesses the buffer.
+	 */
+	public void clear() {
+		readCount = writeCount;
+	}
+
+	/**
+	 * @return number of samples that can be read
+	 */
+	public int available() {
+		return (int) (writeCount - readCount);
+	}
+
+	/**
+	 * @return number of samples that can be written without overwriting unread samples
+	 */
+	public int freeSpace() {
+		return buffer.length - available();
+	}
+
+	/**
+	 * Writes samples into the buffer. Must only be called by the producer thread.
+	 * If there is not enough space, only the first samples are written.
+	 *
+	 * @param samples	source array
+	 * @param offset	index of the first sample in samples
+	 * @param length	number of samples to write
+	 * @return number of samples that were written
+	 */
+	public int write(short[] samples, int offset, int length) {
+		long position = writeCount;
+		int count = Math.min(length, buffer.length - (int) (position - readCount));
+		int start = (int) (position & mask);
+		int firstPart = Math.min(count, buffer.length - start);
+		System.arraycopy(samples, offset, buffer, start, firstPart);
+		System.arraycopy(samples, offset + firstPart, buffer, 0, count - firstPart);
+		writeCount = position + count;	// publish the samples (volatile write)
+		return count;
+	}
+
+	/**
+	 * Reads samples from the buffer. Must only be called by the consumer thread.
+	 * If there are not enough samples available, only the available samples are read.
+	 *
+	 * @param out		destination array
+	 * @param offset	index of the first sample in out
+	 * @param length	number of samples to read
+	 * @return number of samples that were read
+	 */
+	public int read(short[] out, int offset, int length) {
+		long position = readCount;
+		int count = Math.min(length, (int) (writeCount - position));
+		int start = (int) (position & mask);
+		int firstPart = Math.min(count, buffer.length - start);
+		System.arraycopy(buffer, start, out, offset, firstPart);
+		System.arraycopy(buffer, 0, out, offset + firstPart, count - firstPart);
+		readCount = position + count;	// release the space (volatile write)
+		return count;
+	}
+
+	/**
+	 * Same as read(), but the samples are copied in a loop that also sums up their squares.
+	 * The energy of the samples (e.g. for the rms of the NoiseGate) costs no extra pass.
+	 *
+	 * @param out			destination array
+	 * @param offset		index of the first sample in out
+	 * @param length		number of samples to read
+	 * @param sumOfSquares	the sum of the squares of the read samples is added to sumOfSquares[0]
+	 * @return number of samples that were read
+	 */
+	public int readSumOfSquares(short[] out, int offset, int length, long[] sumOfSquares) {
+		long position = readCount;
+		int count = Math.min(length, (int) (writeCount - position));
+		int start = (int) (position & mask);
+		int firstPart = Math.min(count, buffer.length - start);
+		long sum = copySumOfSquares(buffer, start, out, offset, firstPart);
+		sum += copySumOfSquares(buffer, 0, out, offset + firstPart, count - firstPart);
+		sumOfSquares[0] += sum;
+		readCount = position + count;	// release the space (volatile write)
+		return count;
+	}
+
+	/**
+	 * Copies samples and sums up their squares
+	 *
+	 * @param src		source array
+	 * @param srcPos	index of the first sample in src
+	 * @param dst		destination array
+	 * @param dstPos	index of the first sample in dst
+	 * @param length	number of samples to copy
+	 * @return sum of the squares of the copied samples
+	 */
+	private static long copySumOfSquares(short[] src, int srcPos, short[] dst, int dstPos, int length) {
+		long sum = 0;
+		for (int i = 0; i < length; i++) {
+			short sample = src[srcPos + i];
+			dst[dstPos + i] = sample;
+			sum += sample * sample;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,106 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Sliding Window</h1>
+ *
+ * Module:      SlidingWindow.java
+ * Description: Ring buffer that keeps the latest (16-bit PCM) samples of the audio
+ *              signal. New samples are written in hops; the analysis copies out the
+ *              latest window in chronological order.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class SlidingWindow {
+	private short[] ringBuffer;		// holds the latest samples
+	private int writePosition = 0;	// index of the oldest sample (== next index to write)
+	private long totalSamples = 0;	// number of samples written since the last reset
+
+	/**
+	 * constructor.
+	 *
+	 * @param length	length of the window (in samples)
+	 */
+	public SlidingWindow(int length) {
+		ringBuffer = new short[length];
+	}
+
+	/**
+	 * @return length of the window (in samples)
+	 */
+	public int getLength() {
+		return ringBuffer.length;
+	}
+
+	/**
+	 * @return true if at least getLength() samples were written since the last reset
+	 */
+	public boolean isFilled() {
+		return totalSamples >= ringBuffer.length;
+	}
+
+	/**
+	 * @return number of samples written since the last reset
+	 */
+	public long getTotalSamples() {
+		return totalSamples;
+	}
+
+	/**
+	 * Drops all samples from the window
+	 */
+	public void reset() {
+		for (int i = 0; i < ringBuffer.length; i++)
+			ringBuffer[i] = 0;
+		writePosition = 0;
+		totalSamples = 0;
+	}
+
+	/**
+	 * Appends new samples to the window. The oldest samples are overwritten.
+	 *
+	 * @param samples	new samples
+	 * @param count		number of samples that should be appended (from the beginning of samples)
+	 */
+	public void write(short[] samples, int count) {
+		int offset = 0;
+		// if there are more new samples than the window length, only the latest are relevant:
+		if(count > ringBuffer.length) {
+			offset = count - ringBuffer.length;
+			totalSamples += offset;
+			count = ringBuffer.length;
+		}
+		int firstPart = Math.min(count, ringBuffer.length - writePosition);
+		System.arraycopy(samples, offset, ringBuffer, writePosition, firstPart);
+		System.arraycopy(samples, offset + firstPart, ringBuffer, 0, count - firstPart);
+		writePosition = (writePosition + count) % ringBuffer.length;
+		totalSamples += count;
+	}
+
+	/**
+	 * Copies the window (oldest sample first) to the given array
+	 *
+	 * @param out	array that will be filled with the window (length >= getLength())
+	 */
+	public void copyTo(short[] out) {
+		int firstPart = ringBuffer.length - writePosition;
+		System.arraycopy(ringBuffer, writePosition, out, 0, firstPart);
+		System.arraycopy(ringBuffer, 0, out, firstPart, writePosition);
+	}
+}
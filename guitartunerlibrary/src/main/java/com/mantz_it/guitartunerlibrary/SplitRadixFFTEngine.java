@@ -0,0 +1,163 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Split-Radix FFT Engine</h1>
+ *
+ * Module:      SplitRadixFFTEngine.java
+ * Description: Recursive split-radix DIT FFT. Splits each transform into one half
+ *              length and two quarter length transforms which saves multiplications
+ *              compared to radix-2 and radix-4.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class SplitRadixFFTEngine implements FFTEngine {
+
+	private int n, m;
+
+	// Lookup tables for W^k (k < 3n/4; shared, see PlanCache). The sub transforms access them with a stride.
+	private float[] cos;
+	private float[] sin;
+
+	// work buffers (the recursion works out-of-place)
+	private float[] workRe;
+	private float[] workIm;
+
+	/**
+	 * constructor.
+	 *
+	 * @param n		length of the transform (power of two)
+	 */
+	public SplitRadixFFTEngine(int n) {
+		this.n = n;
+		this.m = (int)(Math.log(n) / Math.log(2));
+
+		// Make sure n is a power of 2
+		if(n != (1<<m))
+			throw new RuntimeException("FFT length must be power of 2");
+
+		// get the (shared) tables
+		PlanCache.TwiddleTable twiddleTable = PlanCache.getTwiddleTable(n);
+		cos = twiddleTable.cos;
+		sin = twiddleTable.sin;
+
+		workRe = new float[n];
+		workIm = new float[n];
+	}
+
+	@Override
+	public String getName() {
+		return FFTEngineFactory.ENGINE_SPLIT_RADIX;
+	}
+
+	@Override
+	public int getSize() {
+		return n;
+	}
+
+	@Override
+	public int getRetainedHeapBytes() {
+		return (workRe.length + workIm.length) * 4;
+	}
+
+	@Override
+	public void fft(float[] re, float[] im, int nonZeroLength) {
+		// no pruning for this algorithm. compute the full transform:
+		fft(re, im);
+	}
+
+	@Override
+	public void fft(float[] re, float[] im) {
+		splitRadix(re, im, 0, 1, 0, n);
+		System.arraycopy(workRe, 0, re, 0, n);
+		System.arraycopy(workIm, 0, im, 0, n);
+	}
+
+	/**
+	 * Computes the DFT of the sub sequence in[inOffset + i*stride] (i < len) and writes the
+	 * result to work[outOffset ... outOffset+len-1].
+	 *
+	 * @param inRe			real part of the input
+	 * @param inIm			imaginary part of the input
+	 * @param inOffset		index of the first input sample
+	 * @param stride		distance between two input samples
+	 * @param outOffset		index of the first output sample in the work buffers
+	 * @param len			length of the sub transform
+	 */
+	private void splitRadix(float[] inRe, float[] inIm, int inOffset, int stride, int outOffset, int len) {
+		if(len == 1) {
+			workRe[outOffset] = inRe[inOffset];
+			workIm[outOffset] = inIm[inOffset];
+			return;
+		}
+		if(len == 2) {
+			float ar = inRe[inOffset];
+			float ai = inIm[inOffset];
+			float br = inRe[inOffset + stride];
+			float bi = inIm[inOffset + stride];
+			workRe[outOffset] = ar + br;
+			workIm[outOffset] = ai + bi;
+			workRe[outOffset + 1] = ar - br;
+			workIm[outOffset + 1] = ai - bi;
+			return;
+		}
+
+		int half = len / 2;
+		int quarter = len / 4;
+
+		// U = DFT(x[2i]); Z1 = DFT(x[4i+1]); Z3 = DFT(x[4i+3])
+		splitRadix(inRe, inIm, inOffset, 2 * stride, outOffset, half);
+		splitRadix(inRe, inIm, inOffset + stride, 4 * stride, outOffset + half, quarter);
+		splitRadix(inRe, inIm, inOffset + 3 * stride, 4 * stride, outOffset + half + quarter, quarter);
+
+		// combine:
+		int twiddleStride = n / len;
+		for (int k = 0; k < quarter; k++) {
+			int i0 = outOffset + k;
+			int i1 = i0 + quarter;
+			int i2 = i1 + quarter;
+			int i3 = i2 + quarter;
+			int a1 = k * twiddleStride;
+			int a3 = 3 * a1;
+
+			// a = W^k * Z1[k]; b = W^3k * Z3[k]
+			float ar = cos[a1] * workRe[i2] - sin[a1] * workIm[i2];
+			float ai = sin[a1] * workRe[i2] + cos[a1] * workIm[i2];
+			float br = cos[a3] * workRe[i3] - sin[a3] * workIm[i3];
+			float bi = sin[a3] * workRe[i3] + cos[a3] * workIm[i3];
+			float sr = ar + br;
+			float si = ai + bi;
+			float dr = ar - br;
+			float di = ai - bi;
+			float ur = workRe[i0];
+			float ui = workIm[i0];
+			float vr = workRe[i1];
+			float vi = workIm[i1];
+
+			workRe[i0] = ur + sr;		// X[k]      = U[k] + s
+			workIm[i0] = ui + si;
+			workRe[i2] = ur - sr;		// X[k+n/2]  = U[k] - s
+			workIm[i2] = ui - si;
+			workRe[i1] = vr + di;		// X[k+n/4]  = U[k+n/4] - j*d
+			workIm[i1] = vi - dr;
+			workRe[i3] = vr - di;		// X[k+3n/4] = U[k+n/4] + j*d
+			workIm[i3] = vi + dr;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Stockham FFT Engine</h1>
+ *
+ * Module:      StockhamFFTEngine.java
+ * Description: Radix-2 Stockham autosort FFT. Works out-of-place (ping-pong
+ *              between the data and a work buffer) and needs no bit-reverse
+ *              reordering. The inner loop has unit stride.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class StockhamFFTEngine implements FFTEngine {
+
+	private int n, m;
+
+	// Lookup tables (shared, see PlanCache). Only need to recompute when size of FFT changes.
+	private float[] cos;
+	private float[] sin;
+
+	// work buffers for the ping-pong between the stages
+	private float[] workRe;
+	private float[] workIm;
+
+	/**
+	 * constructor.
+	 *
+	 * @param n		length of the transform (power of two)
+	 */
+	public StockhamFFTEngine(int n) {
+		this.n = n;
+		this.m = (int)(Math.log(n) / Math.log(2));
+
+		// Make sure n is a power of 2
+		if(n != (1<<m))
+			throw new RuntimeException("FFT length must be power of 2");
+
+		// get the (shared) tables
+		PlanCache.TwiddleTable twiddleTable = PlanCache.getTwiddleTable(n);
+		cos = twiddleTable.cos;
+		sin = twiddleTable.sin;
+
+		workRe = new float[n];
+		workIm = new float[n];
+	}
+
+	@Override
+	public String getName() {
+		return FFTEngineFactory.ENGINE_STOCKHAM;
+	}
+
+	@Override
+	public int getSize() {
+		return n;
+	}
+
+	@Override
+	public int getRetainedHeapBytes() {
+		return (workRe.length + workIm.length) * 4;
+	}
+
+	@Override
+	public void fft(float[] re, float[] im, int nonZeroLength) {
+		// no pruning for this algorithm. compute the full transform:
+		fft(re, im);
+	}
+
+	@Override
+	public void fft(float[] re, float[] im) {
+		float[] xr = re;
+		float[] xi = im;
+		float[] yr = workRe;
+		float[] yi = workIm;
+		float[] tmp;
+		float ar, ai, br, bi, dr, di, wr, wi;
+
+		// each stage reads from x and writes to y (in sorted order). afterwards x and y are swapped.
+		for (int len = n, s = 1; len > 1; len /= 2, s *= 2) {
+			int half = len / 2;
+			for (int p = 0; p < half; p++) {
+				wr = cos[p * s];
+				wi = sin[p * s];
+				int in0 = s * p;
+				int in1 = s * (p + half);
+				int out0 = s * 2 * p;
+				int out1 = out0 + s;
+				for (int q = 0; q < s; q++) {
+					ar = xr[in0 + q];
+					ai = xi[in0 + q];
+					br = xr[in1 + q];
+					bi = xi[in1 + q];
+					yr[out0 + q] = ar + br;
+					yi[out0 + q] = ai + bi;
+					dr = ar - br;
+					di = ai - bi;
+					yr[out1 + q] = dr * wr - di * wi;
+					yi[out1 + q] = dr * wi + di * wr;
+				}
+			}
+			tmp = xr; xr = yr; yr = tmp;
+			tmp = xi; xi = yi; yi = tmp;
+		}
+
+		// after an odd number of stages the result is in the work buffer:
+		if(xr != re) {
+			System.arraycopy(xr, 0, re, 0, n);
+			System.arraycopy(xi, 0, im, 0, n);
+		}
+	}
+}
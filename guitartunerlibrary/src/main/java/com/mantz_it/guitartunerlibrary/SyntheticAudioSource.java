@@ -0,0 +1,155 @@
+package com.mantz_it.guitartunerlibrary;
+
+import android.util.Log;
+
+import java.util.Random;
+
+/**
+ * <h1>Wear Guitar Tuner - Synthetic Audio Source</h1>
+ *
+ * Module:      SyntheticAudioSource.java
+ * Description: Audio source that generates a test signal: a tone with harmonics
+ *              (similar to a plucked string) plus white noise.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class SyntheticAudioSource implements AudioSource {
+	private static final String LOGTAG = "SyntheticAudioSource";
+	private int sampleRate;
+	private int harmonics;				// number of harmonics (including the fundamental); amplitude of harmonic h is 1/h
+	private float amplitude;			// peak amplitude (relative to full scale)
+	private float noiseLevel;			// standard deviation of the noise (relative to full scale)
+	private boolean realTime;			// true: deliver the samples at the speed of the sample rate
+	private volatile float frequency;	// frequency of the fundamental (in Hz)
+	private double[] phases;			// current phase of each harmonic
+	private double normalization;		// scales the sum of the harmonics to 1
+	private Random random;
+	private long startTime;				// time of the first read (nanoseconds, used for the real time mode)
+	private long samplesRead;			// number of samples delivered since open()
+
+	/**
+	 * constructor.
+	 *
+	 * @param sampleRate	sample rate (in Hz)
+	 * @param frequency		frequency of the fundamental (in Hz)
+	 * @param harmonics		number of harmonics including the fundamental (>= 1)
+	 * @param amplitude		peak amplitude (0 ... 1)
+	 * @param noiseLevel	standard deviation of the white noise (0 ... 1)
+	 * @param realTime		if true, read() blocks so that the samples are delivered at the speed of the
+	 *                      sample rate. Otherwise the samples are generated as fast as possible.
+	 */
+	public SyntheticAudioSource(int sampleRate, float frequency, int harmonics, float amplitude,
+								float noiseLevel, boolean realTime) {
+		if(harmonics < 1)
+			throw new IllegalArgumentException("at least one harmonic is required");
+		this.sampleRate = sampleRate;
+		this.frequency = frequency;
+		this.harmonics = harmonics;
+		this.amplitude = amplitude;
+		this.noiseLevel = noiseLevel;
+		this.realTime = realTime;
+	}
+
+	/**
+	 * Changes the frequency of the generated tone (e.g. to simulate tuning a string)
+	 *
+	 * @param frequency		frequency of the fundamental (in Hz)
+	 */
+	public void setFrequency(float frequency) {
+		this.frequency = frequency;
+	}
+
+	public float getFrequency() {
+		return frequency;
+	}
+
+	@Override
+	public boolean open() {
+		phases = new double[harmonics];
+		normalization = 0;
+		for (int h = 1; h <= harmonics; h++)
+			normalization += 1.0 / h;
+		random = new Random(0);	// always generate the same noise
+		samplesRead = 0;
+		return true;
+	}
+
+	@Override
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	@Override
+	public boolean isLive() {
+		return false;
+	}
+
+	@Override
+	public int read(short[] buffer, int offset, int length) {
+		double phaseIncrement = 2 * Math.PI * frequency / sampleRate;
+		for (int i = 0; i < length; i++) {
+			double value = 0;
+			for (int h = 0; h < harmonics; h++) {
+				value += Math.sin(phases[h]) / (h + 1);
+				phases[h] = (phases[h] + phaseIncrement * (h + 1)) % (2 * Math.PI);
+			}
+			value = value / normalization * amplitude + random.nextGaussian() * noiseLevel;
+			buffer[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * 32767)));
+		}
+
+		if(realTime)
+			waitForRealTime(length);
+		return length;
+	}
+
+	/**
+	 * Blocks until the samples that are delivered so far would have been recorded in real time.
+	 *
+	 * @param count		number of samples that are delivered by the current read
+	 */
+	private void waitForRealTime(int count) {
+		if(samplesRead == 0)
+			startTime = System.nanoTime();
+		samplesRead += count;
+		long sleepTime = (samplesRead * 1000000000L / sampleRate - (System.nanoTime() - startTime)) / 1000000;
+		if(sleepTime > 0) {
+			try {
+				Thread.sleep(sleepTime);
+			} catch (InterruptedException e) {
+				Log.w(LOGTAG, "waitForRealTime: Interrupted!");
+			}
+		}
+	}
+
+	@Override
+	public long getCaptureTimestamp() {
+		return 0;	// the samples are not captured
+	}
+
+	@Override
+	public void close() {
+		phases = null;
+	}
+
+	@Override
+	public String getName() {
+		return "synthetic " + frequency + " Hz";
+	}
+}
@@ -0,0 +1,208 @@
+package com.mantz_it.guitartunerlibrary;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <h1>Wear Guitar Tuner - Tuner Result Buffer</h1>
+ *
+ * Module:      TunerResultBuffer.java
+ * Description: Lock-free triple buffer that passes snapshots of the tuner results from
+ *              the processing thread (one producer) to the render thread (one consumer).
+ *              None of the threads ever waits for the other.
+ *              Optionally the spectra are stored as 16-bit values to save memory.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class TunerResultBuffer {
+	private static final float SPECTRUM16_SCALE = 256f;	// 16-bit spectra: value * 256 (resolution 0.004, range +-128)
+
+	/**
+	 * One buffer of the triple buffer
+	 */
+	private static class Slot {
+		final GuitarTuner snapshot = new GuitarTuner(null, null);
+		long sequence = 0;			// number of the published result (0 = nothing published yet)
+		long publishTime = 0;		// System.nanoTime() of the publication
+		boolean spectrum16 = false;	// true if the spectra are stored in mag16 and hps16 (not in the snapshot)
+		short[] mag16;				// 16-bit copy of the magnitudes
+		short[] hps16;				// 16-bit copy of the harmonic product spectrum
+	}
+
+	private Slot writeSlot = new Slot();		// owned by the producer
+	private final AtomicReference<Slot> sharedSlot = new AtomicReference<Slot>(new Slot());	// latest published result
+	private Slot readSlot = new Slot();			// owned by the consumer
+	private long sequence = 0;					// sequence number of the last published result (producer)
+	private long previousPublishTime = 0;		// publish time of the result before the current read slot (consumer)
+	private volatile boolean spectrum16 = false;	// store the spectra as 16-bit values
+	private float[] decodedMag;					// magnitudes of the read slot decoded to floats (consumer)
+	private float[] decodedHps;					// hps of the read slot decoded to floats (consumer)
+
+	/**
+	 * Stores the spectra of the snapshots as 16-bit values instead of floats. Only the snapshot
+	 * that is currently read is decoded to floats. This saves almost half of the memory of the
+	 * spectra; the values are rounded to 1/256 (0.08 dB).
+	 *
+	 * @param spectrum16	true to store the spectra as 16-bit values
+	 */
+	public void setSpectrum16(boolean spectrum16) {
+		this.spectrum16 = spectrum16;
+	}
+
+	public boolean isSpectrum16() {
+		return spectrum16;
+	}
+
+	/**
+	 * Publishes a snapshot of the current results of the tuner. Must only be called by the producer.
+	 *
+	 * @param guitarTuner	tuner instance holding the latest results
+	 */
+	public void publish(GuitarTuner guitarTuner) {
+		boolean compact = spectrum16;
+		guitarTuner.copyResultsTo(writeSlot.snapshot, !compact);
+		writeSlot.spectrum16 = compact;
+		writeSlot.mag16 = compact ? encode(guitarTuner.getMag(), writeSlot.mag16) : null;
+		writeSlot.hps16 = compact ? encode(guitarTuner.getHPS(), writeSlot.hps16) : null;
+		writeSlot.sequence = ++sequence;
+		writeSlot.publishTime = System.nanoTime();
+		writeSlot = sharedSlot.getAndSet(writeSlot);	// the old shared slot is free (it was never read or the reader returned it)
+	}
+
+	/**
+	 * Fetches the latest published result (if there is a newer one than the current). Must only
+	 * be called by the consumer.
+	 *
+	 * @return true if a new result was fetched
+	 */
+	public boolean update() {
+		if(sharedSlot.get().sequence <= readSlot.sequence)
+			return false;
+		long currentPublishTime = readSlot.publishTime;
+		readSlot = sharedSlot.getAndSet(readSlot);
+		previousPublishTime = currentPublishTime;
+		if(readSlot.spectrum16) {
+			decodedMag = decode(readSlot.mag16, decodedMag);
+			decodedHps = decode(readSlot.hps16, decodedHps);
+			readSlot.snapshot.setSnapshotSpectra(decodedMag, decodedHps);
+		} else {
+			decodedMag = null;
+			decodedHps = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Converts a spectrum to 16-bit values (-infinity is stored as Short.MIN_VALUE)
+	 *
+	 * @param values	spectrum (might be null)
+	 * @param target	array that should be reused if possible (might be null)
+	 * @return 16-bit copy of values (null if values is null)
+	 */
+	private static short[] encode(float[] values, short[] target) {
+		if(values == null)
+			return null;
+		if(target == null || target.length != values.length)
+			target = new short[values.length];
+		for (int i = 0; i < values.length; i++) {
+			if(values[i] == Float.NEGATIVE_INFINITY)
+				target[i] = Short.MIN_VALUE;
+			else
+				target[i] = (short) Math.max(-Short.MAX_VALUE, Math.min(Short.MAX_VALUE, Math.round(values[i] * SPECTRUM16_SCALE)));
+		}
+		return target;
+	}
+
+	/**
+	 * Converts 16-bit values (see encode()) back to a spectrum
+	 *
+	 * @param values	16-bit spectrum (might be null)
+	 * @param target	array that should be reused if possible (might be null)
+	 * @return spectrum (null if values is null)
+	 */
+	private static float[] decode(short[] values, float[] target) {
+		if(values == null)
+			return null;
+		if(target == null || target.length != values.length)
+			target = new float[values.length];
+		for (int i = 0; i < values.length; i++) {
+			if(values[i] == Short.MIN_VALUE)
+				target[i] = Float.NEGATIVE_INFINITY;
+			else
+				target[i] = values[i] / SPECTRUM16_SCALE;
+		}
+		return target;
+	}
+
+	/**
+	 * @return approximate number of bytes of the spectra kept by this buffer (all slots). Might be
+	 *         called from any thread; the result is only an estimate while results are published.
+	 */
+	public int getRetainedHeapBytes() {
+		int bytes = getSlotBytes(writeSlot) + getSlotBytes(sharedSlot.get()) + getSlotBytes(readSlot);
+		float[] mag = decodedMag;
+		float[] hps = decodedHps;
+		return bytes + (mag == null ? 0 : mag.length * 4) + (hps == null ? 0 : hps.length * 4);
+	}
+
+	/**
+	 * @param slot	slot of the triple buffer
+	 * @return number of bytes of the spectra in the slot (decoded spectra are not included)
+	 */
+	private static int getSlotBytes(Slot slot) {
+		short[] mag16 = slot.mag16;
+		short[] hps16 = slot.hps16;
+		if(mag16 != null || hps16 != null)
+			return (mag16 == null ? 0 : mag16.length * 2) + (hps16 == null ? 0 : hps16.length * 2);
+		float[] mag = slot.snapshot.getMag();
+		float[] hps = slot.snapshot.getHPS();
+		return (mag == null ? 0 : mag.length * 4) + (hps == null ? 0 : hps.length * 4);
+	}
+
+	/**
+	 * @return snapshot of the latest fetched result (consumer only; valid until the next update())
+	 */
+	public GuitarTuner getSnapshot() {
+		return readSlot.snapshot;
+	}
+
+	/**
+	 * @return true if at least one result was fetched
+	 */
+	public boolean hasSnapshot() {
+		return readSlot.sequence > 0;
+	}
+
+	/**
+	 * @return System.nanoTime() at which the latest fetched result was published
+	 */
+	public long getPublishTime() {
+		return readSlot.publishTime;
+	}
+
+	/**
+	 * @return time (in ns) between the publication of the latest fetched result and the one
+	 *         fetched before it (0 if there is only one). This is the measured update interval.
+	 */
+	public long getPublishInterval() {
+		if(previousPublishTime == 0)
+			return 0;
+		return readSlot.publishTime - previousPublishTime;
+	}
+}
@@ -2,8 +2,11 @@ package com.mantz_it.guitartunerlibrary;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
@@ -13,6 +16,9 @@ import android.view.SurfaceView;
  * Module:      TunerSurface.java
  * Description: This class implements the GuitarTunerCallbackInterface and extends the SurfaceView.
  *              It calls the draw method of the current TunerSkin to draw the UI with the results from the GuitarTuner.
+ *              Drawing is done by a separate render thread which is paced by the display (vsync). The
+ *              results are passed from the processing thread through a lock-free TunerResultBuffer.
+ *              The render thread only listens to vsync while there is something to draw.
  *
  * @author Dennis Mantz
  *
@@ -35,10 +41,15 @@ import android.view.SurfaceView;
  */
 public class TunerSurface extends SurfaceView implements GuitarTuner.GuitarTunerCallbackInterface, SurfaceHolder.Callback {
 	private static final String LOGTAG = "TunerSurface";
-	private TunerSkin tunerSkin;	// skin that does the drawing
-	private int width = -1;			// current width of the surface
-	private int height = -1;		// current height of the surface
+	private static final int ANIMATION_STEPS = 1000;			// resolution of the animation progress passed to the skin
+	private static final long MAX_ANIMATION_TIME = 1000000000;	// max. duration (ns) of the animation between two results
+	private volatile TunerSkin tunerSkin;	// skin that does the drawing
+	private volatile int width = -1;		// current width of the surface
+	private volatile int height = -1;		// current height of the surface
 	private boolean round;			// indicates if the surface has a round shape
+	private TunerResultBuffer resultBuffer = new TunerResultBuffer();	// results from the processing thread
+	private boolean lastPublishedIdle = false;	// the last published result was idle (only used by the processing thread)
+	private volatile RenderThread renderThread;		// draws the results (only exists while the surface exists)
 
 	/**
 	 * constructor.
@@ -54,6 +65,8 @@ public class TunerSurface extends SurfaceView implements GuitarTuner.GuitarTuner
 
 	@Override
 	public void surfaceCreated(SurfaceHolder holder) {
+		renderThread = new RenderThread();
+		renderThread.start();
 	}
 
 	@Override
@@ -66,6 +79,16 @@ public class TunerSurface extends SurfaceView implements GuitarTuner.GuitarTuner
 
 	@Override
 	public void surfaceDestroyed(SurfaceHolder holder) {
+		// the surface must not be used after this method returns. Wait for the render thread:
+		if(renderThread != null) {
+			renderThread.quit();
+			try {
+				renderThread.join();
+			} catch (InterruptedException e) {
+				Log.e(LOGTAG, "surfaceDestroyed: Interrupted while waiting for the render thread!");
+			}
+			renderThread = null;
+		}
 	}
 
 	public void setRound(boolean round) {
@@ -74,12 +97,33 @@ public class TunerSurface extends SurfaceView implements GuitarTuner.GuitarTuner
 			tunerSkin.setRound(round);
 	}
 
+	/**
+	 * Stores the spectra of the results (that are waiting to be drawn) as 16-bit values to save
+	 * memory. See TunerResultBuffer.setSpectrum16().
+	 *
+	 * @param compactMemory		true to save memory
+	 */
+	public void setCompactMemory(boolean compactMemory) {
+		resultBuffer.setSpectrum16(compactMemory);
+	}
+
+	/**
+	 * @return approximate number of bytes of the results kept for drawing
+	 */
+	public int getRetainedHeapBytes() {
+		return resultBuffer.getRetainedHeapBytes();
+	}
+
 	public void setTunerSkin(TunerSkin skin) {
+		skin.updateWidthAndHeight(width, height);
+		skin.setRound(round);
 		this.tunerSkin = skin;
-		tunerSkin.updateWidthAndHeight(width, height);
-		tunerSkin.setRound(round);
 	}
 
+	/**
+	 * Called by the guitar tuner (on the processing thread) with the latest results. The results
+	 * are only published to the render thread; this method never waits for the display.
+	 */
 	@Override
 	public boolean process(GuitarTuner guitarTuner) {
 		if(!this.getHolder().getSurface().isValid()) {
@@ -97,18 +141,31 @@ public class TunerSurface extends SurfaceView implements GuitarTuner.GuitarTuner
 			return false;
 		}
 
-		if(tunerSkin.isAnimationEnabled())
-			animatedDraw(guitarTuner);
-		else
-			draw(guitarTuner);
+		// nothing is played: the idle state has to be drawn only once
+		boolean idle = guitarTuner.isIdle();
+		if(idle && lastPublishedIdle)
+			return true;
+		lastPublishedIdle = idle;
+
+		resultBuffer.publish(guitarTuner);
+
+		// wake up the render thread if it is not waiting for a frame:
+		RenderThread thread = renderThread;
+		if(thread != null)
+			thread.wakeUp();
 		return true;
 	}
 
 	/**
-	 * uses the tunerSkin to draw the results of the current cycle without animations
-	 * @param guitarTuner		GuitarTuner instance holding the latest results
+	 * uses the tunerSkin to draw one frame
+	 *
+	 * @param skin				skin that does the drawing
+	 * @param snapshot			GuitarTuner instance holding the results that should be drawn
+	 * @param frameNumber		current step of the animation (ignored if animated is false)
+	 * @param framesPerCycle	total number of animation steps (ignored if animated is false)
+	 * @param animated			true to call the animated draw method of the skin
 	 */
-	private void draw(GuitarTuner guitarTuner) {
+	private void drawFrame(TunerSkin skin, GuitarTuner snapshot, int frameNumber, int framesPerCycle, boolean animated) {
 		Canvas c = null;
 		try {
 			c = this.getHolder().lockCanvas();
@@ -116,14 +173,16 @@ public class TunerSurface extends SurfaceView implements GuitarTuner.GuitarTuner
 			synchronized (this.getHolder()) {
 				if(c != null) {
 					// Draw
-					tunerSkin.draw(c, guitarTuner);
+					if(animated)
+						skin.draw(c, snapshot, frameNumber, framesPerCycle);
+					else
+						skin.draw(c, snapshot);
 				} else
-					Log.d(LOGTAG, "draw: Canvas is null.");
+					Log.d(LOGTAG, "drawFrame: Canvas is null.");
 			}
 		} catch (Exception e)
 		{
-			Log.e(LOGTAG, "draw: Error while drawing on the canvas. Stop!");
-			e.printStackTrace();
+			Log.e(LOGTAG, "drawFrame: Error while drawing on the canvas: " + e.getMessage());
 		} finally {
 			if (c != null) {
 				this.getHolder().unlockCanvasAndPost(c);
@@ -132,58 +191,118 @@ public class TunerSurface extends SurfaceView implements GuitarTuner.GuitarTuner
 	}
 
 	/**
-	 * uses the tunerSkin to draw the results of the current cycle. Might draw multiple times
-	 * in order to animate the transition from the old results to the new ones.
-	 *
-	 * @param guitarTuner		GuitarTuner instance holding the latest results (and the old ones)
+	 * Thread that draws the results. It is woken up by the Choreographer on vsync and draws
+	 * a frame if there is a new result or an animation is running. The animation progress is
+	 * calculated from the frame time and the measured interval between two results.
+	 * The frame callback is only re-posted while there is something left to draw. Otherwise the
+	 * thread sleeps until process() wakes it up with the next result.
 	 */
-	private void animatedDraw(GuitarTuner guitarTuner) {
-		float updateRate = guitarTuner.getUpdateRate();
-		int framesToDraw = (int)(tunerSkin.getDesiredRefreshRate() / updateRate + 1);
-		int millisPerCycle = (int) (1000 / updateRate);
-		int millisPerFrame = millisPerCycle / framesToDraw;
-		long frameStartTime = guitarTuner.getLastUpdateTimestamp();
-
-		for(int i = 0; i < framesToDraw; i++) {
-			// Check if we exceeded the time for the current cycle
-			if(System.currentTimeMillis() > guitarTuner.getLastUpdateTimestamp() + millisPerCycle) {
-				Log.d(LOGTAG, "animatedDraw: Exceeded cycle time during animation!");
+	private class RenderThread extends HandlerThread implements Choreographer.FrameCallback {
+		private Choreographer choreographer;
+		private volatile Handler handler;	// handler of the render thread (null until the looper is prepared)
+		private volatile boolean frameScheduled = false;	// true while a frame callback is posted
+		private boolean drawPending = false;	// true if the latest result is waiting for a frame (frame rate limit)
+		private final Runnable scheduleFrame = new Runnable() {
+			@Override
+			public void run() {
+				if(!frameScheduled) {
+					frameScheduled = true;
+					choreographer.postFrameCallback(RenderThread.this);
+				}
+			}
+		};
+		private long lastDrawTime = 0;		// frame time of the last drawn frame (ns)
+		private boolean animating = false;	// true while the animation to the latest result is running
+		private boolean notDrawn = false;	// true if the latest result was not drawn yet (for the latency measurement)
+
+		public RenderThread() {
+			super("TunerSurfaceRenderThread");
+		}
+
+		/**
+		 * Called by the processing thread after a new result was published. Posts a frame callback
+		 * (on the render thread) unless one is already pending.
+		 */
+		public void wakeUp() {
+			Handler h = handler;
+			if(h != null && !frameScheduled)
+				h.post(scheduleFrame);
+		}
+
+		/**
+		 * Records the latencies of the drawing stage and of the whole pipeline after the first
+		 * frame of a result was posted.
+		 *
+		 * @param snapshot	results that were drawn
+		 */
+		private void recordDrawLatency(GuitarTuner snapshot) {
+			notDrawn = false;
+			LatencyMonitor latencyMonitor = snapshot.getLatencyMonitor();
+			if(latencyMonitor == null)
 				return;
+			long now = System.nanoTime();
+			latencyMonitor.record(LatencyMonitor.STAGE_DRAW, now - resultBuffer.getPublishTime());
+			if(snapshot.getCaptureTimestamp() != 0)
+				latencyMonitor.record(LatencyMonitor.STAGE_TOTAL, now - snapshot.getCaptureTimestamp());
+		}
+
+		@Override
+		protected void onLooperPrepared() {
+			choreographer = Choreographer.getInstance();
+			handler = new Handler(getLooper());
+			frameScheduled = true;
+			choreographer.postFrameCallback(this);
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			// clear the flag before looking for new results. A result published after the update
+			// below will then post a new frame (see wakeUp()):
+			frameScheduled = false;
+			boolean newResult = resultBuffer.update();
+			TunerSkin skin = tunerSkin;
+			boolean drawn = false;
+			if(newResult) {
+				notDrawn = true;
+				drawPending = true;
 			}
 
-			// Draw Frame
-			Canvas c = null;
-			try {
-				c = this.getHolder().lockCanvas();
-
-				synchronized (this.getHolder()) {
-					if(c != null) {
-						// Draw
-						tunerSkin.draw(c, guitarTuner, i, framesToDraw);
-					} else
-						Log.d(LOGTAG, "animatedDraw: Canvas is null.");
-				}
-			} catch (Exception e)
-			{
-				Log.e(LOGTAG, "animatedDraw: Error while drawing on the canvas: " + e.getMessage());
-			} finally {
-				if (c != null) {
-					this.getHolder().unlockCanvasAndPost(c);
+			if(skin != null && width > 0 && height > 0 && resultBuffer.hasSnapshot()) {
+				GuitarTuner snapshot = resultBuffer.getSnapshot();
+				if(skin.isAnimationEnabled()) {
+					// don't draw faster than the skin wants:
+					boolean frameDue = frameTimeNanos - lastDrawTime >= 1000000000L / skin.getDesiredRefreshRate();
+					if((drawPending || animating) && frameDue) {
+						// duration of the animation: time between the last two results
+						long animationTime = resultBuffer.getPublishInterval();
+						if(animationTime <= 0 || animationTime > MAX_ANIMATION_TIME)
+							animationTime = MAX_ANIMATION_TIME;
+						float progress = (frameTimeNanos - resultBuffer.getPublishTime()) / (float) animationTime;
+						progress = Math.max(0, Math.min(1, progress));
+						drawFrame(skin, snapshot, (int) (progress * (ANIMATION_STEPS - 1)), ANIMATION_STEPS, true);
+						animating = progress < 1;
+						lastDrawTime = frameTimeNanos;
+						drawPending = false;
+						drawn = true;
+					}
+				} else if(newResult) {
+					drawFrame(skin, snapshot, 0, 1, false);
+					lastDrawTime = frameTimeNanos;
+					drawPending = false;
+					animating = false;
+					drawn = true;
 				}
+
+				// measure the latency of the first frame of a new result:
+				if(notDrawn && drawn)
+					recordDrawLatency(snapshot);
 			}
 
-			// Sleep til the next frame starts:
-			int sleepTime = (int) (frameStartTime + millisPerFrame - System.currentTimeMillis());
-			if(sleepTime > 0) {
-				try {
-					//Log.d(LOGTAG, "animatedDraw: Sleep for " + sleepTime + "ms after Frame " + i);
-					Thread.sleep(sleepTime);
-				} catch (InterruptedException e) {
-					Log.d(LOGTAG, "animatedDraw: Interrupted while waiting for the next frame: " + e.getMessage());
-					return;
-				}
+			// keep listening to vsync only while there is something left to draw:
+			if(animating || (drawPending && skin != null && skin.isAnimationEnabled())) {
+				frameScheduled = true;
+				choreographer.postFrameCallback(this);
 			}
-			frameStartTime += millisPerFrame;
 		}
 	}
 }
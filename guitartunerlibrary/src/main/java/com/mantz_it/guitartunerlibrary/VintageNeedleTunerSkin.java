@@ -154,6 +154,8 @@ public class VintageNeedleTunerSkin extends DefaultTunerSkin {
 
 			gradientPaint.setAlpha(255);	// reset alpha to default
 			foregroundPaint.setAlpha(255);
+		} else if(tuner.isIdle()) {
+			drawIdle(c);
 		}
 
 		// draw the background over the canvas :
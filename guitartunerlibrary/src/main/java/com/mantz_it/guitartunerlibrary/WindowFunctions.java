@@ -0,0 +1,123 @@
+package com.mantz_it.guitartunerlibrary;
+
+/**
+ * <h1>Wear Guitar Tuner - Window Functions</h1>
+ *
+ * Module:      WindowFunctions.java
+ * Description: Registry of the available window functions (Hann, Blackman,
+ *              Blackman-Harris, Kaiser, flat-top). The tables are calculated here
+ *              and shared through the PlanCache.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class WindowFunctions {
+	public static final String WINDOW_HANN = "hann";						// good resolution, moderate leakage
+	public static final String WINDOW_BLACKMAN = "blackman";				// default
+	public static final String WINDOW_BLACKMAN_HARRIS = "blackmanharris";	// very low leakage, wider main lobe
+	public static final String WINDOW_KAISER = "kaiser";					// adjustable with the parameter beta
+	public static final String WINDOW_FLAT_TOP = "flattop";					// accurate amplitudes, poor resolution
+	public static final double DEFAULT_KAISER_BETA = 8.6;					// similar to the blackman window
+
+	/**
+	 * @return names of all available window functions
+	 */
+	public static String[] getWindowNames() {
+		return new String[] {WINDOW_HANN, WINDOW_BLACKMAN, WINDOW_BLACKMAN_HARRIS, WINDOW_KAISER, WINDOW_FLAT_TOP};
+	}
+
+	/**
+	 * @param type	type of the window
+	 * @return true if the window type is known
+	 */
+	public static boolean isWindowName(String type) {
+		for (String name : getWindowNames()) {
+			if(name.equals(type))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Calculates a new window table. Use PlanCache.getWindow() to get a shared table instead.
+	 *
+	 * @param type			type of the window (see WINDOW_* constants)
+	 * @param length		length of the window
+	 * @param parameter		parameter of the window (beta of the kaiser window; ignored by the other windows)
+	 * @return window table
+	 */
+	public static float[] createWindow(String type, int length, double parameter) {
+		float[] window = new float[length];
+		if(length == 1) {
+			window[0] = 1f;
+			return window;
+		}
+
+		if(WINDOW_HANN.equals(type)) {
+			// w(n)=0.5-0.5cos{(2*PI*n)/(N-1)}
+			for (int i = 0; i < length; i++)
+				window[i] = (float) (0.5 - 0.5 * Math.cos(2*Math.PI*i/(length-1)));
+		} else if(WINDOW_BLACKMAN.equals(type)) {
+			// w(n)=0.42-0.5cos{(2*PI*n)/(N-1)}+0.08cos{(4*PI*n)/(N-1)};
+			for (int i = 0; i < length; i++)
+				window[i] = (float) (0.42 - 0.5 * Math.cos(2*Math.PI*i/(length-1))
+						+ 0.08 * Math.cos(4*Math.PI*i/(length-1)));
+		} else if(WINDOW_BLACKMAN_HARRIS.equals(type)) {
+			// 4-term Blackman-Harris (-92 dB side lobes)
+			for (int i = 0; i < length; i++)
+				window[i] = (float) (0.35875 - 0.48829 * Math.cos(2*Math.PI*i/(length-1))
+						+ 0.14128 * Math.cos(4*Math.PI*i/(length-1))
+						- 0.01168 * Math.cos(6*Math.PI*i/(length-1)));
+		} else if(WINDOW_FLAT_TOP.equals(type)) {
+			// flat-top window as defined by Matlab (the coefficients sum up to 1)
+			for (int i = 0; i < length; i++)
+				window[i] = (float) (0.21557895 - 0.41663158 * Math.cos(2*Math.PI*i/(length-1))
+						+ 0.277263158 * Math.cos(4*Math.PI*i/(length-1))
+						- 0.083578947 * Math.cos(6*Math.PI*i/(length-1))
+						+ 0.006947368 * Math.cos(8*Math.PI*i/(length-1)));
+		} else if(WINDOW_KAISER.equals(type)) {
+			// w(n)=I0(beta*sqrt(1-(2n/(N-1)-1)^2)) / I0(beta)
+			double denominator = besselI0(parameter);
+			for (int i = 0; i < length; i++) {
+				double x = 2.0 * i / (length-1) - 1;
+				window[i] = (float) (besselI0(parameter * Math.sqrt(1 - x*x)) / denominator);
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown window type: " + type);
+		}
+		return window;
+	}
+
+	/**
+	 * Modified Bessel function of the first kind (order 0), calculated with its power series
+	 *
+	 * @param x		argument
+	 * @return I0(x)
+	 */
+	private static double besselI0(double x) {
+		double sum = 1;
+		double term = 1;
+		double halfX = x / 2;
+		for (int k = 1; term > sum * 1e-12; k++) {
+			term = term * (halfX / k) * (halfX / k);
+			sum += term;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,277 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Audio Processing Engine Test</h1>
+ *
+ * Module:      AudioProcessingEngineTest.java
+ * Description: Unit tests of the magnitude calculation and of the AudioProcessingEngine with
+ *              synthetic tones (no microphone).
+ *              Runs on the JVM (see testOptions in build.gradle).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class AudioProcessingEngineTest {
+	private static final float MAX_LOG2_ERROR = 0.0029f;			// see fastLog2() (measured: 0.00281)
+	private static final float MAX_LOG_MAGNITUDE_ERROR = 0.00043f;	// see calcFastLogMagnitude() (measured: 0.00042)
+	private static final int RESULTS = 8;			// number of valid results that are awaited per tone
+	private static final long TIMEOUT = 20;			// max. time (s) to wait for the results of one tone
+	private static final float[] TONES = {82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f};	// standard tuning
+	private static final float DETUNE = 13;			// the tones are detuned by this amount of cents
+	private static final float NOISE_LEVEL = 0.001f;	// standard deviation of the noise of the synthetic tones
+
+	// max. deviation (in cents) of the fixed-point pipeline from the float pipeline (measured: 0.011 cents):
+	private static final float MAX_FIXED_POINT_CENTS_DIFFERENCE = 0.05f;
+	private static final float[] FIXED_POINT_AMPLITUDES = {0.9f, 0.1f, 0.01f};
+	// max. deviation (in cents) of the Goertzel filter bank (measured: 0.026 cents):
+	private static final float MAX_CENTS_ERROR_STRINGS = 0.1f;
+	// max. deviation (in cents) of the time-domain modes (measured: 0.53 cents MPM, 1.9 cents YIN). The
+	// lag of the short periods of the high strings is only a few samples (interpolated):
+	private static final float MAX_CENTS_ERROR_MPM = 1.5f;
+	private static final float MAX_CENTS_ERROR_YIN = 4f;
+	// max. deviation (in cents) of the peak list mode (measured: 0.016 cents):
+	private static final float MAX_CENTS_ERROR_PEAKS = 0.1f;
+	// max. deviation (in cents) of the spectrum with the interpolation between the bins only (measured: 0.06 cents):
+	private static final float MAX_CENTS_ERROR_INTERPOLATION = 0.2f;	// see GuitarTuner.interpolatePeak()
+	// max. deviation (in cents) of the spectrum with phase refinement (measured: 0.004 cents):
+	private static final float MAX_CENTS_ERROR_PHASE = 0.02f;
+	// max. deviation (in cents) of the zoom transform with phase refinement (measured: 0.0022 cents):
+	private static final float MAX_CENTS_ERROR_ZOOM = 0.02f;
+	private static final float[] ZOOM_BIN_SPACINGS = {0.1f, 0.5f, 2f};
+	private static final String[] FIXED_POINT_WINDOWS = {WindowFunctions.WINDOW_HANN, WindowFunctions.WINDOW_BLACKMAN,
+			WindowFunctions.WINDOW_BLACKMAN_HARRIS, WindowFunctions.WINDOW_KAISER, WindowFunctions.WINDOW_FLAT_TOP};
+
+	@Test
+	public void testFastLog2ErrorBound() {
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; i++) {
+			float x = (float) Math.exp(random.nextDouble() * 80 - 40);
+			assertEquals("log2(" + x + ")", Math.log(x) / Math.log(2), AudioProcessingEngine.fastLog2(x), MAX_LOG2_ERROR);
+		}
+	}
+
+	@Test
+	public void testFastLogMagnitudeErrorBound() {
+		Random random = new Random(1);
+		int fftSize = 32768;
+		int length = fftSize / 2;
+		float[] re = new float[length];
+		float[] im = new float[length];
+		for (int i = 0; i < length; i++) {
+			// wide dynamic range like a real spectrum:
+			re[i] = (float) (random.nextGaussian() * Math.exp(random.nextDouble() * 20 - 5));
+			im[i] = (float) (random.nextGaussian() * Math.exp(random.nextDouble() * 20 - 5));
+		}
+		float[] exact = new float[length];
+		float[] fast = new float[length];
+		AudioProcessingEngine.calcLogMagnitude(re, im, exact, length, fftSize);
+
+		int start = 100;
+		int end = 10000;
+		AudioProcessingEngine.calcFastLogMagnitude(re, im, fast, start, end, fftSize);
+		for (int i = 0; i < length; i++) {
+			if(i < start || i >= end)
+				assertEquals("bin " + i + " (outside)", Float.NEGATIVE_INFINITY, fast[i], 0f);
+			else
+				assertEquals("bin " + i, exact[i], fast[i], MAX_LOG_MAGNITUDE_ERROR);
+		}
+
+		float[] band = new float[end - start];
+		AudioProcessingEngine.calcFastLogMagnitudeBand(re, im, band, start, fftSize);
+		for (int i = 0; i < band.length; i++)
+			assertEquals("bin " + (start + i) + " (band)", exact[start + i], band[i], MAX_LOG_MAGNITUDE_ERROR);
+	}
+
+	@Test
+	public void testFixedPointMatchesFloat() throws InterruptedException {
+		AnalysisProfile profile = AnalysisProfile.getProfile(AnalysisProfile.PROFILE_BALANCED);
+		for (String window: FIXED_POINT_WINDOWS) {
+			for (float amplitude: FIXED_POINT_AMPLITUDES) {
+				// the flat top window is not compared at the low level: the peak of its wide main lobe
+				// moves between the bins with the noise and single results are several cents off
+				// (in both pipelines)
+				if(WindowFunctions.WINDOW_FLAT_TOP.equals(window) && amplitude < 0.1f)
+					continue;
+				for (float tone: TONES) {
+					float frequency = (float) (tone * Math.pow(2, DETUNE / 1200));
+					EngineSettings settings = new EngineSettings(AudioProcessingEngine.DETECTION_MODE_SPECTRUM, profile);
+					settings.window = window;
+					settings.amplitude = amplitude;
+					float floatResult = detectFrequency(settings, frequency);
+					settings.fixedPoint = true;
+					float fixedPointResult = detectFrequency(settings, frequency);
+					String message = window + ", amplitude " + amplitude + ": " + frequency + " Hz detected as "
+							+ floatResult + " Hz (float) and " + fixedPointResult + " Hz (fixed-point)";
+					assertTrue(message, floatResult > 0 && fixedPointResult > 0);
+					assertEquals(message, 0, cents(fixedPointResult, floatResult), MAX_FIXED_POINT_CENTS_DIFFERENCE);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDetectionModeStrings() throws InterruptedException {
+		for (String profile: new String[] {AnalysisProfile.PROFILE_LOW_POWER, AnalysisProfile.PROFILE_BALANCED}) {
+			assertDetectsTones(new EngineSettings(AudioProcessingEngine.DETECTION_MODE_STRINGS,
+					AnalysisProfile.getProfile(profile)), MAX_CENTS_ERROR_STRINGS);
+		}
+	}
+
+	@Test
+	public void testDetectionModeMPM() throws InterruptedException {
+		assertDetectsTones(new EngineSettings(AudioProcessingEngine.DETECTION_MODE_MPM,
+				AnalysisProfile.getProfile(AnalysisProfile.PROFILE_BALANCED)), MAX_CENTS_ERROR_MPM);
+	}
+
+	@Test
+	public void testDetectionModeYIN() throws InterruptedException {
+		assertDetectsTones(new EngineSettings(AudioProcessingEngine.DETECTION_MODE_YIN,
+				AnalysisProfile.getProfile(AnalysisProfile.PROFILE_BALANCED)), MAX_CENTS_ERROR_YIN);
+	}
+
+	@Test
+	public void testDetectionModePeaks() throws InterruptedException {
+		for (String profile: new String[] {AnalysisProfile.PROFILE_LOW_POWER, AnalysisProfile.PROFILE_BALANCED}) {
+			assertDetectsTones(new EngineSettings(AudioProcessingEngine.DETECTION_MODE_PEAKS,
+					AnalysisProfile.getProfile(profile)), MAX_CENTS_ERROR_PEAKS);
+		}
+	}
+
+	@Test
+	public void testPeakInterpolation() throws InterruptedException {
+		for (String profile: new String[] {AnalysisProfile.PROFILE_LOW_POWER, AnalysisProfile.PROFILE_BALANCED}) {
+			EngineSettings settings = new EngineSettings(AudioProcessingEngine.DETECTION_MODE_SPECTRUM, AnalysisProfile.getProfile(profile));
+			settings.phaseRefinement = false;
+			assertDetectsTones(settings, MAX_CENTS_ERROR_INTERPOLATION);
+		}
+	}
+
+	@Test
+	public void testPhaseRefinement() throws InterruptedException {
+		for (String profile: new String[] {AnalysisProfile.PROFILE_LOW_POWER, AnalysisProfile.PROFILE_BALANCED}) {
+			assertDetectsTones(new EngineSettings(AudioProcessingEngine.DETECTION_MODE_SPECTRUM,
+					AnalysisProfile.getProfile(profile)), MAX_CENTS_ERROR_PHASE);
+		}
+	}
+
+	@Test
+	public void testZoomTransform() throws InterruptedException {
+		EngineSettings settings = new EngineSettings(AudioProcessingEngine.DETECTION_MODE_SPECTRUM,
+				AnalysisProfile.getProfile(AnalysisProfile.PROFILE_BALANCED));
+		for (float binSpacing: ZOOM_BIN_SPACINGS) {
+			settings.zoomBinSpacing = binSpacing;
+			assertDetectsTones(settings, MAX_CENTS_ERROR_ZOOM);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeZoomBinSpacing() {
+		new AudioProcessingEngine(null, FFTEngineFactory.ENGINE_RADIX2, new SyntheticAudioSource(8000, 110, 1, 0.5f, 0, false))
+				.setZoomBinSpacing(-1);
+	}
+
+	/**
+	 * Runs the engine with a synthetic tone for each string of the standard tuning (detuned by
+	 * DETUNE cents) and checks the last of the first RESULTS valid results.
+	 *
+	 * @param settings		settings of the engine and of the tone
+	 * @param maxCents		max. deviation of the detected frequency (in cents)
+	 */
+	private void assertDetectsTones(EngineSettings settings, float maxCents) throws InterruptedException {
+		for (float tone: TONES) {
+			float frequency = (float) (tone * Math.pow(2, DETUNE / 1200));
+			float detected = detectFrequency(settings, frequency);
+			String message = "mode " + settings.detectionMode + " (" + settings.profile.getName()
+					+ (settings.zoomBinSpacing > 0 ? ", zoom " + settings.zoomBinSpacing + " Hz" : "") + "): "
+					+ frequency + " Hz detected as " + detected + " Hz";
+			assertTrue(message, detected > 0);
+			assertEquals(message, 0, cents(detected, frequency), maxCents);
+		}
+	}
+
+	/**
+	 * @return distance from reference to frequency in cents
+	 */
+	private static double cents(float frequency, float reference) {
+		return 1200 * Math.log(frequency / reference) / Math.log(2);
+	}
+
+	/**
+	 * Settings of the engine and of the synthetic tone for detectFrequency()
+	 */
+	private static class EngineSettings {
+		int detectionMode;
+		AnalysisProfile profile;
+		String window = WindowFunctions.WINDOW_BLACKMAN;
+		boolean fixedPoint = false;
+		float zoomBinSpacing = 0;
+		boolean phaseRefinement = true;
+		float amplitude = 0.5f;
+
+		EngineSettings(int detectionMode, AnalysisProfile profile) {
+			this.detectionMode = detectionMode;
+			this.profile = profile;
+		}
+	}
+
+	/**
+	 * Runs the engine with a synthetic tone (fundamental and harmonics plus noise) and waits
+	 * for RESULTS valid results.
+	 *
+	 * @param settings			settings of the engine and of the tone
+	 * @param frequency			frequency of the synthetic tone (in Hz)
+	 * @return detected frequency of the last awaited result (0 if there was no valid result)
+	 */
+	private float detectFrequency(EngineSettings settings, float frequency) throws InterruptedException {
+		final CountDownLatch results = new CountDownLatch(RESULTS);
+		final float[] detected = new float[1];
+		GuitarTuner guitarTuner = new GuitarTuner(new GuitarTuner.GuitarTunerCallbackInterface() {
+			@Override
+			public boolean process(GuitarTuner guitarTuner) {
+				if(guitarTuner.isValid() && results.getCount() > 0) {
+					detected[0] = guitarTuner.getDetectedFrequency();
+					results.countDown();
+				}
+				return true;
+			}
+		}, null);
+		SyntheticAudioSource source = new SyntheticAudioSource(settings.profile.getSampleRate(), frequency, 6,
+				settings.amplitude, NOISE_LEVEL, false);
+		AudioProcessingEngine engine = new AudioProcessingEngine(guitarTuner, FFTEngineFactory.ENGINE_RADIX2, source, settings.profile);
+		engine.setDetectionMode(settings.detectionMode);
+		engine.setWindow(settings.window, 8);
+		engine.setFixedPoint(settings.fixedPoint);
+		engine.setZoomBinSpacing(settings.zoomBinSpacing);
+		engine.setPhaseRefinementEnabled(settings.phaseRefinement);
+		engine.setNoiseGateEnabled(false);	// the tone starts with the engine (no noise floor to learn)
+		engine.start();
+		boolean complete = results.await(TIMEOUT, TimeUnit.SECONDS);
+		engine.release();
+		return complete ? detected[0] : 0;
+	}
+}
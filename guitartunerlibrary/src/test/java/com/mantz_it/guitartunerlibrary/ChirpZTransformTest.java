@@ -0,0 +1,116 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <h1>Wear Guitar Tuner - Chirp-Z Transform Test</h1>
+ *
+ * Module:      ChirpZTransformTest.java
+ * Description: Unit tests of the zoom transform (ChirpZTransform).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class ChirpZTransformTest {
+	private static final int SAMPLE_RATE = 8000;
+	private static final int INPUT_LENGTH = 4096;
+	private static final float MAX_RELATIVE_ERROR = 1e-5f;	// max. error relative to the largest bin
+
+	/**
+	 * The transform must match the direct evaluation of the spectrum at the bin frequencies
+	 * (bin spacing that is no fraction of the sample rate).
+	 */
+	@Test
+	public void testMatchesDirectEvaluation() {
+		float[] x = randomSignal(INPUT_LENGTH, 0);
+		float startFrequency = 50;
+		float binSpacing = 0.3f;
+		int binCount = 800;
+		ChirpZTransform transform = new ChirpZTransform(INPUT_LENGTH, SAMPLE_RATE, startFrequency, binSpacing,
+				binCount, FFTEngineFactory.ENGINE_RADIX2);
+		float[] re = new float[binCount];
+		float[] im = new float[binCount];
+		transform.transform(x, re, im);
+
+		double[] refRe = new double[binCount];
+		double[] refIm = new double[binCount];
+		for (int k = 0; k < binCount; k++) {
+			double step = 2 * Math.PI * (startFrequency + k * (double) binSpacing) / SAMPLE_RATE;
+			for (int n = 0; n < INPUT_LENGTH; n++) {
+				refRe[k] += x[n] * Math.cos(step * n);
+				refIm[k] -= x[n] * Math.sin(step * n);
+			}
+		}
+		assertSpectrumEquals("direct evaluation", refRe, refIm, re, im);
+	}
+
+	/**
+	 * With the bin spacing of a zero padded fft, the transform must return the bins of the fft.
+	 */
+	@Test
+	public void testMatchesZeroPaddedFft() {
+		int fftSize = 32768;
+		int firstBin = 205;		// 50 Hz
+		int binCount = 10000;	// ... 2491 Hz
+		float[] x = randomSignal(INPUT_LENGTH, 1);
+		for (String engine: FFTEngineFactory.getEngineNames()) {
+			ChirpZTransform transform = new ChirpZTransform(INPUT_LENGTH, SAMPLE_RATE, firstBin * (float) SAMPLE_RATE / fftSize,
+					(float) SAMPLE_RATE / fftSize, binCount, engine);
+			float[] re = new float[binCount];
+			float[] im = new float[binCount];
+			transform.transform(x, re, im);
+
+			FFT fft = new FFT(fftSize, FFTEngineFactory.ENGINE_RADIX2, INPUT_LENGTH);
+			float[] fftRe = new float[fftSize / 2];
+			float[] fftIm = new float[fftSize / 2];
+			fft.packReal(x, fftRe, fftIm);
+			fft.fftReal(fftRe, fftIm, INPUT_LENGTH);
+			double[] refRe = new double[binCount];
+			double[] refIm = new double[binCount];
+			for (int k = 0; k < binCount; k++) {
+				refRe[k] = fftRe[firstBin + k];
+				refIm[k] = fftIm[firstBin + k];
+			}
+			assertSpectrumEquals(engine, refRe, refIm, re, im);
+		}
+	}
+
+	private static float[] randomSignal(int length, long seed) {
+		Random random = new Random(seed);
+		float[] x = new float[length];
+		for (int i = 0; i < length; i++)
+			x[i] = random.nextFloat() * 2 - 1;
+		return x;
+	}
+
+	private static void assertSpectrumEquals(String message, double[] refRe, double[] refIm, float[] re, float[] im) {
+		double max = 0;
+		for (int k = 0; k < refRe.length; k++)
+			max = Math.max(max, Math.sqrt(refRe[k] * refRe[k] + refIm[k] * refIm[k]));
+		double tolerance = MAX_RELATIVE_ERROR * max;
+		for (int k = 0; k < refRe.length; k++) {
+			assertEquals(message + " re[" + k + "]", refRe[k], re[k], tolerance);
+			assertEquals(message + " im[" + k + "]", refIm[k], im[k], tolerance);
+		}
+	}
+}
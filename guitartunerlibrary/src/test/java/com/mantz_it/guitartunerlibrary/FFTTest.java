@@ -0,0 +1,213 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - FFT Test</h1>
+ *
+ * Module:      FFTTest.java
+ * Description: Unit tests of the fft engines and the real valued fft (FFT.fftReal()).
+ *              Runs on the JVM (see testOptions in build.gradle).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class FFTTest {
+	private static final String[] ENGINES = {FFTEngineFactory.ENGINE_RADIX2, FFTEngineFactory.ENGINE_RADIX4,
+			FFTEngineFactory.ENGINE_SPLIT_RADIX, FFTEngineFactory.ENGINE_STOCKHAM};
+	// odd and even powers of two (the radix-4 engines need a radix-2 stage for the odd ones):
+	private static final int[] SIZES = {8, 16, 32, 256, 2048, 4096};
+	private static final float MAX_RELATIVE_ERROR = 1e-5f;	// max. error relative to the largest bin
+
+	/**
+	 * Each engine must compute the discrete fourier transform (compared to a direct evaluation
+	 * in double precision).
+	 */
+	@Test
+	public void testEnginesMatchDft() {
+		Random random = new Random(3);
+		for (int n: SIZES) {
+			float[] x = new float[n];
+			float[] y = new float[n];
+			for (int i = 0; i < n; i++) {
+				x[i] = random.nextFloat() * 2 - 1;
+				y[i] = random.nextFloat() * 2 - 1;
+			}
+			double[] refRe = new double[n];
+			double[] refIm = new double[n];
+			dft(x, y, refRe, refIm);
+
+			for (String engine: ENGINES) {
+				float[] re = x.clone();
+				float[] im = y.clone();
+				FFTEngineFactory.createEngine(engine, n).fft(re, im);
+				float tolerance = MAX_RELATIVE_ERROR * maxMagnitude(re, im);
+				String message = engine + " (n=" + n + ")";
+				for (int k = 0; k < n; k++) {
+					assertEquals(message + " re[" + k + "]", refRe[k], re[k], tolerance);
+					assertEquals(message + " im[" + k + "]", refIm[k], im[k], tolerance);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 'auto' must return one of the engines and reuse the result of the benchmark.
+	 */
+	@Test
+	public void testAutoEngine() {
+		FFTEngine engine = FFTEngineFactory.createEngine(FFTEngineFactory.ENGINE_AUTO, 64, 16);
+		assertEquals(64, engine.getSize());
+		boolean known = false;
+		for (String name: FFTEngineFactory.getEngineNames())
+			known |= name.equals(engine.getName());
+		assertTrue(engine.getName(), known);
+
+		long startTime = System.nanoTime();
+		FFTEngine secondEngine = FFTEngineFactory.createEngine(FFTEngineFactory.ENGINE_AUTO, 64, 16);
+		assertTrue("benchmark was repeated", System.nanoTime() - startTime < 50000000);
+		assertEquals(engine.getName(), secondEngine.getName());
+	}
+
+	/**
+	 * fftReal() must return the first half of the complex fft of the same (real) signal.
+	 */
+	@Test
+	public void testFftRealMatchesFft() {
+		Random random = new Random(0);
+		for (String engine: ENGINES) {
+			for (int n: SIZES) {
+				float[] x = new float[n];
+				for (int i = 0; i < n; i++)
+					x[i] = random.nextFloat() * 2 - 1;
+
+				// reference: complex fft with zero imaginary part
+				FFT fft = new FFT(n, engine);
+				float[] refRe = x.clone();
+				float[] refIm = new float[n];
+				fft.fft(refRe, refIm);
+
+				float[] re = new float[n / 2];
+				float[] im = new float[n / 2];
+				fft.packReal(x, re, im);
+				fft.fftReal(re, im);
+
+				float tolerance = MAX_RELATIVE_ERROR * maxMagnitude(refRe, refIm);
+				String message = engine + " (n=" + n + ")";
+				for (int k = 0; k < n / 2; k++) {
+					assertEquals(message + " re[" + k + "]", refRe[k], re[k], tolerance);
+					assertEquals(message + " im[" + k + "]", refIm[k], im[k], tolerance);
+				}
+				assertEquals(message + " nyquist", refRe[n / 2], fft.getNyquist(), tolerance);
+			}
+		}
+	}
+
+	/**
+	 * The pruned transform fft(re, im, nonZeroLength) must return exactly the same result as the
+	 * transform of the zero padded input.
+	 */
+	@Test
+	public void testPrunedFftIsBitExact() {
+		Random random = new Random(1);
+		for (String engine: ENGINES) {
+			for (int size: SIZES) {
+				FFTEngine fftEngine = FFTEngineFactory.createEngine(engine, size);
+				for (int nonZeroLength = 1; nonZeroLength <= size; nonZeroLength = nonZeroLength * 2 + 1) {
+					float[] re = new float[size];
+					float[] im = new float[size];
+					for (int i = 0; i < nonZeroLength; i++) {
+						re[i] = random.nextFloat() * 2 - 1;
+						im[i] = random.nextFloat() * 2 - 1;
+					}
+					float[] prunedRe = re.clone();
+					float[] prunedIm = im.clone();
+					fftEngine.fft(re, im);
+					fftEngine.fft(prunedRe, prunedIm, nonZeroLength);
+
+					String message = engine + " (size=" + size + ", nonZeroLength=" + nonZeroLength + ")";
+					assertArrayEquals(message, re, prunedRe, 0f);
+					assertArrayEquals(message, im, prunedIm, 0f);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The real valued fft of a zero padded signal (pruned) must match the unpruned one.
+	 */
+	@Test
+	public void testFftRealPrunedIsBitExact() {
+		Random random = new Random(2);
+		int n = 4096;
+		int signalLength = 1001;
+		for (String engine: ENGINES) {
+			FFT fft = new FFT(n, engine, signalLength);
+			float[] x = new float[signalLength];
+			for (int i = 0; i < signalLength; i++)
+				x[i] = random.nextFloat() * 2 - 1;
+			float[] re = new float[n / 2];
+			float[] im = new float[n / 2];
+			fft.packReal(x, re, im);
+			float[] prunedRe = re.clone();
+			float[] prunedIm = im.clone();
+			fft.fftReal(re, im);
+			fft.fftReal(prunedRe, prunedIm, signalLength);
+			assertArrayEquals(engine, re, prunedRe, 0f);
+			assertArrayEquals(engine, im, prunedIm, 0f);
+		}
+	}
+
+	/**
+	 * Direct evaluation of the discrete fourier transform (O(n^2), double precision)
+	 */
+	private static void dft(float[] re, float[] im, double[] outRe, double[] outIm) {
+		int n = re.length;
+		double[] cos = new double[n];
+		double[] sin = new double[n];
+		for (int i = 0; i < n; i++) {
+			cos[i] = Math.cos(-2 * Math.PI * i / n);
+			sin[i] = Math.sin(-2 * Math.PI * i / n);
+		}
+		for (int k = 0; k < n; k++) {
+			double sumRe = 0;
+			double sumIm = 0;
+			for (int i = 0; i < n; i++) {
+				int j = (int) (((long) i * k) % n);
+				sumRe += re[i] * cos[j] - im[i] * sin[j];
+				sumIm += re[i] * sin[j] + im[i] * cos[j];
+			}
+			outRe[k] = sumRe;
+			outIm[k] = sumIm;
+		}
+	}
+
+	private static float maxMagnitude(float[] re, float[] im) {
+		float max = 0;
+		for (int i = 0; i < re.length; i++)
+			max = Math.max(max, (float) Math.sqrt(re[i] * re[i] + im[i] * im[i]));
+		return max;
+	}
+}
@@ -0,0 +1,138 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <h1>Wear Guitar Tuner - Fixed-Point FFT Test</h1>
+ *
+ * Module:      FixedPointFFTTest.java
+ * Description: Unit tests of the integer (Q15) spectrum calculation (FixedPointFFT).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class FixedPointFFTTest {
+	private static final int FFT_SIZE = 8192;
+	private static final int LENGTH = 4096;
+	private static final float MAX_LOG2_ERROR = 0.0057f;		// see log2Q16()
+	// max. deviation of the log magnitude (log10 of the amplitude) from the float pipeline for
+	// bins within 40 dB of the peak (0.02 = 0.4 dB; measured: 0.0076):
+	private static final float MAX_LOG_MAGNITUDE_ERROR = 0.02f;
+	private static final float[] AMPLITUDES = {0.9f, 0.01f, 0.0005f};
+
+	@Test
+	public void testLog2Q16ErrorBound() {
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; i++) {
+			int x = 1 + random.nextInt(Integer.MAX_VALUE);
+			if(i % 2 == 0)
+				x >>>= random.nextInt(31);	// small values, too
+			x = Math.max(1, x);
+			assertEquals("log2(" + x + ")", Math.log(x) / Math.log(2), FixedPointFFT.log2Q16(x) / 65536.0, MAX_LOG2_ERROR);
+		}
+	}
+
+	/**
+	 * The log magnitudes of the integer pipeline must match the ones of the float pipeline
+	 * (window, real fft, AudioProcessingEngine.calcLogMagnitude()) for all windows and levels.
+	 */
+	@Test
+	public void testLogMagnitudeMatchesFloat() {
+		Random random = new Random(1);
+		for (String window: WindowFunctions.getWindowNames()) {
+			for (float amplitude: AMPLITUDES) {
+				short[] pcm = tone(amplitude, random);
+
+				FFT fft = new FFT(FFT_SIZE, FFTEngineFactory.ENGINE_RADIX2, LENGTH);
+				fft.setWindow(window, 8);
+				float[] samples = new float[LENGTH];
+				for (int i = 0; i < LENGTH; i++)
+					samples[i] = pcm[i] / 32768f;
+				fft.applyWindow(samples);
+				float[] re = new float[FFT_SIZE / 2];
+				float[] im = new float[FFT_SIZE / 2];
+				fft.packReal(samples, re, im);
+				fft.fftReal(re, im, LENGTH);
+				float[] expected = new float[FFT_SIZE / 2];
+				AudioProcessingEngine.calcLogMagnitude(re, im, expected, expected.length, FFT_SIZE);
+
+				FixedPointFFT fixedPointFFT = new FixedPointFFT(FFT_SIZE);
+				fixedPointFFT.setWindow(window, 8);
+				int[] fixedRe = new int[FFT_SIZE / 2];
+				int[] fixedIm = new int[FFT_SIZE / 2];
+				int exponent = fixedPointFFT.fftRealWindowed(pcm, LENGTH, fixedRe, fixedIm);
+				FixedPointFFT.calcSquaredMagnitude(fixedRe, fixedIm, fixedRe, fixedRe.length);
+				float[] mag = new float[FFT_SIZE / 2];
+				fixedPointFFT.calcLogMagnitude(fixedRe, exponent, mag, mag.length);
+
+				float peak = Float.NEGATIVE_INFINITY;
+				for (float value: expected)
+					peak = Math.max(peak, value);
+				double maxError = 0;
+				for (int i = 0; i < mag.length; i++) {
+					if(expected[i] > peak - 2)
+						maxError = Math.max(maxError, Math.abs(expected[i] - mag[i]));
+				}
+				assertEquals(window + ", amplitude " + amplitude, 0, maxError, MAX_LOG_MAGNITUDE_ERROR);
+			}
+		}
+	}
+
+	/**
+	 * calcLogMagnitudeBand() must return the same values as calcLogMagnitude() for the band.
+	 */
+	@Test
+	public void testLogMagnitudeBand() {
+		FixedPointFFT fixedPointFFT = new FixedPointFFT(FFT_SIZE);
+		int[] re = new int[FFT_SIZE / 2];
+		int[] im = new int[FFT_SIZE / 2];
+		int exponent = fixedPointFFT.fftRealWindowed(tone(0.5f, new Random(2)), LENGTH, re, im);
+		FixedPointFFT.calcSquaredMagnitude(re, im, re, re.length);
+		float[] mag = new float[FFT_SIZE / 2];
+		fixedPointFFT.calcLogMagnitude(re, exponent, mag, mag.length);
+
+		int start = 50;
+		int end = 2500;
+		float[] band = new float[end - start + 3];
+		fixedPointFFT.calcLogMagnitudeBand(re, exponent, band, start, end, 3);
+		float[] expected = new float[band.length];
+		System.arraycopy(mag, start, expected, 3, end - start);
+		assertArrayEquals(expected, band, 0f);
+	}
+
+	/**
+	 * @return tone of LENGTH samples (110 Hz at 8000 Hz with 6 harmonics) plus a little noise
+	 */
+	private static short[] tone(float amplitude, Random random) {
+		short[] samples = new short[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			double value = 0;
+			for (int h = 1; h <= 6; h++)
+				value += Math.sin(2 * Math.PI * 110 * h * i / 8000) / h;
+			value = amplitude * (value / 1.5 + random.nextGaussian() * 0.001);
+			samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * 32767)));
+		}
+		return samples;
+	}
+}
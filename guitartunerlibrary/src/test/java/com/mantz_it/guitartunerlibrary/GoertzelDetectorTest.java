@@ -0,0 +1,95 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Goertzel Detector Test</h1>
+ *
+ * Module:      GoertzelDetectorTest.java
+ * Description: Unit tests of the string detection with the Goertzel filter bank (GoertzelDetector).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class GoertzelDetectorTest {
+	private static final int SAMPLE_RATE = 8000;
+	private static final int LENGTH = 4096;
+	private static final float[] STRINGS = {82.41f, 110f, 146.83f, 196f, 246.94f, 329.63f};	// standard tuning
+	private static final float MAX_CENTS_ERROR = 1;		// measured: 0.42 cents (0.05 noise)
+	// tones between the strings (and not an octave of a string):
+	private static final float[] OTHER_TONES = {440f, 277.18f, 466.16f, 415.3f, 1000f};
+
+	@Test
+	public void testDetectsStrings() {
+		Random random = new Random(0);
+		GoertzelDetector detector = new GoertzelDetector(SAMPLE_RATE, STRINGS, 3);
+		for (float string: STRINGS) {
+			for (int cents = -40; cents <= 40; cents += 20) {
+				float frequency = (float) (string * Math.pow(2, cents / 1200.0));
+				float detected = detector.detect(tone(frequency, 6, 0.05, random), LENGTH);
+				String message = frequency + " Hz detected as " + detected + " Hz";
+				assertTrue(message, detected > 0);
+				assertEquals(message, 0, 1200 * Math.log(detected / frequency) / Math.log(2), MAX_CENTS_ERROR);
+			}
+		}
+	}
+
+	@Test
+	public void testRejectsOtherTones() {
+		Random random = new Random(1);
+		GoertzelDetector detector = new GoertzelDetector(SAMPLE_RATE, STRINGS, 3);
+		for (float frequency: OTHER_TONES) {
+			assertEquals(frequency + " Hz (sine)", 0, detector.detect(tone(frequency, 1, 0.01, random), LENGTH), 0);
+			assertEquals(frequency + " Hz (6 harmonics)", 0, detector.detect(tone(frequency, 6, 0.01, random), LENGTH), 0);
+		}
+	}
+
+	@Test
+	public void testRejectsNoise() {
+		Random random = new Random(2);
+		GoertzelDetector detector = new GoertzelDetector(SAMPLE_RATE, STRINGS, 3);
+		for (int i = 0; i < 100; i++)
+			assertEquals("noise " + i, 0, detector.detect(tone(0, 0, 1, random), LENGTH), 0);
+	}
+
+	/**
+	 * @param frequency		fundamental frequency (in Hz)
+	 * @param harmonics		number of harmonics (1/h amplitude, random phases; 0 for noise only)
+	 * @param noiseLevel	standard deviation of the white noise
+	 * @return hann windowed signal of LENGTH samples
+	 */
+	private static float[] tone(float frequency, int harmonics, double noiseLevel, Random random) {
+		float[] samples = new float[LENGTH];
+		for (int h = 1; h <= harmonics && h * frequency < SAMPLE_RATE / 2; h++) {
+			double phase = random.nextDouble() * 2 * Math.PI;
+			for (int i = 0; i < LENGTH; i++)
+				samples[i] += (float) (Math.sin(2 * Math.PI * h * frequency * i / SAMPLE_RATE + phase) / h);
+		}
+		for (int i = 0; i < LENGTH; i++) {
+			samples[i] += (float) (random.nextGaussian() * noiseLevel);
+			samples[i] *= (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (LENGTH - 1)));
+		}
+		return samples;
+	}
+}
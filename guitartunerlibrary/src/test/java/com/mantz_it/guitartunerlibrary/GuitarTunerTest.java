@@ -0,0 +1,146 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * <h1>Wear Guitar Tuner - Guitar Tuner Test</h1>
+ *
+ * Module:      GuitarTunerTest.java
+ * Description: Unit tests of the harmonic product spectrum of the GuitarTuner.
+ *              Runs on the JVM (see testOptions in build.gradle).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class GuitarTunerTest {
+	private static final float MAX_HPS_ERROR = 1e-4f;	// the band version sums up the harmonics in a different order
+
+	/**
+	 * calcHarmonicProductSpectrumBand() must match the dense calcHarmonicProductSpectrum() inside
+	 * the band (also in place), find the same max and save the magnitudes around it.
+	 */
+	@Test
+	public void testHarmonicProductSpectrumBandMatchesDense() {
+		GuitarTuner tuner = new GuitarTuner(null, null);
+		Random random = new Random(0);
+		for (int trial = 0; trial < 500; trial++) {
+			int length = 64 + random.nextInt(4000);
+			int binOffset = random.nextInt(3) == 0 ? 0 : random.nextInt(500);
+			int order = 1 + random.nextInt(6);
+			int lowIndex = random.nextInt(length / 4 + 1);
+			int highIndex = lowIndex + random.nextInt(length - lowIndex + 1);
+
+			// spectrum (in dB) that is limited to the band lowIndex ... highIndex-1:
+			float[] mag = new float[length];
+			Arrays.fill(mag, Float.NEGATIVE_INFINITY);
+			for (int i = lowIndex; i < highIndex; i++)
+				mag[i] = (float) (random.nextGaussian() * 2 - 5);
+
+			float[] dense = new float[length];
+			tuner.calcHarmonicProductSpectrum(mag, dense, binOffset, order);
+			int denseMax = 0;
+			for (int i = 1; i < length; i++) {
+				if(dense[i] > dense[denseMax])
+					denseMax = i;
+			}
+
+			// same band as in GuitarTuner.processFFTSamples():
+			int start = lowIndex;
+			int end = Math.max(start, (highIndex + binOffset) / (order + 1) - binOffset);
+			float[] band = new float[length];
+			Arrays.fill(band, Float.NEGATIVE_INFINITY);
+			float[] peakMag = new float[5];
+			int bandMax = tuner.calcHarmonicProductSpectrumBand(mag, band, binOffset, order, start, end, peakMag);
+
+			float[] inPlace = mag.clone();
+			float[] inPlacePeakMag = new float[5];
+			int inPlaceMax = tuner.calcHarmonicProductSpectrumBand(inPlace, inPlace, binOffset, order, start, end, inPlacePeakMag);
+			for (int i = end; i < length; i++)
+				inPlace[i] = Float.NEGATIVE_INFINITY;
+
+			String message = "trial " + trial + " (order " + order + ", binOffset " + binOffset + ")";
+			for (int i = 0; i < length; i++) {
+				if(Float.isInfinite(dense[i])) {
+					assertEquals(message + " bin " + i, Float.NEGATIVE_INFINITY, band[i], 0f);
+					assertEquals(message + " bin " + i + " (in place)", Float.NEGATIVE_INFINITY, inPlace[i], 0f);
+				} else {
+					assertEquals(message + " bin " + i, dense[i], band[i], MAX_HPS_ERROR);
+					assertEquals(message + " bin " + i + " (in place)", dense[i], inPlace[i], MAX_HPS_ERROR);
+				}
+			}
+
+			if(!Float.isInfinite(dense[denseMax])) {
+				assertEquals(message + " max", denseMax, bandMax);
+				assertEquals(message + " max (in place)", denseMax, inPlaceMax);
+				for (int k = 0; k < peakMag.length; k++) {
+					int index = denseMax - 2 + k;
+					float expected = index >= 0 && index < length ? mag[index] : Float.NEGATIVE_INFINITY;
+					assertEquals(message + " peakMag[" + k + "]", expected, peakMag[k], 0f);
+				}
+				assertArrayEquals(message + " peakMag (in place)", peakMag, inPlacePeakMag, 0f);
+			}
+		}
+	}
+
+	/**
+	 * processFFTSamples() must detect the same frequency with the hps in a separate buffer and in
+	 * place (for every hps order).
+	 */
+	@Test
+	public void testHPSInPlace() {
+		GuitarTuner.GuitarTunerCallbackInterface callback = new GuitarTuner.GuitarTunerCallbackInterface() {
+			@Override
+			public boolean process(GuitarTuner guitarTuner) {
+				return true;
+			}
+		};
+		Random random = new Random(1);
+		for (int order = 1; order <= 5; order++) {
+			GuitarTuner buffered = new GuitarTuner(callback, null);
+			GuitarTuner inPlace = new GuitarTuner(callback, null);
+			buffered.setHPSOrder(order);
+			inPlace.setHPSOrder(order);
+			inPlace.setHPSInPlace(true);
+			for (int trial = 0; trial < 20; trial++) {
+				// harmonic tone (1 Hz per bin) with a random fundamental between the bins:
+				float fundamental = 80 + random.nextFloat() * 300;
+				float[] mag = new float[8192];
+				for (int i = 0; i < mag.length; i++) {
+					double level = 1e-4 * (1 + random.nextFloat());
+					for (int h = 1; h <= order + 1; h++)
+						level += Math.exp(-0.5 * Math.pow((i - h * fundamental) / 1.5, 2)) / h;
+					mag[i] = (float) Math.log10(level);
+				}
+				String message = "order " + order + ", " + fundamental + " Hz";
+				buffered.processFFTSamples(mag.clone(), 0, 1, 10);
+				inPlace.processFFTSamples(mag, 0, 1, 10);
+				assertEquals(message, fundamental, buffered.getStrongestFrequency(), 0.5f);
+				assertEquals(message, buffered.getStrongestFrequency(), inPlace.getStrongestFrequency(), 0f);
+				assertNull(inPlace.getMag());	// overwritten by the hps
+			}
+		}
+	}
+}
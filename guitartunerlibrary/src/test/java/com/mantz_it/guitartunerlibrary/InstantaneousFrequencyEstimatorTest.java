@@ -0,0 +1,166 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Instantaneous Frequency Estimator Test</h1>
+ *
+ * Module:      InstantaneousFrequencyEstimatorTest.java
+ * Description: Unit tests of the refinement of a peak frequency with the phase
+ *              difference between two frames (InstantaneousFrequencyEstimator).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class InstantaneousFrequencyEstimatorTest {
+	private static final int SAMPLE_RATE = 8000;
+	private static final int WINDOW_LENGTH = 4096;	// hann window; the spectrum is not zero padded
+	private static final int HOP = 1024;			// unambiguous range: +- SAMPLE_RATE / (2 * HOP) = +- 3.9 Hz
+	private static final int BINS = 9;				// number of bins around the peak in the spectra
+	// max. deviation (in cents) of the refined frequency of a pure tone (measured: 0, the float result is exact):
+	private static final float MAX_CENTS_ERROR = 0.01f;
+	private static final float[] FREQUENCIES = {82.41f, 83.5f, 110.37f, 146.83f, 247.94f, 329.63f, 1000.3f};
+	private static final float[] ESTIMATE_ERRORS = {-1.5f, -0.5f, 0, 0.7f, 1.5f};	// error (in Hz) of the coarse estimate
+
+	/**
+	 * Spectrum of a hann windowed tone around its peak (a few bins of a dft)
+	 */
+	private static class Spectrum {
+		float[] re = new float[BINS];
+		float[] im = new float[BINS];
+		int firstBin;
+
+		/**
+		 * @param frequency		frequency of the tone (in Hz)
+		 * @param amplitude		amplitude of the tone
+		 * @param start			sample number of the first sample of the window
+		 */
+		Spectrum(float frequency, float amplitude, long start) {
+			firstBin = peakBin(frequency) - BINS / 2;
+			for (int k = 0; k < BINS; k++) {
+				double sumRe = 0;
+				double sumIm = 0;
+				for (int n = 0; n < WINDOW_LENGTH; n++) {
+					double window = 0.5 - 0.5 * Math.cos(2 * Math.PI * n / (WINDOW_LENGTH - 1));
+					double x = window * amplitude * Math.sin(2 * Math.PI * frequency * (start + n) / SAMPLE_RATE);
+					double angle = -2 * Math.PI * (firstBin + k) * n / WINDOW_LENGTH;
+					sumRe += x * Math.cos(angle);
+					sumIm += x * Math.sin(angle);
+				}
+				re[k] = (float) sumRe;
+				im[k] = (float) sumIm;
+			}
+		}
+
+		void passTo(InstantaneousFrequencyEstimator estimator, long samplePosition) {
+			estimator.setSpectrum(re, im, firstBin, samplePosition, SAMPLE_RATE, WINDOW_LENGTH);
+		}
+	}
+
+	private static int peakBin(float frequency) {
+		return Math.round(frequency * WINDOW_LENGTH / SAMPLE_RATE);
+	}
+
+	private static double cents(float frequency, float reference) {
+		return 1200 * Math.log(frequency / reference) / Math.log(2);
+	}
+
+	@Test
+	public void testRefine() {
+		for (float frequency: FREQUENCIES) {
+			Spectrum previous = new Spectrum(frequency, 1000, 0);
+			Spectrum current = new Spectrum(frequency, 1000, HOP);
+			for (float estimateError: ESTIMATE_ERRORS) {
+				InstantaneousFrequencyEstimator estimator = new InstantaneousFrequencyEstimator();
+				previous.passTo(estimator, WINDOW_LENGTH);
+				assertEquals(frequency + estimateError, estimator.refine(peakBin(frequency), frequency + estimateError), 0);
+				assertFalse(estimator.isRefined());		// no previous frame
+
+				current.passTo(estimator, WINDOW_LENGTH + HOP);
+				float refined = estimator.refine(peakBin(frequency), frequency + estimateError);
+				String message = frequency + " Hz (estimate " + (frequency + estimateError) + " Hz) refined to " + refined + " Hz";
+				assertTrue(message, estimator.isRefined());
+				assertEquals(message, 0, cents(refined, frequency), MAX_CENTS_ERROR);
+			}
+		}
+	}
+
+	@Test
+	public void testNeighbourBin() {
+		// the peak bin of the current frame is next to the one of the previous frame (the candidate
+		// bins around the previous peak are kept):
+		float frequency = 110.37f;
+		InstantaneousFrequencyEstimator estimator = new InstantaneousFrequencyEstimator();
+		new Spectrum(frequency, 1000, 0).passTo(estimator, WINDOW_LENGTH);
+		estimator.refine(peakBin(frequency) - 1, frequency - 2);
+		new Spectrum(frequency, 1000, HOP).passTo(estimator, WINDOW_LENGTH + HOP);
+		float refined = estimator.refine(peakBin(frequency), frequency + 1);
+		assertTrue(estimator.isRefined());
+		assertEquals(0, cents(refined, frequency), MAX_CENTS_ERROR);
+	}
+
+	@Test
+	public void testNotRefined() {
+		float frequency = 146.83f;
+		Spectrum previous = new Spectrum(frequency, 1000, 0);
+		Spectrum current = new Spectrum(frequency, 1000, HOP);
+		int bin = peakBin(frequency);
+
+		// reset() forgets the previous frame:
+		InstantaneousFrequencyEstimator estimator = new InstantaneousFrequencyEstimator();
+		previous.passTo(estimator, WINDOW_LENGTH);
+		estimator.refine(bin, frequency);
+		estimator.reset();
+		current.passTo(estimator, WINDOW_LENGTH + HOP);
+		assertEquals(147, estimator.refine(bin, 147), 0);
+		assertFalse(estimator.isRefined());
+
+		// no spectrum of the current frame (e.g. a detection mode without fft):
+		assertEquals(147, estimator.refine(bin, 147), 0);
+		assertFalse(estimator.isRefined());
+
+		// the frames don't overlap (gap in the signal):
+		estimator = new InstantaneousFrequencyEstimator();
+		previous.passTo(estimator, WINDOW_LENGTH);
+		estimator.refine(bin, frequency);
+		current.passTo(estimator, 3 * WINDOW_LENGTH);
+		assertEquals(147, estimator.refine(bin, 147), 0);
+		assertFalse(estimator.isRefined());
+
+		// the level rose by more than 6 dB (onset between the frames):
+		estimator = new InstantaneousFrequencyEstimator();
+		new Spectrum(frequency, 100, 0).passTo(estimator, WINDOW_LENGTH);
+		estimator.refine(bin, frequency);
+		current.passTo(estimator, WINDOW_LENGTH + HOP);
+		assertEquals(147, estimator.refine(bin, 147), 0);
+		assertFalse(estimator.isRefined());
+
+		// peak far away from the previous one:
+		estimator = new InstantaneousFrequencyEstimator();
+		new Spectrum(2 * frequency, 1000, 0).passTo(estimator, WINDOW_LENGTH);
+		estimator.refine(peakBin(2 * frequency), 2 * frequency);
+		current.passTo(estimator, WINDOW_LENGTH + HOP);
+		assertEquals(147, estimator.refine(bin, 147), 0);
+		assertFalse(estimator.isRefined());
+	}
+}
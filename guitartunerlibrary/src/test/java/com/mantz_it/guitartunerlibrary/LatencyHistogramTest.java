@@ -0,0 +1,108 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Latency Histogram Test</h1>
+ *
+ * Module:      LatencyHistogramTest.java
+ * Description: Unit tests of the per-stage latency histograms (LatencyHistogram,
+ *              LatencyMonitor).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class LatencyHistogramTest {
+	// 8 buckets per octave: the center of a bucket is within 1/16 of every value in it
+	private static final double MAX_RELATIVE_ERROR = 1.0 / 16;
+	private static final double[] PERCENTILES = {0, 1, 50, 90, 95, 99, 99.9, 100};
+
+	@Test
+	public void testPercentiles() {
+		Random random = new Random(0);
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] latencies = new long[100000];
+		long sum = 0;
+		for (int i = 0; i < latencies.length; i++) {
+			// log-uniform between 1 us and 100 ms, like the stages of the pipeline:
+			latencies[i] = (long) Math.exp(Math.log(1000) + random.nextDouble() * Math.log(100000));
+			histogram.record(latencies[i]);
+			sum += latencies[i];
+		}
+		Arrays.sort(latencies);
+		for (double percentile: PERCENTILES) {
+			long expected = latencies[(int) Math.max(0, Math.ceil(percentile / 100 * latencies.length) - 1)];
+			assertEquals("p" + percentile, expected, histogram.getPercentile(percentile), expected * MAX_RELATIVE_ERROR);
+		}
+		assertEquals(latencies.length, histogram.getCount());
+		assertEquals(sum / latencies.length, histogram.getMean());
+		assertEquals(latencies[latencies.length - 1], histogram.getMax());
+		assertTrue(histogram.getPercentile(100) <= histogram.getMax());	// never above the max
+	}
+
+	@Test
+	public void testSmallValues() {
+		// values below 16 ns have buckets of their own:
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 16; i++)
+			histogram.record(i);
+		for (int i = 0; i < 16; i++)
+			assertEquals(i, histogram.getPercentile((i + 1) * 100.0 / 16));
+	}
+
+	@Test
+	public void testEdgeCases() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));	// nothing recorded
+		assertEquals(0, histogram.getMean());
+		histogram.record(-5);		// e.g. a timestamp of another clock
+		assertEquals(0, histogram.getMax());
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getMax());
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100), Long.MAX_VALUE * MAX_RELATIVE_ERROR);	// highest octave
+		assertEquals(0, histogram.getPercentile(50));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		histogram.record(1000000);
+		assertEquals(1000000, histogram.getPercentile(1), 1000000 * MAX_RELATIVE_ERROR);
+	}
+
+	@Test
+	public void testMonitorStages() {
+		LatencyMonitor latencyMonitor = new LatencyMonitor();
+		for (int i = 1; i <= 100; i++) {
+			latencyMonitor.record(LatencyMonitor.STAGE_FFT, i * 1000);
+			latencyMonitor.record(LatencyMonitor.STAGE_HPS, 5000);
+		}
+		assertEquals(50000, latencyMonitor.getPercentile(LatencyMonitor.STAGE_FFT, 50), 50000 * MAX_RELATIVE_ERROR);
+		assertEquals(5000, latencyMonitor.getPercentile(LatencyMonitor.STAGE_HPS, 99), 5000 * MAX_RELATIVE_ERROR);
+		assertEquals(0, latencyMonitor.getHistogram(LatencyMonitor.STAGE_DRAW).getCount());
+		assertEquals("fft", LatencyMonitor.getStageName(LatencyMonitor.STAGE_FFT));
+		latencyMonitor.reset();
+		assertEquals(0, latencyMonitor.getHistogram(LatencyMonitor.STAGE_FFT).getCount());
+	}
+}
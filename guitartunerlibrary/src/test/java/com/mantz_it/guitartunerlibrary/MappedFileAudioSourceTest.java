@@ -0,0 +1,218 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Mapped File Audio Source Test</h1>
+ *
+ * Module:      MappedFileAudioSourceTest.java
+ * Description: Unit tests of the WAV header parsing of the MappedFileAudioSource
+ *              (temporary files with hand made headers).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class MappedFileAudioSourceTest {
+	private static final short[] SAMPLES = {1, -2, 3, -4, 5, -6, 7, -8};
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("MappedFileAudioSourceTest", ".wav");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testMono() throws IOException {
+		writeFile(wav(fmtChunk(1, 16, 8000, 1), dataChunk(SAMPLES, SAMPLES.length * 2)));
+		MappedFileAudioSource source = new MappedFileAudioSource(file, false);
+		assertTrue(source.open());
+		assertEquals(8000, source.getSampleRate());
+		assertArrayEquals(SAMPLES, readAll(source));
+		source.close();
+	}
+
+	@Test
+	public void testStereoUsesFirstChannel() throws IOException {
+		short[] interleaved = new short[SAMPLES.length * 2];
+		for (int i = 0; i < SAMPLES.length; i++) {
+			interleaved[2 * i] = SAMPLES[i];
+			interleaved[2 * i + 1] = 1000;
+		}
+		writeFile(wav(fmtChunk(1, 16, 44100, 2), dataChunk(interleaved, interleaved.length * 2)));
+		MappedFileAudioSource source = new MappedFileAudioSource(file, false);
+		assertTrue(source.open());
+		assertEquals(44100, source.getSampleRate());
+		assertArrayEquals(SAMPLES, readAll(source));
+	}
+
+	@Test
+	public void testOddChunkBeforeData() throws IOException {
+		// odd sized chunks are followed by a pad byte:
+		ByteBuffer list = chunk(0x5453494c, 3, 3);	// 'LIST'
+		writeFile(wav(fmtChunk(1, 16, 8000, 1), list, dataChunk(SAMPLES, SAMPLES.length * 2)));
+		MappedFileAudioSource source = new MappedFileAudioSource(file, false);
+		assertTrue(source.open());
+		assertArrayEquals(SAMPLES, readAll(source));
+	}
+
+	@Test
+	public void testDataSizeIsClampedToTheFile() throws IOException {
+		// e.g. a recording that was not finalized (size 0xFFFFFFFF is negative as a signed int):
+		writeFile(wav(fmtChunk(1, 16, 8000, 1), dataChunk(SAMPLES, 0xFFFFFFFF)));
+		MappedFileAudioSource source = new MappedFileAudioSource(file, false);
+		assertTrue(source.open());
+		assertArrayEquals(SAMPLES, readAll(source));
+	}
+
+	@Test
+	public void testChunkSizeBeyondTheFile() throws IOException {
+		// the size of the unknown chunk exceeds the file (negative as a signed int):
+		ByteBuffer junk = chunk(0x4b4e554a, 0x80000000, 4);	// 'JUNK'
+		writeFile(wav(fmtChunk(1, 16, 8000, 1), junk, dataChunk(SAMPLES, SAMPLES.length * 2)));
+		assertFalse(new MappedFileAudioSource(file, false).open());
+	}
+
+	@Test
+	public void testShortFmtChunk() throws IOException {
+		ByteBuffer fmt = chunk(0x20746d66, 8, 8);	// 'fmt ' without the sample rate and bits per sample
+		fmt.putShort(8, (short) 1);
+		fmt.putShort(10, (short) 1);
+		writeFile(wav(fmt, dataChunk(SAMPLES, SAMPLES.length * 2)));
+		assertFalse(new MappedFileAudioSource(file, false).open());
+	}
+
+	@Test
+	public void testUnsupportedFormat() throws IOException {
+		writeFile(wav(fmtChunk(1, 8, 8000, 1), dataChunk(SAMPLES, SAMPLES.length * 2)));
+		assertFalse(new MappedFileAudioSource(file, false).open());
+		writeFile(wav(fmtChunk(3, 16, 8000, 1), dataChunk(SAMPLES, SAMPLES.length * 2)));	// float
+		assertFalse(new MappedFileAudioSource(file, false).open());
+	}
+
+	@Test
+	public void testNoDataChunk() throws IOException {
+		writeFile(wav(fmtChunk(1, 16, 8000, 1)));
+		assertFalse(new MappedFileAudioSource(file, false).open());
+	}
+
+	@Test
+	public void testNoWavFile() throws IOException {
+		writeFile(dataChunk(SAMPLES, SAMPLES.length * 2));
+		assertFalse(new MappedFileAudioSource(file, false).open());
+	}
+
+	@Test
+	public void testRaw() throws IOException {
+		ByteBuffer raw = ByteBuffer.allocate(SAMPLES.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+		raw.asShortBuffer().put(SAMPLES);
+		writeFile(raw);
+		MappedFileAudioSource source = new MappedFileAudioSource(file, 16000, false);
+		assertTrue(source.open());
+		assertEquals(16000, source.getSampleRate());
+		assertArrayEquals(SAMPLES, readAll(source));
+	}
+
+	/**
+	 * @return all samples of the source (reads in small blocks)
+	 */
+	private static short[] readAll(AudioSource source) {
+		short[] buffer = new short[1024];
+		int length = 0;
+		int count;
+		while ((count = source.read(buffer, length, 3)) > 0)
+			length += count;
+		short[] result = new short[length];
+		System.arraycopy(buffer, 0, result, 0, length);
+		return result;
+	}
+
+	/**
+	 * @param id		chunk id (little endian int)
+	 * @param size		size that is written into the chunk header
+	 * @param length	actual number of bytes after the header (zeros)
+	 * @return chunk with header (including the pad byte if length is odd)
+	 */
+	private static ByteBuffer chunk(int id, int size, int length) {
+		ByteBuffer chunk = ByteBuffer.allocate(8 + length + (length & 1)).order(ByteOrder.LITTLE_ENDIAN);
+		chunk.putInt(0, id);
+		chunk.putInt(4, size);
+		return chunk;
+	}
+
+	private static ByteBuffer fmtChunk(int format, int bitsPerSample, int sampleRate, int channels) {
+		ByteBuffer fmt = chunk(0x20746d66, 16, 16);	// 'fmt '
+		fmt.putShort(8, (short) format);
+		fmt.putShort(10, (short) channels);
+		fmt.putInt(12, sampleRate);
+		fmt.putInt(16, sampleRate * channels * bitsPerSample / 8);
+		fmt.putShort(20, (short) (channels * bitsPerSample / 8));
+		fmt.putShort(22, (short) bitsPerSample);
+		return fmt;
+	}
+
+	private static ByteBuffer dataChunk(short[] samples, int size) {
+		ByteBuffer data = chunk(0x61746164, size, samples.length * 2);	// 'data'
+		for (int i = 0; i < samples.length; i++)
+			data.putShort(8 + 2 * i, samples[i]);
+		return data;
+	}
+
+	/**
+	 * @return 'RIFF' header with 'WAVE' type followed by the chunks
+	 */
+	private static ByteBuffer wav(ByteBuffer... chunks) {
+		int length = 12;
+		for (ByteBuffer chunk: chunks)
+			length += chunk.capacity();
+		ByteBuffer wav = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		wav.putInt(0x46464952);		// 'RIFF'
+		wav.putInt(length - 8);
+		wav.putInt(0x45564157);		// 'WAVE'
+		for (ByteBuffer chunk: chunks)
+			wav.put(chunk.array());
+		return wav;
+	}
+
+	private void writeFile(ByteBuffer content) throws IOException {
+		FileOutputStream outputStream = new FileOutputStream(file);
+		try {
+			outputStream.write(content.array());
+		} finally {
+			outputStream.close();
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Noise Gate Test</h1>
+ *
+ * Module:      NoiseGateTest.java
+ * Description: Unit tests of the adaptive noise gate (NoiseGate).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class NoiseGateTest {
+	private static final int HOP_LENGTH = 1024;
+	private static final float HOP_DURATION = HOP_LENGTH / 8000f;	// 0.128 s at 8 kHz
+
+	/**
+	 * @param rms	rms of the hop (in 16-bit units)
+	 * @return hop of alternating samples +-rms (its rms is exactly rms)
+	 */
+	private static short[] hop(int rms) {
+		short[] samples = new short[HOP_LENGTH];
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = (short) (i % 2 == 0 ? rms : -rms);
+		return samples;
+	}
+
+	/**
+	 * Feeds the hops that seed the noise floor after a reset (3 hops of 0.128 s exceed
+	 * MAX_SEED_TIME)
+	 *
+	 * @param noiseGate		gate (just created or reset)
+	 * @param rms			rms of the room noise
+	 */
+	private static void seed(NoiseGate noiseGate, int rms) {
+		for (int i = 0; i < 3; i++)
+			assertFalse("seed hop " + i, noiseGate.process(hop(rms), HOP_LENGTH, HOP_DURATION));
+	}
+
+	@Test
+	public void testSeed() {
+		NoiseGate noiseGate = new NoiseGate();
+		int[] seedLevels = {300, 100, 5000};	// a loud hop while seeding doesn't open the gate
+		for (int rms: seedLevels)
+			assertFalse(noiseGate.process(hop(rms), HOP_LENGTH, HOP_DURATION));
+		assertEquals(100, noiseGate.getNoiseFloor(), 0.01f);	// min. rms of the seed hops
+
+		noiseGate.reset();
+		assertFalse(noiseGate.isOpen());
+		seed(noiseGate, 0);
+		assertEquals(8, noiseGate.getNoiseFloor(), 0);	// limited to MIN_NOISE_FLOOR
+		assertFalse(noiseGate.process(hop(30), HOP_LENGTH, HOP_DURATION));	// < 12 dB above the floor
+		assertTrue(noiseGate.process(hop(40), HOP_LENGTH, HOP_DURATION));
+	}
+
+	@Test
+	public void testOpenHoldClose() {
+		NoiseGate noiseGate = new NoiseGate();
+		seed(noiseGate, 100);
+		assertFalse(noiseGate.process(hop(390), HOP_LENGTH, HOP_DURATION));	// < 12 dB above the floor
+		assertTrue(noiseGate.process(hop(500), HOP_LENGTH, HOP_DURATION));
+		assertEquals(500, noiseGate.getRms(), 0.01f);
+
+		// between the close and the open level the gate stays open (hysteresis):
+		for (int i = 0; i < 10; i++)
+			assertTrue("hop " + i, noiseGate.process(hop(300), HOP_LENGTH, HOP_DURATION));
+		// the note rose the noise floor only slowly:
+		assertTrue(noiseGate.getNoiseFloor() < 150);
+
+		// below the close level the gate is held open for 0.5 s (3 hops of 0.128 s):
+		for (int i = 0; i < 3; i++)
+			assertTrue("hold hop " + i, noiseGate.process(hop(100), HOP_LENGTH, HOP_DURATION));
+		assertFalse(noiseGate.process(hop(100), HOP_LENGTH, HOP_DURATION));
+		assertEquals(100, noiseGate.getNoiseFloor(), 0.01f);	// follows the rms quickly downwards
+	}
+
+	@Test
+	public void testRisingNoiseFloor() {
+		NoiseGate noiseGate = new NoiseGate();
+		seed(noiseGate, 100);
+		// the room gets louder by 9.5 dB. The gate doesn't open and the noise floor follows:
+		for (int i = 0; i < 100; i++)
+			assertFalse("hop " + i, noiseGate.process(hop(300), HOP_LENGTH, HOP_DURATION));
+		assertEquals(300, noiseGate.getNoiseFloor(), 1);
+		assertFalse(noiseGate.process(hop(1100), HOP_LENGTH, HOP_DURATION));
+		assertTrue(noiseGate.process(hop(1500), HOP_LENGTH, HOP_DURATION));
+	}
+
+	@Test
+	public void testSumOfSquares() {
+		NoiseGate samplesGate = new NoiseGate();
+		NoiseGate sumGate = new NoiseGate();
+		int[] levels = {50, 60, 40, 55, 300, 1000, 700, 100, 50, 50, 50, 50, 50};
+		for (int rms: levels) {
+			short[] samples = hop(rms);
+			long sumOfSquares = 0;
+			for (short sample: samples)
+				sumOfSquares += sample * sample;
+			assertEquals(samplesGate.process(samples, HOP_LENGTH, HOP_DURATION),
+					sumGate.process(sumOfSquares, HOP_LENGTH, HOP_DURATION));
+			assertEquals(samplesGate.getRms(), sumGate.getRms(), 0);
+			assertEquals(samplesGate.getNoiseFloor(), sumGate.getNoiseFloor(), 0);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * <h1>Wear Guitar Tuner - Onset Detector Test</h1>
+ *
+ * Module:      OnsetDetectorTest.java
+ * Description: Unit tests of the onset detector that triggers the analysis after a
+ *              pluck (OnsetDetector).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class OnsetDetectorTest {
+	private static final int SAMPLE_RATE = 8000;
+	private static final int HOP_LENGTH = 1024;		// multiple of BLOCK_SIZE: the onsets are found at block boundaries
+	private static final float NOISE_FLOOR = 10;	// rms of the background noise (16-bit units)
+	private static final float DECAY_TIME = 0.5f;	// time constant (s) of the decay of a plucked string
+
+	/**
+	 * @param length		number of samples
+	 * @param plucks		sample numbers at which a string is plucked
+	 * @param amplitude		amplitude of the plucks (16-bit units)
+	 * @return background noise with decaying 110 Hz tones starting at the plucks
+	 */
+	private static short[] signal(int length, int[] plucks, float amplitude) {
+		Random random = new Random(0);
+		short[] samples = new short[length];
+		for (int i = 0; i < length; i++) {
+			double value = random.nextGaussian() * NOISE_FLOOR;
+			for (int pluck: plucks) {
+				if(i >= pluck) {
+					double t = (i - pluck) / (double) SAMPLE_RATE;
+					value += amplitude * Math.exp(-t / DECAY_TIME) * Math.sin(2 * Math.PI * 110 * t);
+				}
+			}
+			samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+		}
+		return samples;
+	}
+
+	/**
+	 * Feeds the signal hop by hop into the detector
+	 *
+	 * @return number of hops in which an onset was detected
+	 */
+	private static int process(OnsetDetector onsetDetector, short[] samples) {
+		int onsetHops = 0;
+		short[] hop = new short[HOP_LENGTH];
+		for (int start = 0; start + HOP_LENGTH <= samples.length; start += HOP_LENGTH) {
+			System.arraycopy(samples, start, hop, 0, HOP_LENGTH);
+			if(onsetDetector.process(hop, HOP_LENGTH, SAMPLE_RATE, NOISE_FLOOR))
+				onsetHops++;
+		}
+		return onsetHops;
+	}
+
+	@Test
+	public void testSinglePluck() {
+		OnsetDetector onsetDetector = new OnsetDetector();
+		assertEquals(1, process(onsetDetector, signal(4 * SAMPLE_RATE, new int[] {4096}, 10000)));
+		assertEquals(1, onsetDetector.getOnsetCount());		// the decaying tone doesn't trigger again
+		assertEquals(4096, onsetDetector.getLastOnsetSample());
+	}
+
+	@Test
+	public void testSeveralPlucks() {
+		OnsetDetector onsetDetector = new OnsetDetector();
+		int[] plucks = {2048, 10240, 18432};	// 1 s apart: the previous tone decayed by 17 dB
+		process(onsetDetector, signal(3 * SAMPLE_RATE, plucks, 8000));
+		assertEquals(plucks.length, onsetDetector.getOnsetCount());
+		assertEquals(18432, onsetDetector.getLastOnsetSample());
+	}
+
+	@Test
+	public void testMinOnsetInterval() {
+		OnsetDetector onsetDetector = new OnsetDetector();
+		// the second pluck comes 0.064 s after the first one (< MIN_ONSET_INTERVAL):
+		process(onsetDetector, signal(2 * SAMPLE_RATE, new int[] {4096, 4608}, 8000));
+		assertEquals(1, onsetDetector.getOnsetCount());
+		assertEquals(4096, onsetDetector.getLastOnsetSample());
+	}
+
+	@Test
+	public void testQuietPluck() {
+		OnsetDetector onsetDetector = new OnsetDetector();
+		// rms of the tone is 7 dB above the noise floor (at least 12 dB are needed):
+		assertEquals(0, process(onsetDetector, signal(2 * SAMPLE_RATE, new int[] {4096}, 30)));
+		assertEquals(-1, onsetDetector.getLastOnsetSample());
+	}
+
+	@Test
+	public void testReset() {
+		OnsetDetector onsetDetector = new OnsetDetector();
+		process(onsetDetector, signal(SAMPLE_RATE, new int[] {2048}, 8000));
+		assertEquals(1, onsetDetector.getOnsetCount());
+		onsetDetector.reset();
+		assertEquals(0, onsetDetector.getOnsetCount());
+		assertEquals(-1, onsetDetector.getLastOnsetSample());
+		// the sample numbers start at 0 again:
+		process(onsetDetector, signal(SAMPLE_RATE, new int[] {3072}, 8000));
+		assertEquals(3072, onsetDetector.getLastOnsetSample());
+		assertFalse(onsetDetector.process(new short[HOP_LENGTH], HOP_LENGTH, SAMPLE_RATE, NOISE_FLOOR));
+	}
+}
@@ -0,0 +1,175 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Peak List Pitch Detector Test</h1>
+ *
+ * Module:      PeakListPitchDetectorTest.java
+ * Description: Unit tests of the harmonic matching of the strongest spectral peaks
+ *              (PeakListPitchDetector).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class PeakListPitchDetectorTest {
+	private static final int SPECTRUM_LENGTH = 4096;	// 1 Hz per bin
+	private static final float MIN_FREQUENCY = 50;
+	private static final float MAX_FREQUENCY = 2500;
+	private static final float PEAK_WIDTH = 1.5f;		// standard deviation (in bins) of the gaussian peaks
+	// max. deviation (in cents) of the detected frequency from the fundamental (measured: 0.0047 cents):
+	private static final float MAX_CENTS_ERROR = 0.05f;
+	private static final float[] FUNDAMENTALS = {82.41f, 110.6f, 146.83f, 196.2f, 246.94f, 329.63f};
+
+	/**
+	 * @param fundamental	fundamental frequency (in Hz)
+	 * @param amplitudes	amplitudes of the fundamental, the 2nd harmonic, ... (0 = missing)
+	 * @param noiseLevel	amplitude of the noise between the peaks
+	 * @param random		random generator of the noise
+	 * @return log magnitude spectrum (1 Hz per bin) of the harmonic tone
+	 */
+	private static float[] spectrum(float fundamental, float[] amplitudes, float noiseLevel, Random random) {
+		float[] mag = new float[SPECTRUM_LENGTH];
+		for (int i = 0; i < mag.length; i++) {
+			double level = noiseLevel * (0.5 + random.nextDouble());
+			for (int h = 1; h <= amplitudes.length; h++)
+				level += amplitudes[h - 1] * Math.exp(-0.5 * Math.pow((i - h * fundamental) / PEAK_WIDTH, 2));
+			mag[i] = (float) Math.log10(level);
+		}
+		return mag;
+	}
+
+	private static double cents(float frequency, float reference) {
+		return 1200 * Math.log(frequency / reference) / Math.log(2);
+	}
+
+	private static void assertDetects(String message, float fundamental, PeakListPitchDetector detector, float[] mag) {
+		float detected = detector.detect(mag, 0, 1);
+		message += ": " + fundamental + " Hz detected as " + detected + " Hz";
+		assertTrue(message, detected > 0);
+		assertEquals(message, 0, cents(detected, fundamental), MAX_CENTS_ERROR);
+		assertEquals(message, 0, cents(detector.getCandidateFrequency(0), fundamental), 1200 * 0.03);	// within TOLERANCE
+	}
+
+	@Test
+	public void testHarmonicTones() {
+		Random random = new Random(0);
+		PeakListPitchDetector detector = new PeakListPitchDetector(PeakListPitchDetector.DEFAULT_MAX_PEAKS, MIN_FREQUENCY, MAX_FREQUENCY);
+		float[] amplitudes = {1, 0.5f, 0.33f, 0.25f, 0.2f, 0.17f};
+		for (float fundamental: FUNDAMENTALS)
+			assertDetects("harmonic tone", fundamental, detector, spectrum(fundamental, amplitudes, 1e-4f, random));
+	}
+
+	@Test
+	public void testOctaveCases() {
+		Random random = new Random(1);
+		PeakListPitchDetector detector = new PeakListPitchDetector(PeakListPitchDetector.DEFAULT_MAX_PEAKS, MIN_FREQUENCY, MAX_FREQUENCY);
+		for (float fundamental: FUNDAMENTALS) {
+			// missing fundamental (e.g. the low E on a small speaker):
+			assertDetects("missing fundamental", fundamental, detector,
+					spectrum(fundamental, new float[] {0, 1, 0.8f, 0.6f, 0.4f, 0.3f}, 1e-4f, random));
+			// 2nd harmonic much stronger than the fundamental:
+			assertDetects("strong 2nd harmonic", fundamental, detector,
+					spectrum(fundamental, new float[] {0.1f, 1, 0.3f, 0.5f, 0.1f, 0.2f}, 1e-4f, random));
+			// only odd harmonics (the even ones would be the fundamental of the octave above):
+			assertDetects("odd harmonics", fundamental, detector,
+					spectrum(fundamental, new float[] {1, 0, 0.5f, 0, 0.3f, 0}, 1e-4f, random));
+		}
+	}
+
+	@Test
+	public void testCandidateRanking() {
+		Random random = new Random(2);
+		PeakListPitchDetector detector = new PeakListPitchDetector(PeakListPitchDetector.DEFAULT_MAX_PEAKS, MIN_FREQUENCY, MAX_FREQUENCY);
+		float fundamental = 196.2f;
+		detector.detect(spectrum(fundamental, new float[] {1, 0.5f, 0.33f, 0.25f, 0.2f, 0.17f}, 1e-4f, random), 0, 1);
+		int count = detector.getCandidateCount();
+		assertTrue(count >= 2 && count <= PeakListPitchDetector.MAX_CANDIDATES);
+		boolean octaveBelow = false;
+		for (int rank = 0; rank < count; rank++) {
+			if(rank > 0) {
+				assertTrue("rank " + rank, detector.getCandidateScore(rank) <= detector.getCandidateScore(rank - 1));
+				// no duplicates of the same pitch:
+				for (int other = 0; other < rank; other++) {
+					float a = detector.getCandidateFrequency(rank);
+					float b = detector.getCandidateFrequency(other);
+					assertTrue("rank " + rank + " and " + other, Math.abs(a - b) > 0.03f * Math.min(a, b));
+				}
+			}
+			if(Math.abs(cents(detector.getCandidateFrequency(rank), fundamental / 2)) < 10)
+				octaveBelow = true;
+		}
+		// the octave below matches all peaks (as even harmonics) but scores lower:
+		assertTrue(octaveBelow);
+		assertTrue(detector.getCandidateScore(0) > detector.getCandidateScore(1));
+	}
+
+	@Test
+	public void testPeakSelection() {
+		Random random = new Random(3);
+		float fundamental = 110.6f;
+		float[] amplitudes = {1, 0.5f, 0.33f, 0.25f, 0.2f, 0.17f};
+		float[] mag = spectrum(fundamental, amplitudes, 1e-3f, random);	// many small local maxima in the noise
+		// only the strongest peaks are kept (the harmonics), so the noise doesn't matter:
+		for (int maxPeaks: new int[] {6, PeakListPitchDetector.DEFAULT_MAX_PEAKS, 100}) {
+			PeakListPitchDetector detector = new PeakListPitchDetector(maxPeaks, MIN_FREQUENCY, MAX_FREQUENCY);
+			assertDetects(maxPeaks + " peaks", fundamental, detector, mag);
+			assertEquals(maxPeaks, detector.getPeakCount());
+		}
+
+		// no peak inside the band:
+		PeakListPitchDetector detector = new PeakListPitchDetector(PeakListPitchDetector.DEFAULT_MAX_PEAKS, MIN_FREQUENCY, MAX_FREQUENCY);
+		float[] silence = new float[SPECTRUM_LENGTH];
+		Arrays.fill(silence, Float.NEGATIVE_INFINITY);
+		assertEquals(0, detector.detect(silence, 0, 1), 0);
+		assertEquals(0, detector.getPeakCount());
+		assertEquals(0, detector.getCandidateCount());
+	}
+
+	@Test
+	public void testBandOffset() {
+		// band limited spectrum (e.g. of the zoom transform): 0.25 Hz per bin starting at bin 200 (50 Hz)
+		Random random = new Random(4);
+		float fundamental = 82.41f;
+		float hzPerBin = 0.25f;
+		int binOffset = 200;
+		float[] mag = new float[8000];
+		for (int i = 0; i < mag.length; i++) {
+			double frequency = (i + binOffset) * hzPerBin;
+			double level = 1e-4 * (0.5 + random.nextDouble());
+			for (int h = 1; h <= 6; h++)
+				level += Math.exp(-0.5 * Math.pow((frequency - h * fundamental) / (PEAK_WIDTH * hzPerBin), 2)) / h;
+			mag[i] = (float) Math.log10(level);
+		}
+		PeakListPitchDetector detector = new PeakListPitchDetector(PeakListPitchDetector.DEFAULT_MAX_PEAKS, MIN_FREQUENCY, MAX_FREQUENCY);
+		float detected = detector.detect(mag, binOffset, hzPerBin);
+		assertEquals(0, cents(detected, fundamental), MAX_CENTS_ERROR);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoPeaks() {
+		new PeakListPitchDetector(0, MIN_FREQUENCY, MAX_FREQUENCY);
+	}
+}
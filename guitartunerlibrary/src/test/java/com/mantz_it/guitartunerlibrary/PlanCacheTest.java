@@ -0,0 +1,124 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * <h1>Wear Guitar Tuner - Plan Cache Test</h1>
+ *
+ * Module:      PlanCacheTest.java
+ * Description: Unit tests of the sharing and of the eviction of the PlanCache.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class PlanCacheTest {
+	private static final int WINDOW_LENGTH = 1000;
+	private static final int WINDOW_BYTES = WINDOW_LENGTH * 4;
+
+	@Before
+	public void setUp() {
+		PlanCache.setMaxBytes(PlanCache.DEFAULT_MAX_BYTES);
+		PlanCache.trim(0);
+	}
+
+	@After
+	public void tearDown() {
+		setUp();
+	}
+
+	@Test
+	public void testTablesAreShared() {
+		int misses = PlanCache.getMissCount();
+		int hits = PlanCache.getHitCount();
+		float[] window = PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0);
+		assertSame(window, PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0));
+		assertSame(PlanCache.getTwiddleTable(64), PlanCache.getTwiddleTable(64));
+		assertEquals(misses + 2, PlanCache.getMissCount());
+		assertEquals(hits + 2, PlanCache.getHitCount());
+
+		// the parameter is only part of the key for the kaiser window:
+		assertSame(window, PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 5));
+		assertNotSame(PlanCache.getWindow(WindowFunctions.WINDOW_KAISER, WINDOW_LENGTH, 5),
+				PlanCache.getWindow(WindowFunctions.WINDOW_KAISER, WINDOW_LENGTH, 8));
+	}
+
+	@Test
+	public void testRetainedHeapBytes() {
+		assertEquals(0, PlanCache.getRetainedHeapBytes());
+		PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0);
+		assertEquals(WINDOW_BYTES, PlanCache.getRetainedHeapBytes());
+		PlanCache.getTwiddleTable(64);		// cos and sin: 3/4 of the length each
+		assertEquals(WINDOW_BYTES + 2 * 48 * 4, PlanCache.getRetainedHeapBytes());
+		PlanCache.getFixedPointTwiddleTable(64);	// cos and sin: half the length each
+		assertEquals(WINDOW_BYTES + 2 * 48 * 4 + 2 * 32 * 2, PlanCache.getRetainedHeapBytes());
+		assertEquals(3, PlanCache.getTableCount());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		PlanCache.setMaxBytes(3 * WINDOW_BYTES);
+		int evictions = PlanCache.getEvictionCount();
+		float[] hann = PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0);
+		float[] blackman = PlanCache.getWindow(WindowFunctions.WINDOW_BLACKMAN, WINDOW_LENGTH, 0);
+		float[] flatTop = PlanCache.getWindow(WindowFunctions.WINDOW_FLAT_TOP, WINDOW_LENGTH, 0);
+		PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0);	// hann is used again
+		PlanCache.getWindow(WindowFunctions.WINDOW_BLACKMAN_HARRIS, WINDOW_LENGTH, 0);
+
+		// blackman was the least recently used table:
+		assertEquals(evictions + 1, PlanCache.getEvictionCount());
+		assertEquals(3 * WINDOW_BYTES, PlanCache.getRetainedHeapBytes());
+		assertSame(hann, PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0));
+		assertSame(flatTop, PlanCache.getWindow(WindowFunctions.WINDOW_FLAT_TOP, WINDOW_LENGTH, 0));
+		float[] newBlackman = PlanCache.getWindow(WindowFunctions.WINDOW_BLACKMAN, WINDOW_LENGTH, 0);
+		assertNotSame(blackman, newBlackman);
+		assertArrayEquals(blackman, newBlackman, 0f);	// the evicted table is rebuilt identically
+	}
+
+	@Test
+	public void testTableLargerThanTheCacheIsKept() {
+		PlanCache.setMaxBytes(WINDOW_BYTES / 2);
+		float[] window = PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0);
+		assertEquals(1, PlanCache.getTableCount());
+		assertSame(window, PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0));
+	}
+
+	@Test
+	public void testTrim() {
+		PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0);
+		PlanCache.getWindow(WindowFunctions.WINDOW_BLACKMAN, WINDOW_LENGTH, 0);
+		PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0);
+		PlanCache.trim(WINDOW_BYTES);
+		assertEquals(1, PlanCache.getTableCount());
+		assertEquals(WINDOW_BYTES, PlanCache.getRetainedHeapBytes());
+		int hits = PlanCache.getHitCount();
+		PlanCache.getWindow(WindowFunctions.WINDOW_HANN, WINDOW_LENGTH, 0);	// the most recently used one is kept
+		assertEquals(hits + 1, PlanCache.getHitCount());
+
+		PlanCache.trim(0);
+		assertEquals(0, PlanCache.getTableCount());
+		assertEquals(0, PlanCache.getRetainedHeapBytes());
+	}
+}
@@ -0,0 +1,141 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <h1>Wear Guitar Tuner - Short Ring Buffer Test</h1>
+ *
+ * Module:      ShortRingBufferTest.java
+ * Description: Unit tests of the lock-free single producer / single consumer ring buffer
+ *              (ShortRingBuffer).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class ShortRingBufferTest {
+
+	@Test
+	public void testWrapAround() {
+		ShortRingBuffer ringBuffer = new ShortRingBuffer(8);
+		short[] out = new short[8];
+		short next = 0;
+		short expected = 0;
+		for (int round = 0; round < 10; round++) {
+			// write 5 and read 5 samples: the position moves around the end of the buffer
+			short[] samples = new short[5];
+			for (int i = 0; i < samples.length; i++)
+				samples[i] = next++;
+			assertEquals(5, ringBuffer.write(samples, 0, samples.length));
+			assertEquals(5, ringBuffer.available());
+			assertEquals(3, ringBuffer.freeSpace());
+			assertEquals(5, ringBuffer.read(out, 1, 5));
+			for (int i = 0; i < 5; i++)
+				assertEquals("round " + round, expected++, out[1 + i]);
+			assertEquals(0, ringBuffer.available());
+		}
+	}
+
+	@Test
+	public void testFullAndEmpty() {
+		ShortRingBuffer ringBuffer = new ShortRingBuffer(4);
+		short[] samples = {1, 2, 3, 4, 5, 6};
+		assertEquals(4, ringBuffer.write(samples, 0, samples.length));	// only the free space is written
+		assertEquals(0, ringBuffer.write(samples, 4, 2));
+		short[] out = new short[6];
+		assertEquals(4, ringBuffer.read(out, 0, out.length));	// only the available samples are read
+		assertArrayEquals(new short[] {1, 2, 3, 4, 0, 0}, out);
+		assertEquals(0, ringBuffer.read(out, 0, out.length));
+	}
+
+	@Test
+	public void testReadSumOfSquares() {
+		ShortRingBuffer ringBuffer = new ShortRingBuffer(4);
+		short[] out = new short[3];
+		ringBuffer.write(new short[] {0, 0, 0}, 0, 3);
+		ringBuffer.read(out, 0, 3);
+		ringBuffer.write(new short[] {-32768, 3, 32767}, 0, 3);		// wraps around
+		long[] sumOfSquares = {5};
+		assertEquals(3, ringBuffer.readSumOfSquares(out, 0, 3, sumOfSquares));
+		assertArrayEquals(new short[] {-32768, 3, 32767}, out);
+		assertEquals(5 + 32768L * 32768 + 9 + 32767L * 32767, sumOfSquares[0]);
+	}
+
+	@Test
+	public void testClear() {
+		ShortRingBuffer ringBuffer = new ShortRingBuffer(4);
+		ringBuffer.write(new short[] {1, 2, 3}, 0, 3);
+		ringBuffer.clear();
+		assertEquals(0, ringBuffer.available());
+		assertEquals(4, ringBuffer.freeSpace());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapacityMustBePowerOfTwo() {
+		new ShortRingBuffer(1000);
+	}
+
+	/**
+	 * A producer and a consumer thread transfer a sequence of samples: nothing may be lost,
+	 * duplicated or reordered.
+	 */
+	@Test
+	public void testProducerConsumer() throws InterruptedException {
+		final int total = 500000;
+		final ShortRingBuffer ringBuffer = new ShortRingBuffer(1024);
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				short[] samples = new short[300];
+				int written = 0;
+				while (written < total) {
+					int length = Math.min(samples.length, total - written);
+					for (int i = 0; i < length; i++)
+						samples[i] = (short) (written + i);
+					int offset = 0;
+					while (offset < length) {
+						int count = ringBuffer.write(samples, offset, length - offset);
+						if(count == 0)
+							Thread.yield();		// buffer is full
+						offset += count;
+					}
+					written += length;
+				}
+			}
+		};
+		producer.start();
+
+		short[] out = new short[177];
+		int read = 0;
+		while (read < total) {
+			int count = ringBuffer.read(out, 0, out.length);
+			if(count == 0)
+				Thread.yield();		// buffer is empty
+			for (int i = 0; i < count; i++) {
+				if(out[i] != (short) (read + i))
+					assertEquals("sample " + (read + i), (short) (read + i), out[i]);
+			}
+			read += count;
+		}
+		producer.join();
+		assertEquals(0, ringBuffer.available());
+	}
+}
@@ -0,0 +1,211 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Tuner Result Buffer Test</h1>
+ *
+ * Module:      TunerResultBufferTest.java
+ * Description: Unit tests of the triple buffer that passes the results from the
+ *              processing thread to the render thread (TunerResultBuffer).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class TunerResultBufferTest {
+	private static final int SPECTRUM_LENGTH = 4096;	// 1 Hz per bin
+	private static final float NOISE_FLOOR = -5;		// magnitude (log10) of all bins except the tone
+	private static final float TONE = -1;				// magnitude (log10) of the bins of the tone and its harmonics
+	private static final int HARMONICS = 4;				// default hps order (3) plus the fundamental
+
+	private static final GuitarTuner.GuitarTunerCallbackInterface CALLBACK = new GuitarTuner.GuitarTunerCallbackInterface() {
+		@Override
+		public boolean process(GuitarTuner guitarTuner) {
+			return true;
+		}
+	};
+
+	/**
+	 * Lets the tuner process a spectrum with a harmonic tone at the given bin (1 Hz per bin).
+	 * The hps has its max exactly at the bin, so the detected frequency is bin Hz.
+	 *
+	 * @param guitarTuner	tuner that processes the spectrum
+	 * @param bin			bin of the fundamental (100 ... 600)
+	 * @param updateRate	update rate that is passed to the tuner (used as marker)
+	 */
+	private static void processTone(GuitarTuner guitarTuner, int bin, float updateRate) {
+		float[] mag = new float[SPECTRUM_LENGTH];
+		for (int i = 0; i < mag.length; i++)
+			mag[i] = NOISE_FLOOR;
+		// the hps averages h bins of the spectrum for the h-th harmonic:
+		for (int h = 1; h <= HARMONICS; h++)
+			for (int i = 0; i < h; i++)
+				mag[bin * h + i] = TONE;
+		guitarTuner.processFFTSamples(mag, 0, 1, updateRate);
+	}
+
+	@Test
+	public void testPublishAndUpdate() {
+		TunerResultBuffer resultBuffer = new TunerResultBuffer();
+		GuitarTuner guitarTuner = new GuitarTuner(CALLBACK, null);
+		assertFalse(resultBuffer.update());
+		assertFalse(resultBuffer.hasSnapshot());
+
+		processTone(guitarTuner, 110, 10);
+		resultBuffer.publish(guitarTuner);
+		assertTrue(resultBuffer.update());
+		assertTrue(resultBuffer.hasSnapshot());
+		GuitarTuner snapshot = resultBuffer.getSnapshot();
+		assertEquals(110, snapshot.getDetectedFrequency(), 0);
+		assertEquals(guitarTuner.getTargetFrequency(), snapshot.getTargetFrequency(), 0);
+		assertNotSame(guitarTuner.getMag(), snapshot.getMag());		// copies, not the arrays of the producer
+		assertArrayEquals(guitarTuner.getMag(), snapshot.getMag(), 0);
+		assertArrayEquals(guitarTuner.getHPS(), snapshot.getHPS(), 0);
+		assertEquals(0, resultBuffer.getPublishInterval());		// only one result so far
+		assertFalse(resultBuffer.update());		// nothing new
+		assertEquals(110, resultBuffer.getSnapshot().getDetectedFrequency(), 0);
+
+		// only the latest of several results is fetched:
+		processTone(guitarTuner, 220, 11);
+		resultBuffer.publish(guitarTuner);
+		processTone(guitarTuner, 330, 12);
+		resultBuffer.publish(guitarTuner);
+		assertTrue(resultBuffer.update());
+		assertEquals(330, resultBuffer.getSnapshot().getDetectedFrequency(), 0);
+		assertEquals(12, resultBuffer.getSnapshot().getUpdateRate(), 0);
+		assertTrue(resultBuffer.getPublishInterval() >= 0);
+		assertFalse(resultBuffer.update());
+	}
+
+	@Test
+	public void testSpectrum16() {
+		TunerResultBuffer floatBuffer = new TunerResultBuffer();
+		TunerResultBuffer compactBuffer = new TunerResultBuffer();
+		compactBuffer.setSpectrum16(true);
+		GuitarTuner guitarTuner = new GuitarTuner(CALLBACK, null);
+		for (int i = 0; i < 3; i++) {
+			// fill all slots of both buffers:
+			processTone(guitarTuner, 147 + i, 10);
+			float[] mag = guitarTuner.getMag();
+			for (int j = 0; j < mag.length; j++)
+				if(!Float.isInfinite(mag[j]))
+					mag[j] += j * 0.0013f;		// values between the 16-bit steps
+			floatBuffer.publish(guitarTuner);
+			compactBuffer.publish(guitarTuner);
+			assertTrue(floatBuffer.update());
+			assertTrue(compactBuffer.update());
+		}
+
+		GuitarTuner snapshot = compactBuffer.getSnapshot();
+		assertEquals(guitarTuner.getDetectedFrequency(), snapshot.getDetectedFrequency(), 0);
+		float[][] expected = {guitarTuner.getMag(), guitarTuner.getHPS()};
+		float[][] actual = {snapshot.getMag(), snapshot.getHPS()};
+		for (int s = 0; s < expected.length; s++) {
+			assertEquals(expected[s].length, actual[s].length);
+			for (int i = 0; i < expected[s].length; i++) {
+				if(Float.isInfinite(expected[s][i]))
+					assertEquals(expected[s][i], actual[s][i], 0);	// -infinity (outside of the band) is kept
+				else
+					assertEquals(expected[s][i], actual[s][i], 0.5f / 256 + 1e-5f);	// rounded to 1/256
+			}
+		}
+
+		// the slots hold 16-bit spectra; only the snapshot that is read is decoded:
+		assertTrue(compactBuffer.getRetainedHeapBytes() < floatBuffer.getRetainedHeapBytes());
+
+		// switching back to floats:
+		compactBuffer.setSpectrum16(false);
+		compactBuffer.publish(guitarTuner);
+		assertTrue(compactBuffer.update());
+		assertArrayEquals(guitarTuner.getMag(), compactBuffer.getSnapshot().getMag(), 0);
+	}
+
+	@Test
+	public void testProcessIdle() {
+		TunerResultBuffer resultBuffer = new TunerResultBuffer();
+		GuitarTuner guitarTuner = new GuitarTuner(CALLBACK, null);
+		processTone(guitarTuner, 110, 10);
+		resultBuffer.publish(guitarTuner);
+		guitarTuner.processIdle(10);
+		resultBuffer.publish(guitarTuner);
+		assertTrue(resultBuffer.update());
+		assertTrue(resultBuffer.getSnapshot().isIdle());
+		assertFalse(resultBuffer.getSnapshot().isValid());
+	}
+
+	/**
+	 * One thread publishes results while another one fetches them. Every snapshot must be one
+	 * complete result: its spectrum, detected frequency and update rate belong together and
+	 * the results arrive in the order they were published.
+	 */
+	@Test
+	public void testConcurrentPublishAndUpdate() throws InterruptedException {
+		final int results = 20000;
+		final TunerResultBuffer resultBuffer = new TunerResultBuffer();
+		resultBuffer.setSpectrum16(true);
+		final AtomicBoolean done = new AtomicBoolean(false);
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				GuitarTuner guitarTuner = new GuitarTuner(CALLBACK, null);
+				for (int k = 1; k <= results; k++) {
+					processTone(guitarTuner, 100 + k % 100, k);
+					resultBuffer.publish(guitarTuner);
+					if(k % 16 == 0)
+						Thread.yield();		// give the consumer a chance on a single core
+				}
+				done.set(true);
+			}
+		});
+		producer.start();
+
+		int fetched = 0;
+		float lastUpdateRate = 0;
+		while(true) {
+			boolean finished = done.get();	// read before the last update(): nothing can be missed
+			if(resultBuffer.update()) {
+				GuitarTuner snapshot = resultBuffer.getSnapshot();
+				int k = (int) snapshot.getUpdateRate();
+				assertTrue("results out of order: " + k + " after " + lastUpdateRate, k > lastUpdateRate);
+				int bin = 100 + k % 100;
+				assertEquals(bin, snapshot.getDetectedFrequency(), 0);
+				float[] mag = snapshot.getMag();
+				assertEquals(TONE, mag[bin], 0);
+				assertEquals(NOISE_FLOOR, mag[bin - 1], 0);
+				assertEquals(NOISE_FLOOR, mag[bin + 1], 0);
+				lastUpdateRate = k;
+				fetched++;
+			} else if(finished)
+				break;
+			else
+				Thread.yield();
+		}
+		producer.join();
+		assertEquals(results, (int) lastUpdateRate);	// the last result is never lost
+		assertTrue(fetched > 0);
+	}
+}
@@ -0,0 +1,110 @@
+package com.mantz_it.guitartunerlibrary;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wear Guitar Tuner - Window Functions Test</h1>
+ *
+ * Module:      WindowFunctionsTest.java
+ * Description: Unit tests of the window functions (WindowFunctions) and of their use by the FFT.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2014 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class WindowFunctionsTest {
+	private static final int LENGTH = 1001;
+
+	/**
+	 * All windows are symmetric and reach 1 in the middle.
+	 */
+	@Test
+	public void testSymmetryAndPeak() {
+		for (String type: WindowFunctions.getWindowNames()) {
+			float[] window = WindowFunctions.createWindow(type, LENGTH, WindowFunctions.DEFAULT_KAISER_BETA);
+			assertEquals(type, LENGTH, window.length);
+			for (int i = 0; i < LENGTH / 2; i++)
+				assertEquals(type + " [" + i + "]", window[i], window[LENGTH - 1 - i], 1e-6f);
+			assertEquals(type + " (middle)", 1f, window[LENGTH / 2], 1e-5f);
+		}
+	}
+
+	/**
+	 * The equivalent noise bandwidth (in bins) identifies the coefficients of each window.
+	 */
+	@Test
+	public void testEquivalentNoiseBandwidth() {
+		assertEquals(1.5, noiseBandwidth(WindowFunctions.WINDOW_HANN, 0), 0.01);
+		assertEquals(1.73, noiseBandwidth(WindowFunctions.WINDOW_BLACKMAN, 0), 0.01);
+		assertEquals(2.00, noiseBandwidth(WindowFunctions.WINDOW_BLACKMAN_HARRIS, 0), 0.01);
+		assertEquals(3.77, noiseBandwidth(WindowFunctions.WINDOW_FLAT_TOP, 0), 0.01);
+		assertEquals(1.0, noiseBandwidth(WindowFunctions.WINDOW_KAISER, 0), 0.01);		// rectangular
+		assertTrue(noiseBandwidth(WindowFunctions.WINDOW_KAISER, 8.6) > noiseBandwidth(WindowFunctions.WINDOW_KAISER, 4));
+	}
+
+	@Test
+	public void testNames() {
+		for (String type: WindowFunctions.getWindowNames())
+			assertTrue(type, WindowFunctions.isWindowName(type));
+		assertFalse(WindowFunctions.isWindowName("rectangular"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownWindow() {
+		WindowFunctions.createWindow("rectangular", LENGTH, 0);
+	}
+
+	/**
+	 * FFT.applyWindow() spans the window over the signal length only (not the fft length) and
+	 * doesn't touch the zero padding.
+	 */
+	@Test
+	public void testWindowSpansSignalLength() {
+		int fftSize = 4096;
+		FFT fft = new FFT(fftSize, FFTEngineFactory.ENGINE_RADIX2, LENGTH);
+		fft.setWindow(WindowFunctions.WINDOW_HANN, 0);
+		float[] x = new float[fftSize];
+		Arrays.fill(x, 1f);
+		fft.applyWindow(x, LENGTH);
+		float[] window = WindowFunctions.createWindow(WindowFunctions.WINDOW_HANN, LENGTH, 0);
+		for (int i = 0; i < LENGTH; i++)
+			assertEquals("[" + i + "]", window[i], x[i], 0f);
+		for (int i = LENGTH; i < fftSize; i++)
+			assertEquals("[" + i + "] (zero padding)", 1f, x[i], 0f);
+	}
+
+	/**
+	 * @return equivalent noise bandwidth of the window (in bins): N * sum(w^2) / sum(w)^2
+	 */
+	private static double noiseBandwidth(String type, double parameter) {
+		float[] window = WindowFunctions.createWindow(type, LENGTH, parameter);
+		double sum = 0;
+		double sumOfSquares = 0;
+		for (float value: window) {
+			sum += value;
+			sumOfSquares += value * value;
+		}
+		return LENGTH * sumOfSquares / (sum * sum);
+	}
+}
@@ -163,25 +163,33 @@ public class MainActivity extends ActionBarActivity implements GoogleApiClient.C
 	protected void onResume() {
 		super.onResume();
 
-		// create and start the audio processing thread (guitar tuner thread)
-		audioProcessingEngine = new AudioProcessingEngine(guitarTuner);
-		audioProcessingEngine.start();
+		// create and start the audio processing thread (guitar tuner thread) or resume it
+		// (the engine keeps its buffers while paused):
+		if(audioProcessingEngine == null || audioProcessingEngine.getEngineState() == AudioProcessingEngine.STATE_RELEASED) {
+			audioProcessingEngine = new AudioProcessingEngine(guitarTuner);
+			audioProcessingEngine.start();
+		} else {
+			audioProcessingEngine.resumeProcessing();
+		}
 	}
 
 	@Override
 	protected void onPause() {
 		super.onPause();
 
+		// pause the audio processing thread (releases the microphone)
+		if(audioProcessingEngine != null)
+			audioProcessingEngine.pauseProcessing();
+	}
+
+	@Override
+	protected void onDestroy() {
 		// stop the audio processing thread
 		if(audioProcessingEngine != null) {
-			audioProcessingEngine.stopProcessing();
-			try {
-				audioProcessingEngine.interrupt();
-				audioProcessingEngine.join(250);
-			} catch (InterruptedException e) {
-				Log.e(LOGTAG, "onPause: Interrupted while joining audioProcessingEngine!");
-			}
+			audioProcessingEngine.release();
+			audioProcessingEngine = null;
 		}
+		super.onDestroy();
 	}
 
 	@Override
@@ -81,6 +81,7 @@ public class MainActivity extends Activity implements View.OnApplyWindowInsetsLi
 		preferences.registerOnSharedPreferenceChangeListener(this);
 		roundScreen = preferences.getBoolean(getString(R.string.pref_roundScreen), false);
 		tunerSurface.setRound(roundScreen);
+		tunerSurface.setCompactMemory(true);	// the heap of the watch is small
 
 		// Create a GuitarTuner instance:
 		guitarTuner = new GuitarTuner(tunerSurface, (Vibrator) getSystemService(VIBRATOR_SERVICE));
@@ -170,9 +171,16 @@ public class MainActivity extends Activity implements View.OnApplyWindowInsetsLi
 		super.onResume();
 		Log.d(LOGTAG, "onResume");
 
-		// create and start the audio processing thread (guitar tuner thread)
-		audioProcessingEngine = new AudioProcessingEngine(guitarTuner);
-		audioProcessingEngine.start();
+		// create and start the audio processing thread (guitar tuner thread) or resume it
+		// (the engine keeps its buffers while paused):
+		if(audioProcessingEngine == null || audioProcessingEngine.getEngineState() == AudioProcessingEngine.STATE_RELEASED) {
+			audioProcessingEngine = new AudioProcessingEngine(guitarTuner);
+			audioProcessingEngine.setCompactMemory(true);	// the heap of the watch is small
+			audioProcessingEngine.setOnsetTriggered(true);	// save battery: analyse only after a string was plucked
+			audioProcessingEngine.start();
+		} else {
+			audioProcessingEngine.resumeProcessing();
+		}
 	}
 
 	@Override
@@ -186,6 +194,11 @@ public class MainActivity extends Activity implements View.OnApplyWindowInsetsLi
 
 	@Override
 	protected void onDestroy() {
+		// stop the audio processing thread
+		if(audioProcessingEngine != null) {
+			audioProcessingEngine.release();
+			audioProcessingEngine = null;
+		}
 		super.onDestroy();
 		Log.d(LOGTAG, "onDestroy");
 	}
@@ -195,16 +208,9 @@ public class MainActivity extends Activity implements View.OnApplyWindowInsetsLi
 		super.onPause();
 		Log.d(LOGTAG, "onPause");
 
-		// stop the audio processing thread
-		if(audioProcessingEngine != null) {
-			audioProcessingEngine.stopProcessing();
-			try {
-				audioProcessingEngine.interrupt();
-				audioProcessingEngine.join(250);
-			} catch (InterruptedException e) {
-				Log.e(LOGTAG, "onPause: Interrupted while joining audioProcessingEngine!");
-			}
-		}
+		// pause the audio processing thread (releases the microphone)
+		if(audioProcessingEngine != null)
+			audioProcessingEngine.pauseProcessing();
 	}
 
 	@Override